@@ -0,0 +1,128 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.bulk;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers how far through its input a bulk job has got, so that a rerun can skip the records an
+ * earlier run finished. Records may finish out of order when they are processed in parallel, so the
+ * checkpoint is the highest record number below which every record has finished. Records after it
+ * which had also finished are processed again on resume, so the work for each record must be safe to repeat.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class Checkpoint {
+
+	private static final long SAVE_INTERVAL_MILLIS = 1000L ;
+
+	private final Logger log = LoggerFactory.getLogger(Checkpoint.class.getSimpleName()) ;
+	private final File file ;
+	private final TreeSet<Long> finishedAhead = new TreeSet<Long>() ;
+	private long watermark = 0 ;
+	private long savedWatermark = 0 ;
+	private long lastSave = 0 ;
+
+	/**
+	 * Constructor
+	 * @param file (OPTIONAL) The file to keep the checkpoint in, or <code>null</code> to keep it in memory only
+	 */
+	public Checkpoint(File file) {
+		super() ;
+		this.file = file ;
+	}
+
+	/**
+	 * Read the checkpoint left by an earlier run.
+	 * @return The number of leading records which an earlier run finished, or 0 if there is no checkpoint
+	 * @throws IOException If the checkpoint file exists but cannot be read
+	 */
+	public synchronized long load() throws IOException {
+		finishedAhead.clear() ;
+		watermark = 0 ;
+		if (file!=null && file.exists()) {
+			BufferedReader reader = new BufferedReader(new FileReader(file)) ;
+			try {
+				String line = reader.readLine() ;
+				if (line!=null && line.trim().length()>0) {
+					watermark = Long.parseLong(line.trim()) ;
+				}
+			} catch (NumberFormatException nfe) {
+				throw new IOException("The checkpoint file '"+file+"' is corrupt") ;
+			} finally {
+				reader.close() ;
+			}
+		}
+		savedWatermark = watermark ;
+		return watermark ;
+	}
+
+	/**
+	 * @return The number of leading records which have all finished
+	 */
+	public synchronized long getWatermark() {
+		return watermark ;
+	}
+
+	/**
+	 * Mark a record as finished. A record which is never marked holds the checkpoint back. The checkpoint file is rewritten at most once a second.
+	 * @param record The number of the record, counting from 1
+	 */
+	public synchronized void finished(long record) {
+		if (record<=watermark) {
+			return ;
+		}
+		finishedAhead.add(record) ;
+		while (!finishedAhead.isEmpty() && finishedAhead.first()==watermark+1) {
+			finishedAhead.pollFirst() ;
+			watermark++ ;
+		}
+		long now = System.currentTimeMillis() ;
+		if (now-lastSave>=SAVE_INTERVAL_MILLIS) {
+			lastSave = now ;
+			try {
+				save() ;
+			} catch (IOException ioe) {
+				log.warn("Unable to write checkpoint file '"+file+"': "+ioe.getLocalizedMessage()) ;
+			}
+		}
+	}
+
+	/**
+	 * Write the checkpoint file now, if it has changed since it was last written.
+	 * @throws IOException If the checkpoint file cannot be written
+	 */
+	public synchronized void save() throws IOException {
+		if (file==null || watermark==savedWatermark) {
+			return ;
+		}
+		// Write a new file and move it into place so a crash never leaves a half written checkpoint
+		File temp = new File(file.getPath()+".tmp") ;
+		Writer writer = new FileWriter(temp) ;
+		try {
+			writer.write(Long.toString(watermark)) ;
+			writer.write('\n') ;
+		} finally {
+			writer.close() ;
+		}
+		if (!temp.renameTo(file)) {
+			file.delete() ;
+			if (!temp.renameTo(file)) {
+				throw new IOException("Unable to replace checkpoint file '"+file+"'") ;
+			}
+		}
+		savedWatermark = watermark ;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.bulk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads comma separated records one line at a time. Fields may be quoted with double quotes, and a
+ * doubled double quote inside a quoted field stands for one double quote. Records may not span lines.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+class CsvReader {
+
+	private final BufferedReader reader ;
+	private long lineNumber = 0 ;
+
+	CsvReader(Reader reader) {
+		super() ;
+		this.reader = (reader instanceof BufferedReader)?(BufferedReader)reader:new BufferedReader(reader) ;
+	}
+
+	/**
+	 * @return The line number of the record last returned by {@link #next()}, starting from 1
+	 */
+	long getLineNumber() {
+		return lineNumber ;
+	}
+
+	/**
+	 * @return The fields of the next non-blank record, or <code>null</code> at the end of the input
+	 * @throws IOException If the input cannot be read
+	 */
+	String[] next() throws IOException {
+		String line ;
+		do {
+			line = reader.readLine() ;
+			lineNumber++ ;
+			if (line==null) {
+				return null ;
+			}
+		} while (line.trim().length()==0) ;
+
+		List<String> fields = new ArrayList<String>() ;
+		StringBuilder field = new StringBuilder() ;
+		boolean quoted = false ;
+		for (int x=0; x<line.length(); x++) {
+			char c = line.charAt(x) ;
+			if (quoted) {
+				if (c=='"') {
+					if (x+1<line.length() && line.charAt(x+1)=='"') {
+						field.append('"') ;
+						x++ ;
+					} else {
+						quoted = false ;
+					}
+				} else {
+					field.append(c) ;
+				}
+			} else if (c=='"') {
+				quoted = true ;
+			} else if (c==',') {
+				fields.add(field.toString().trim()) ;
+				field.setLength(0) ;
+			} else {
+				field.append(c) ;
+			}
+		}
+		fields.add(field.toString().trim()) ;
+		return fields.toArray(new String[fields.size()]) ;
+	}
+
+	void close() throws IOException {
+		reader.close() ;
+	}
+}
@@ -0,0 +1,346 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.bulk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dns.api.compiletime.ApiResult;
+import com.dns.api.compiletime.Deadline;
+import com.dns.api.compiletime.ManagementAPI;
+import com.dns.api.compiletime.ParallelRequests;
+
+/**
+ * Runs jobs across the member domains of domain groups: moving many domains into a group, moving
+ * domains from one group to another, and comparing each member's records with the group's template.
+ * Calls for different domains run in parallel at a target rate with a bounded number in flight. Work
+ * is batched by target group so each group which gained members is rebuilt once with a single group
+ * {@link ManagementAPI#rebuild(String, boolean)} instead of once per domain.
+ * <p>
+ * Progress can be followed from another thread with {@link #getProgress()} while a job runs.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class GroupOperations {
+
+	/** The mode which assigns a domain to a group, see {@link ManagementAPI#assignDomainMode(String, String, String)} */
+	public static final String GROUP_MODE = "group" ;
+
+	/**
+	 * How the records of one member domain differ from its group's template. Each record is
+	 * described as <code>host type rdata</code>, with an empty host for the root of the zone.
+	 */
+	public static final class Difference {
+		private final String domain ;
+		private final Set<String> missing ;
+		private final Set<String> extra ;
+
+		Difference(String domain, Set<String> missing, Set<String> extra) {
+			this.domain = domain ;
+			this.missing = Collections.unmodifiableSet(missing) ;
+			this.extra = Collections.unmodifiableSet(extra) ;
+		}
+
+		public String getDomain() {
+			return domain ;
+		}
+
+		/**
+		 * @return The template records which the domain does not have
+		 */
+		public Set<String> getMissing() {
+			return missing ;
+		}
+
+		/**
+		 * @return The records of the domain which are not in the template
+		 */
+		public Set<String> getExtra() {
+			return extra ;
+		}
+
+		public String toString() {
+			return domain+" missing="+missing+" extra="+extra ;
+		}
+	}
+
+	private final Logger log = LoggerFactory.getLogger(GroupOperations.class.getSimpleName()) ;
+	private final ManagementAPI api ;
+	private final List<String> failures = new CopyOnWriteArrayList<String>() ;
+	private int concurrency = 8 ;
+	private double rate = 20.0 ;
+	private volatile ProgressTracker progress = new ProgressTracker("domains") ;
+
+	/**
+	 * Constructor
+	 * @param api The {@link ManagementAPI} to read and change the groups with
+	 */
+	public GroupOperations(ManagementAPI api) {
+		super() ;
+		this.api = api ;
+	}
+
+	/**
+	 * @param concurrency The maximum number of calls to have in flight at once
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = Math.max(1, concurrency) ;
+	}
+
+	/**
+	 * @param rate The target number of changes to send per second
+	 */
+	public void setRate(double rate) {
+		this.rate = rate ;
+	}
+
+	/**
+	 * @return The progress of the current (or last) job
+	 */
+	public ProgressTracker getProgress() {
+		return progress ;
+	}
+
+	/**
+	 * @return A description of each domain or group which could not be read or changed
+	 */
+	public List<String> getFailures() {
+		return Collections.unmodifiableList(failures) ;
+	}
+
+	/**
+	 * Put each of the domains into a group. Domains which are already members are skipped, and the
+	 * group is rebuilt once at the end if any domain was moved.
+	 * @param group The name of the group
+	 * @param domains The names of the domains
+	 * @return A {@link ProgressTracker} holding the final counts
+	 * @throws InterruptedException If the thread is interrupted; domains already moved stay moved
+	 */
+	public ProgressTracker moveIntoGroup(String group, Collection<String> domains) throws InterruptedException {
+		Map<String, String> targets = new LinkedHashMap<String, String>() ;
+		for (String domain: domains) {
+			targets.put(domain, group) ;
+		}
+		return rehome(targets) ;
+	}
+
+	/**
+	 * Move every member of one group into another.
+	 * @param from The name of the group the domains are in now
+	 * @param to The name of the group to move them to
+	 * @return A {@link ProgressTracker} holding the final counts
+	 * @throws InterruptedException If the thread is interrupted; domains already moved stay moved
+	 */
+	public ProgressTracker rehomeAll(String from, String to) throws InterruptedException {
+		Set<String> members = members(from) ;
+		if (members==null) {
+			ProgressTracker empty = new ProgressTracker("domains") ;
+			empty.setTotal(0) ;
+			progress = empty ;
+			return empty ;
+		}
+		return moveIntoGroup(to, members) ;
+	}
+
+	/**
+	 * Move each domain into the group it is mapped to. The domains are batched by target group: the
+	 * members of each target are listed once to skip domains which are already there, and each target
+	 * which gained members is rebuilt once after its batch.
+	 * @param targets The name of each domain mapped to the name of the group it should be in
+	 * @return A {@link ProgressTracker} holding the final counts
+	 * @throws InterruptedException If the thread is interrupted; domains already moved stay moved
+	 */
+	public ProgressTracker rehome(Map<String, String> targets) throws InterruptedException {
+		Map<String, List<String>> batches = new LinkedHashMap<String, List<String>>() ;
+		for (Map.Entry<String, String> target: targets.entrySet()) {
+			List<String> batch = batches.get(target.getValue()) ;
+			if (batch==null) {
+				batch = new ArrayList<String>() ;
+				batches.put(target.getValue(), batch) ;
+			}
+			batch.add(target.getKey()) ;
+		}
+		final ProgressTracker moving = new ProgressTracker("domains") ;
+		moving.setTotal(targets.size()) ;
+		progress = moving ;
+		RateLimiter limiter = new RateLimiter(rate) ;
+		for (Map.Entry<String, List<String>> batch: batches.entrySet()) {
+			final String group = batch.getKey() ;
+			Set<String> present = members(group) ;
+			if (present==null) {
+				present = Collections.emptySet() ;
+			}
+			final AtomicInteger moved = new AtomicInteger() ;
+			ParallelRequests.Bounded bounded = new ParallelRequests.Bounded(api.getExecutor(), concurrency) ;
+			try {
+				for (final String domain: batch.getValue()) {
+					if (present.contains(domain.toLowerCase())) {
+						moving.skipped() ;
+						continue ;
+					}
+					if (Deadline.isCurrentDone()) {
+						break ;
+					}
+					limiter.acquire() ;
+					bounded.submit(new Runnable() {
+						public void run() {
+							ApiResult result = ApiResult.fromResponse(api.assignDomainMode(domain, GROUP_MODE, group)) ;
+							if (result.isSuccess()) {
+								moved.incrementAndGet() ;
+								moving.succeeded() ;
+							} else {
+								failures.add("Move of "+domain+" into "+group+": "+result.getError()) ;
+								moving.failed() ;
+							}
+						}
+					}) ;
+				}
+			} finally {
+				bounded.awaitAll() ;
+			}
+			if (moved.get()>0) {
+				ApiResult rebuilt = ApiResult.fromResponse(api.rebuild(group, true)) ;
+				if (!rebuilt.isSuccess()) {
+					failures.add("Rebuild of group "+group+": "+rebuilt.getError()) ;
+				}
+			}
+			log.info("Moved "+moved.get()+" of "+batch.getValue().size()+" domains into "+group) ;
+		}
+		return moving ;
+	}
+
+	/**
+	 * Compare the records of every member domain of a group with the group's template. Every read counts
+	 * against the rate, and no further members are read once the current {@link Deadline} is done.
+	 * @param group The name of the group
+	 * @return The members whose records differ from the template, in no particular order
+	 * @throws InterruptedException If the thread is interrupted while waiting for the calls
+	 */
+	public List<Difference> compareToTemplate(final String group) throws InterruptedException {
+		final List<Difference> differences = new CopyOnWriteArrayList<Difference>() ;
+		final Set<String> template = records(group, true, null) ;
+		Set<String> members = members(group) ;
+		final ProgressTracker comparing = new ProgressTracker("domains") ;
+		progress = comparing ;
+		if (template==null || members==null) {
+			comparing.setTotal(0) ;
+			return differences ;
+		}
+		comparing.setTotal(members.size()) ;
+		final RateLimiter limiter = new RateLimiter(rate) ;
+		ParallelRequests.Bounded bounded = new ParallelRequests.Bounded(api.getExecutor(), concurrency) ;
+		try {
+			for (final String domain: members) {
+				if (Deadline.isCurrentDone()) {
+					break ;
+				}
+				limiter.acquire() ;
+				bounded.submit(new Runnable() {
+					public void run() {
+						Set<String> actual = records(domain, false, limiter) ;
+						if (actual==null) {
+							comparing.failed() ;
+							return ;
+						}
+						Set<String> missing = new TreeSet<String>(template) ;
+						missing.removeAll(actual) ;
+						Set<String> extra = new TreeSet<String>(actual) ;
+						extra.removeAll(template) ;
+						if (missing.isEmpty() && extra.isEmpty()) {
+							comparing.skipped() ;
+						} else {
+							differences.add(new Difference(domain, missing, extra)) ;
+							comparing.succeeded() ;
+						}
+					}
+				}) ;
+			}
+		} finally {
+			bounded.awaitAll() ;
+		}
+		log.info("Compared "+group+" members with the template: "+differences.size()+" differ") ;
+		return differences ;
+	}
+
+	/**
+	 * @return The lower case names of the group's member domains, or <code>null</code> if they could not be listed
+	 */
+	private Set<String> members(String group) {
+		ApiResult result = ApiResult.fromResponse(api.getDomainsInGroup(group)) ;
+		if (!result.isSuccess()) {
+			failures.add("Members of group "+group+": "+result.getError()) ;
+			return null ;
+		}
+		Set<String> members = new HashSet<String>() ;
+		JSONArray data = result.getResponse().optJSONArray("data") ;
+		for (int x=0; data!=null && x<data.length(); x++) {
+			JSONObject domain = data.optJSONObject(x) ;
+			if (domain!=null) {
+				members.add(domain.optString("name").toLowerCase()) ;
+			}
+		}
+		return members ;
+	}
+
+	/**
+	 * @param limiter (OPTIONAL) The {@link RateLimiter} to take a permit from for each host, or <code>null</code>
+	 * @return Every record of a domain or group as <code>host type rdata</code>, or <code>null</code>
+	 * if they could not all be read
+	 */
+	private Set<String> records(String name, boolean isGroup, RateLimiter limiter) {
+		ApiResult hosts = ApiResult.fromResponse(isGroup?api.getHostnamesForGroup(name):api.getHostnamesForDomain(name)) ;
+		if (!hosts.isSuccess()) {
+			failures.add("Host names of "+name+": "+hosts.getError()) ;
+			return null ;
+		}
+		Set<String> records = new HashSet<String>() ;
+		JSONArray hostData = hosts.getResponse().optJSONArray("data") ;
+		for (int x=0; hostData!=null && x<hostData.length(); x++) {
+			JSONObject host = hostData.optJSONObject(x) ;
+			if (host==null) {
+				continue ;
+			}
+			String hostname = host.optString("name") ;
+			if (limiter!=null) {
+				// Each host costs a call of its own, so it takes its own permit
+				try {
+					limiter.acquire() ;
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt() ;
+					return null ;
+				}
+			}
+			ApiResult rrs = ApiResult.fromResponse(api.getRRSetForHostname(name, isGroup, hostname)) ;
+			if (!rrs.isSuccess()) {
+				failures.add("Records of "+hostname+" in "+name+": "+rrs.getError()) ;
+				return null ;
+			}
+			JSONArray rrData = rrs.getResponse().optJSONArray("data") ;
+			for (int y=0; rrData!=null && y<rrData.length(); y++) {
+				JSONObject rr = rrData.optJSONObject(y) ;
+				if (rr!=null) {
+					records.add(hostname.toLowerCase()+" "+rr.optString("type").toUpperCase()+" "+rr.optString("rdata")) ;
+				}
+			}
+		}
+		return records ;
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.bulk;
+
+import org.json.JSONObject;
+
+import com.dns.api.compiletime.ApiResult;
+import com.dns.api.compiletime.ClientConfig;
+import com.dns.api.compiletime.ManagementAPI;
+
+/**
+ * A {@link ManagementAPI} which keeps a {@link RecordIndex} current as records are created, changed
+ * and removed through it. Only successful calls against domains are applied; changes to domain
+ * groups do not affect the index.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class IndexingManagementAPI extends ManagementAPI {
+
+	private final RecordIndex index ;
+
+	/**
+	 * Constructor
+	 * @param apiHost The host name of the server to make API calls against.
+	 * @param useSSL Should we use HTTPS connections for API calls?
+	 * @param apiToken The API Token for authenticating requests.
+	 * @param index The {@link RecordIndex} to keep up to date
+	 */
+	public IndexingManagementAPI(String apiHost, boolean useSSL, String apiToken, RecordIndex index) {
+		super(apiHost, useSSL, apiToken) ;
+		this.index = index ;
+	}
+
+	/**
+	 * Constructor
+	 * @param config The {@link ClientConfig} to make API calls with
+	 * @param index The {@link RecordIndex} to keep up to date
+	 */
+	public IndexingManagementAPI(ClientConfig config, RecordIndex index) {
+		super(config) ;
+		this.index = index ;
+	}
+
+	public RecordIndex getIndex() {
+		return index ;
+	}
+
+	public JSONObject createDefaultRecord(String name, boolean isGroup, String host, String rdata, String type,
+			boolean isWildcard, String geoGroup, String iso2Code, String region, String city, Integer ttl) {
+		JSONObject response = super.createDefaultRecord(name, isGroup, host, rdata, type, isWildcard, geoGroup, iso2Code, region, city, ttl) ;
+		if (!isGroup) {
+			created(response, name, host, type, rdata, ttl) ;
+		}
+		return response ;
+	}
+
+	public JSONObject createMXRecord(String name, boolean isGroup, String host, String rdata, int priority,
+			boolean isWildcard, String geoGroup, String iso2Code, String region, String city, Integer ttl) {
+		JSONObject response = super.createMXRecord(name, isGroup, host, rdata, priority, isWildcard, geoGroup, iso2Code, region, city, ttl) ;
+		if (!isGroup) {
+			created(response, name, host, "MX", rdata, ttl) ;
+		}
+		return response ;
+	}
+
+	public JSONObject createSRVRecord(String name, boolean isGroup, String host, String rdata, int weight, int priority,
+			int port, boolean isWildcard, String geoGroup, String iso2Code, String region, String city, Integer ttl) {
+		JSONObject response = super.createSRVRecord(name, isGroup, host, rdata, weight, priority, port, isWildcard, geoGroup, iso2Code, region, city, ttl) ;
+		if (!isGroup) {
+			created(response, name, host, "SRV", rdata, ttl) ;
+		}
+		return response ;
+	}
+
+	public JSONObject updateRRData(Integer rrId, String rdata, Integer ttl, Integer priority, Boolean isWildcard,
+			Integer retry, Integer expire, Integer minimum, Integer weight, Integer port, String title,
+			String keywords, String description, String geoGroup, String country, String region, String city) {
+		JSONObject response = super.updateRRData(rrId, rdata, ttl, priority, isWildcard, retry, expire, minimum, weight,
+				port, title, keywords, description, geoGroup, country, region, city) ;
+		if (rrId!=null && ApiResult.fromResponse(response).isSuccess()) {
+			index.update(rrId.longValue(), rdata, ttl) ;
+		}
+		return response ;
+	}
+
+	public JSONObject removeRR(int rrId, boolean confirm) {
+		JSONObject response = super.removeRR(rrId, confirm) ;
+		if (ApiResult.fromResponse(response).isSuccess()) {
+			index.remove(rrId) ;
+		}
+		return response ;
+	}
+
+	public JSONObject removeHostname(String name, boolean isGroup, String host, boolean confirm) {
+		JSONObject response = super.removeHostname(name, isGroup, host, confirm) ;
+		if (!isGroup && ApiResult.fromResponse(response).isSuccess()) {
+			index.removeAll(name, host) ;
+		}
+		return response ;
+	}
+
+	public JSONObject deleteDomain(String domain, boolean confirm) {
+		JSONObject response = super.deleteDomain(domain, confirm) ;
+		if (ApiResult.fromResponse(response).isSuccess()) {
+			index.removeAll(domain, null) ;
+		}
+		return response ;
+	}
+
+	/**
+	 * Index a newly created record. The new record's ID is taken from the response when the server
+	 * includes it; otherwise the host is read back so the index picks up the ID. Records of a type the
+	 * index does not hold are ignored without reading anything back.
+	 */
+	private void created(JSONObject response, String domain, String host, String type, String rdata, Integer ttl) {
+		if (type==null || !RecordIndex.isIndexed(type.toUpperCase())) {
+			return ;
+		}
+		ApiResult result = ApiResult.fromResponse(response) ;
+		if (!result.isSuccess()) {
+			return ;
+		}
+		JSONObject record = result.getResponse().optJSONObject("data") ;
+		if (record!=null && record.has("id")) {
+			index.put(record.optLong("id"), domain, host, type, rdata, (ttl!=null)?ttl.intValue():-1) ;
+		} else {
+			index.refreshHost(this, domain, host) ;
+		}
+	}
+}
@@ -0,0 +1,300 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.bulk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dns.api.compiletime.ApiResult;
+import com.dns.api.compiletime.ManagementAPI;
+
+/**
+ * Makes hostname and record changes through a {@link ManagementAPI} with each one recorded in a
+ * {@link MutationJournal}: the intent is on disk before the call is sent and the outcome is logged
+ * once it returns. After a crash, {@link #recover()} finds the calls which may not have landed,
+ * checks the live zone for the creates and repeats only what is missing. Updates and removals set an
+ * absolute state, so they are sent again unless a later change to the same record is known to have
+ * landed, which repeating them would undo.
+ * <p>
+ * A job working through a list of changes can tag each one with the input it came from using
+ * {@link #forKey(String)}, then ask {@link #keyedOutcomes()} on its next run which inputs to skip.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class JournaledMutations {
+
+	static final String CREATE_HOSTNAME = "createHostname" ;
+	static final String CREATE_RECORD = "createRecord" ;
+	static final String UPDATE_RECORD = "updateRRData" ;
+	static final String REMOVE_RECORD = "removeRR" ;
+
+	private final Logger log = LoggerFactory.getLogger(JournaledMutations.class.getSimpleName()) ;
+	private final ManagementAPI api ;
+	private final MutationJournal journal ;
+	private final String key ;
+
+	/**
+	 * Constructor
+	 * @param api The {@link ManagementAPI} to make the changes with
+	 * @param journal The {@link MutationJournal} to record them in
+	 */
+	public JournaledMutations(ManagementAPI api, MutationJournal journal) {
+		this(api, journal, null) ;
+	}
+
+	private JournaledMutations(ManagementAPI api, MutationJournal journal, String key) {
+		super() ;
+		this.api = api ;
+		this.journal = journal ;
+		this.key = key ;
+	}
+
+	/**
+	 * @param key The input the changes come from, e.g. a file name and line number
+	 * @return A {@link JournaledMutations} sharing this one's journal which logs its intents under <code>key</code>
+	 */
+	public JournaledMutations forKey(String key) {
+		return new JournaledMutations(api, journal, key) ;
+	}
+
+	/**
+	 * @return The outcome of every change logged under a key, by key: {@link Boolean#TRUE} if it took
+	 * effect, {@link Boolean#FALSE} if the server refused it, or <code>null</code> if it is still
+	 * unconfirmed. Call this after {@link #recover()} so that as few as possible are unconfirmed.
+	 * @throws IOException If the journal cannot be read
+	 */
+	public Map<String, Boolean> keyedOutcomes() throws IOException {
+		Map<String, Boolean> outcomes = new HashMap<String, Boolean>() ;
+		for (MutationJournal.Entry entry: journal.entries()) {
+			String entryKey = entry.getArg(MutationJournal.KEY) ;
+			if (entryKey!=null) {
+				outcomes.put(entryKey, entry.getOutcome()) ;
+			}
+		}
+		return outcomes ;
+	}
+
+	/**
+	 * @see ManagementAPI#createHostname(String, boolean, String, boolean, String)
+	 * @param domain The domain to add the host to
+	 * @param host The name of the host
+	 * @return A {@link JSONObject} containing the JSON response or an error code.
+	 * @throws IOException If the intent could not be written to the journal, in which case nothing was sent
+	 */
+	public JSONObject createHostname(String domain, String host) throws IOException {
+		Map<String, String> args = new LinkedHashMap<String, String>() ;
+		args.put("domain", domain) ;
+		args.put("host", host) ;
+		return execute(CREATE_HOSTNAME, args) ;
+	}
+
+	/**
+	 * Create an A, AAAA, CNAME, NS, TXT or MX record.
+	 * @param domain The domain to add the record to
+	 * @param host The host name to add the record to
+	 * @param type The record type
+	 * @param rdata The record data
+	 * @param ttl (OPTIONAL) The TTL or <code>null</code> for the default
+	 * @param priority (OPTIONAL) The priority of an MX record or <code>null</code>
+	 * @return A {@link JSONObject} containing the JSON response or an error code.
+	 * @throws IOException If the intent could not be written to the journal, in which case nothing was sent
+	 */
+	public JSONObject createRecord(String domain, String host, String type, String rdata, Integer ttl, Integer priority) throws IOException {
+		Map<String, String> args = new LinkedHashMap<String, String>() ;
+		args.put("domain", domain) ;
+		args.put("host", host) ;
+		args.put("type", type.toUpperCase()) ;
+		args.put("rdata", rdata) ;
+		args.put("ttl", (ttl!=null)?ttl.toString():null) ;
+		args.put("priority", (priority!=null)?priority.toString():null) ;
+		return execute(CREATE_RECORD, args) ;
+	}
+
+	/**
+	 * @see ManagementAPI#updateRRData(Integer, String, Integer, Integer, Boolean, Integer, Integer, Integer, Integer, Integer, String, String, String, String, String, String, String)
+	 * @param rrId The ID of the record
+	 * @param rdata The new record data
+	 * @param ttl (OPTIONAL) The new TTL or <code>null</code> to leave it unchanged
+	 * @return A {@link JSONObject} containing the JSON response or an error code.
+	 * @throws IOException If the intent could not be written to the journal, in which case nothing was sent
+	 */
+	public JSONObject updateRRData(int rrId, String rdata, Integer ttl) throws IOException {
+		Map<String, String> args = new LinkedHashMap<String, String>() ;
+		args.put("rr_id", Integer.toString(rrId)) ;
+		args.put("rdata", rdata) ;
+		args.put("ttl", (ttl!=null)?ttl.toString():null) ;
+		return execute(UPDATE_RECORD, args) ;
+	}
+
+	/**
+	 * @see ManagementAPI#removeRR(int, boolean)
+	 * @param rrId The ID of the record
+	 * @return A {@link JSONObject} containing the JSON response or an error code.
+	 * @throws IOException If the intent could not be written to the journal, in which case nothing was sent
+	 */
+	public JSONObject removeRR(int rrId) throws IOException {
+		Map<String, String> args = new LinkedHashMap<String, String>() ;
+		args.put("rr_id", Integer.toString(rrId)) ;
+		return execute(REMOVE_RECORD, args) ;
+	}
+
+	private JSONObject execute(String operation, Map<String, String> args) throws IOException {
+		args.put(MutationJournal.KEY, key) ;
+		long sequence = journal.begin(operation, args) ;
+		JSONObject response = send(operation, args) ;
+		complete(sequence, response) ;
+		return response ;
+	}
+
+	private void complete(long sequence, JSONObject response) {
+		ApiResult result = ApiResult.fromResponse(response) ;
+		if (result.isSuccess()) {
+			journal.complete(sequence, true, null) ;
+		} else if (!result.getError().isRetryable()) {
+			// The server refused the call, so it certainly did not land and there is nothing to recover
+			journal.complete(sequence, false, result.getError().getMessage()) ;
+		}
+		// A retryable failure may or may not have landed, so it stays open for recovery to check
+	}
+
+	private JSONObject send(String operation, Map<String, String> args) {
+		String domain = args.get("domain") ;
+		String host = args.get("host") ;
+		String rdata = args.get("rdata") ;
+		Integer ttl = intArg(args, "ttl") ;
+		if (CREATE_HOSTNAME.equals(operation)) {
+			return api.createHostname(domain, false, host, false, null) ;
+		} else if (CREATE_RECORD.equals(operation)) {
+			String type = args.get("type") ;
+			if ("MX".equals(type)) {
+				Integer priority = intArg(args, "priority") ;
+				return api.createMXRecord(domain, false, host, rdata, (priority!=null)?priority.intValue():10, false, null, null, null, null, ttl) ;
+			} else if ("TXT".equals(type)) {
+				return api.createTXTRecord(domain, false, host, rdata, false, null, null, null, null, ttl) ;
+			}
+			return api.createDefaultRecord(domain, false, host, rdata, type, false, null, null, null, null, ttl) ;
+		} else if (UPDATE_RECORD.equals(operation)) {
+			return api.updateRRData(intArg(args, "rr_id"), rdata, ttl, null, Boolean.FALSE, null, null, null, null, null,
+					null, null, null, null, null, null, null) ;
+		} else if (REMOVE_RECORD.equals(operation)) {
+			return api.removeRR(intArg(args, "rr_id").intValue(), true) ;
+		}
+		throw new IllegalArgumentException("Unknown journal operation '"+operation+"'") ;
+	}
+
+	private static Integer intArg(Map<String, String> args, String name) {
+		String value = args.get(name) ;
+		return (value!=null)?Integer.valueOf(value):null ;
+	}
+
+	/**
+	 * Settle every operation in the journal which has no outcome: creates which the live zone already
+	 * holds are marked done, as are updates and removals of a record which a later, confirmed change
+	 * has overtaken; everything else is sent again. A create whose live zone cannot be read is left
+	 * open for the next recovery rather than risk a duplicate. The journal is compacted afterwards.
+	 * @return A {@link ProgressTracker} in which repeated operations count as succeeded or failed,
+	 * creates found already in place and overtaken changes count as skipped, and creates which could
+	 * not be checked count as failed
+	 * @throws IOException If the journal cannot be read or written
+	 */
+	public ProgressTracker recover() throws IOException {
+		List<MutationJournal.Entry> all = journal.entries() ;
+		Map<String, Long> lastConfirmed = new HashMap<String, Long>() ;
+		List<MutationJournal.Entry> open = new ArrayList<MutationJournal.Entry>() ;
+		for (MutationJournal.Entry entry: all) {
+			if (entry.getOutcome()==null) {
+				open.add(entry) ;
+			} else if (entry.getOutcome().booleanValue() && entry.getArg("rr_id")!=null) {
+				lastConfirmed.put(entry.getArg("rr_id"), Long.valueOf(entry.getSequence())) ;
+			}
+		}
+		ProgressTracker progress = new ProgressTracker("operations") ;
+		progress.setTotal(open.size()) ;
+		for (MutationJournal.Entry entry: open) {
+			Map<String, String> args = entry.getArgs() ;
+			Long later = (args.get("rr_id")!=null)?lastConfirmed.get(args.get("rr_id")):null ;
+			if (later!=null && later.longValue()>entry.getSequence()) {
+				journal.complete(entry.getSequence(), true, "Overtaken by change "+later+" on recovery") ;
+				progress.skipped() ;
+				continue ;
+			}
+			Boolean live = isLive(entry.getOperation(), args) ;
+			if (live==null) {
+				log.warn("Unable to check the live zone for "+entry+"; leaving it for the next recovery") ;
+				progress.failed() ;
+				continue ;
+			}
+			if (live.booleanValue()) {
+				journal.complete(entry.getSequence(), true, "Found in place on recovery") ;
+				progress.skipped() ;
+				continue ;
+			}
+			JSONObject response = send(entry.getOperation(), args) ;
+			ApiResult result = ApiResult.fromResponse(response) ;
+			if (result.isSuccess()) {
+				progress.succeeded() ;
+			} else {
+				log.warn("Unable to repeat "+entry+": "+result.getError()) ;
+				progress.failed() ;
+			}
+			complete(entry.getSequence(), response) ;
+		}
+		journal.flush() ;
+		journal.compact() ;
+		log.info("Recovery: "+progress) ;
+		return progress ;
+	}
+
+	/**
+	 * @return Is the result of a create operation already present in the live zone? <code>null</code>
+	 * if the zone could not be read, and always {@link Boolean#FALSE} for other operations.
+	 */
+	private Boolean isLive(String operation, Map<String, String> args) {
+		String domain = args.get("domain") ;
+		String host = args.get("host") ;
+		if (CREATE_HOSTNAME.equals(operation)) {
+			ApiResult result = ApiResult.fromResponse(api.getHostnamesForDomain(domain)) ;
+			if (!result.isSuccess()) {
+				return null ;
+			}
+			JSONArray hosts = result.getResponse().optJSONArray("data") ;
+			for (int x=0; hosts!=null && x<hosts.length(); x++) {
+				JSONObject entry = hosts.optJSONObject(x) ;
+				if (entry!=null && entry.optString("name").equalsIgnoreCase(host)) {
+					return Boolean.TRUE ;
+				}
+			}
+		} else if (CREATE_RECORD.equals(operation)) {
+			ApiResult result = ApiResult.fromResponse(api.getRRSetForHostname(domain, false, host)) ;
+			if (!result.isSuccess()) {
+				return null ;
+			}
+			JSONArray records = result.getResponse().optJSONArray("data") ;
+			String rdata = trimDot(args.get("rdata")) ;
+			for (int x=0; records!=null && x<records.length(); x++) {
+				JSONObject record = records.optJSONObject(x) ;
+				if (record!=null && record.optString("type").equalsIgnoreCase(args.get("type"))
+						&& trimDot(record.optString("rdata")).equalsIgnoreCase(rdata)) {
+					return Boolean.TRUE ;
+				}
+			}
+		}
+		return Boolean.FALSE ;
+	}
+
+	private static String trimDot(String name) {
+		return (name!=null && name.endsWith("."))?name.substring(0, name.length()-1):String.valueOf(name) ;
+	}
+}
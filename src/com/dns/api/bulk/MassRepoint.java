@@ -0,0 +1,239 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.bulk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dns.api.compiletime.ApiResult;
+import com.dns.api.compiletime.Deadline;
+import com.dns.api.compiletime.ManagementAPI;
+import com.dns.api.compiletime.ParallelRequests;
+
+/**
+ * Moves every A, AAAA or CNAME record which points at one target over to another, e.g. when a load
+ * balancer changes address. The affected records are found in a {@link RecordIndex}, their TTLs can
+ * optionally be lowered first so resolvers pick up the change quickly, and the updates are sent at a
+ * target rate with a bounded number in flight. Each zone which was changed is rebuilt once at the end
+ * of each phase rather than once per record.
+ * <p>
+ * Progress can be followed from another thread with {@link #getProgress()} while {@link #run()} works.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class MassRepoint {
+
+	private static final long REPORT_INTERVAL_MILLIS = 5000L ;
+
+	private final Logger log = LoggerFactory.getLogger(MassRepoint.class.getSimpleName()) ;
+	private final ManagementAPI api ;
+	private final RecordIndex index ;
+	private final String from ;
+	private final String to ;
+	private int concurrency = 8 ;
+	private double rate = 20.0 ;
+	private Integer lowTtl = null ;
+	private long ttlWaitMillis = 0 ;
+	private boolean keepLowTtl = false ;
+	private boolean dryRun = false ;
+	private volatile ProgressTracker progress = new ProgressTracker("records") ;
+	private final List<String> failures = new CopyOnWriteArrayList<String>() ;
+
+	/**
+	 * Constructor
+	 * @param api The {@link ManagementAPI} to make the changes with
+	 * @param index A {@link RecordIndex} of the account, see {@link RecordIndex#crawl(ManagementAPI, String, int)}
+	 * @param from The address or host name records currently point at
+	 * @param to The address or host name they should point at instead
+	 */
+	public MassRepoint(ManagementAPI api, RecordIndex index, String from, String to) {
+		super() ;
+		this.api = api ;
+		this.index = index ;
+		this.from = from ;
+		this.to = to ;
+	}
+
+	/**
+	 * @param concurrency The maximum number of updates to have in flight at once
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = Math.max(1, concurrency) ;
+	}
+
+	/**
+	 * @param rate The target number of updates to send per second
+	 */
+	public void setRate(double rate) {
+		this.rate = rate ;
+	}
+
+	/**
+	 * Lower the TTL of every affected record before it is repointed, then wait for resolvers to
+	 * forget the old, longer TTL before the repoint phase begins. The repoint phase puts each record's
+	 * original TTL back unless {@link #setKeepLowTtl(boolean)} is set.
+	 * @param ttl (OPTIONAL) The TTL to set first or <code>null</code> to repoint straight away
+	 * @param waitMillis How long to wait between the two phases, normally the largest old TTL
+	 */
+	public void setLowerTtlFirst(Integer ttl, long waitMillis) {
+		this.lowTtl = ttl ;
+		this.ttlWaitMillis = waitMillis ;
+	}
+
+	/**
+	 * @param keep Leave the lowered TTL on the repointed records, e.g. to be able to move them back
+	 * quickly, instead of restoring their original TTL?
+	 */
+	public void setKeepLowTtl(boolean keep) {
+		this.keepLowTtl = keep ;
+	}
+
+	/**
+	 * @param dryRun Only find and count the affected records without changing anything?
+	 */
+	public void setDryRun(boolean dryRun) {
+		this.dryRun = dryRun ;
+	}
+
+	/**
+	 * @return The progress of the current (or last) phase
+	 */
+	public ProgressTracker getProgress() {
+		return progress ;
+	}
+
+	/**
+	 * @return A description of each record or zone which could not be changed
+	 */
+	public List<String> getFailures() {
+		return Collections.unmodifiableList(failures) ;
+	}
+
+	/**
+	 * @return The records which currently point at the old target
+	 */
+	public List<RecordIndex.Entry> findAffected() {
+		List<RecordIndex.Entry> affected = new ArrayList<RecordIndex.Entry>() ;
+		for (RecordIndex.Entry entry: index.lookup(from)) {
+			String type = entry.getType() ;
+			if ("A".equals(type) || "AAAA".equals(type) || "CNAME".equals(type)) {
+				affected.add(entry) ;
+			}
+		}
+		return affected ;
+	}
+
+	/**
+	 * Repoint every affected record.
+	 * @return A {@link ProgressTracker} holding the final counts of the repoint phase
+	 * @throws InterruptedException If the thread is interrupted; updates already sent are not undone
+	 */
+	public ProgressTracker run() throws InterruptedException {
+		List<RecordIndex.Entry> affected = findAffected() ;
+		log.info(affected.size()+" records point at "+from) ;
+		if (dryRun) {
+			progress = new ProgressTracker("records") ;
+			progress.setTotal(affected.size()) ;
+			return progress ;
+		}
+		if (lowTtl!=null) {
+			log.info("Lowering TTLs to "+lowTtl) ;
+			Set<String> lowered = updateAll(affected, false) ;
+			rebuild(lowered) ;
+			if (ttlWaitMillis>0) {
+				log.info("Waiting "+ttlWaitMillis+"ms for the old TTLs to expire") ;
+				Thread.sleep(ttlWaitMillis) ;
+			}
+		}
+		log.info("Repointing to "+to) ;
+		Set<String> changed = updateAll(affected, true) ;
+		rebuild(changed) ;
+		log.info(progress.toString()) ;
+		return progress ;
+	}
+
+	/**
+	 * Send one update per record.
+	 * @param repoint Change the data to the new target (otherwise only the TTL is changed)?
+	 * @return The domains in which at least one record was updated
+	 */
+	private Set<String> updateAll(List<RecordIndex.Entry> records, final boolean repoint) throws InterruptedException {
+		final ProgressTracker phase = new ProgressTracker("records") ;
+		phase.setTotal(records.size()) ;
+		progress = phase ;
+		final Set<String> touched = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()) ;
+		ParallelRequests.Bounded bounded = new ParallelRequests.Bounded(api.getExecutor(), concurrency) ;
+		RateLimiter limiter = new RateLimiter(rate) ;
+		long lastReport = System.currentTimeMillis() ;
+		try {
+			for (final RecordIndex.Entry record: records) {
+				if (Deadline.isCurrentDone()) {
+					break ;
+				}
+				limiter.acquire() ;
+				bounded.submit(new Runnable() {
+					public void run() {
+						// Lowering sets the low TTL; repointing restores the original one unless asked to keep it low
+						Integer original = (record.getTtl()>0)?Integer.valueOf(record.getTtl()):null ;
+						Integer ttl = (lowTtl!=null && (!repoint || keepLowTtl))?lowTtl:original ;
+						String rdata = repoint?to:record.getRData() ;
+						ApiResult result = ApiResult.fromResponse(api.updateRRData(Integer.valueOf((int)record.getId()), rdata, ttl,
+								null, Boolean.FALSE, null, null, null, null, null, null, null, null, null, null, null, null)) ;
+						if (result.isSuccess()) {
+							if (!(api instanceof IndexingManagementAPI)) {
+								index.update(record.getId(), rdata, ttl) ;
+							}
+							touched.add(record.getDomain()) ;
+							phase.succeeded() ;
+						} else {
+							failures.add("Record "+record+": "+result.getError()) ;
+							phase.failed() ;
+						}
+					}
+				}) ;
+				long now = System.currentTimeMillis() ;
+				if (now-lastReport>=REPORT_INTERVAL_MILLIS) {
+					lastReport = now ;
+					log.info(phase.toString()) ;
+				}
+			}
+		} finally {
+			bounded.awaitAll() ;
+		}
+		return touched ;
+	}
+
+	private void rebuild(Set<String> domains) throws InterruptedException {
+		ParallelRequests.Bounded bounded = new ParallelRequests.Bounded(api.getExecutor(), concurrency) ;
+		RateLimiter limiter = new RateLimiter(rate) ;
+		try {
+			for (final String domain: domains) {
+				if (Deadline.isCurrentDone()) {
+					break ;
+				}
+				limiter.acquire() ;
+				bounded.submit(new Runnable() {
+					public void run() {
+						ApiResult result = ApiResult.fromResponse(api.rebuild(domain, false)) ;
+						if (!result.isSuccess()) {
+							failures.add("Rebuild of "+domain+": "+result.getError()) ;
+						}
+					}
+				}) ;
+			}
+		} finally {
+			bounded.awaitAll() ;
+		}
+		log.debug("Rebuilt "+domains.size()+" zones") ;
+	}
+}
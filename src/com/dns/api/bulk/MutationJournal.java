@@ -0,0 +1,430 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.bulk;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only log of the mutations a bulk job intends to make and of their outcomes, so that a job
+ * which dies part way through can tell which calls may not have landed. An intent is forced to disk
+ * before {@link #begin(String, Map)} returns; callers which log intents at the same time share a
+ * single <code>fsync</code>, so the cost per call falls as concurrency rises. Outcomes are written
+ * with the next group of intents (or by {@link #flush()}); an outcome lost in a crash only means the
+ * operation is checked again on recovery.
+ * <p>
+ * Each line of the journal is either <code>I seq operation args</code> for an intent or
+ * <code>O seq OK|FAIL detail</code> for an outcome, with the arguments form encoded. A line which
+ * was cut short by a crash is ignored, and cut off when the journal is next opened so that new lines
+ * are not appended to it.
+ * <p>
+ * An intent logged with a {@link #KEY} argument, naming the input it came from, is kept through
+ * {@link #compact()} together with its outcome, so a job which is run again can tell which of its
+ * inputs were already applied.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class MutationJournal {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8") ;
+
+	/** The argument naming the input an intent came from, e.g. a file and line number */
+	public static final String KEY = "key" ;
+
+	/**
+	 * An intended mutation read back from the journal
+	 */
+	public static final class Entry {
+		private final long sequence ;
+		private final String operation ;
+		private final Map<String, String> args ;
+		private Boolean outcome = null ;
+
+		Entry(long sequence, String operation, Map<String, String> args) {
+			this.sequence = sequence ;
+			this.operation = operation ;
+			this.args = args ;
+		}
+
+		public long getSequence() {
+			return sequence ;
+		}
+
+		public String getOperation() {
+			return operation ;
+		}
+
+		/**
+		 * @return The arguments of the operation, in the order they were logged
+		 */
+		public Map<String, String> getArgs() {
+			return Collections.unmodifiableMap(args) ;
+		}
+
+		/**
+		 * @param name The name of an argument
+		 * @return The value of the argument, or <code>null</code> if it was not logged
+		 */
+		public String getArg(String name) {
+			return args.get(name) ;
+		}
+
+		/**
+		 * @return {@link Boolean#TRUE} if the mutation was logged as having taken effect, {@link Boolean#FALSE}
+		 * if it was logged as failed, or <code>null</code> if it has no outcome
+		 */
+		public Boolean getOutcome() {
+			return outcome ;
+		}
+
+		public String toString() {
+			return sequence+" "+operation+" "+args ;
+		}
+	}
+
+	private final File file ;
+	private final Object lock = new Object() ;
+	private final StringBuilder pending = new StringBuilder() ;
+	private FileOutputStream out ;
+	private FileChannel channel ;
+	private long nextSequence = 1 ;
+	private long appended = 0 ;
+	private long durable = 0 ;
+	private boolean syncing = false ;
+	private long syncCount = 0 ;
+
+	/**
+	 * Open a journal, creating the file if it does not exist. Sequence numbers continue from those
+	 * already in the file.
+	 * @param file The journal file
+	 * @throws IOException If the journal cannot be read or opened for writing
+	 */
+	public MutationJournal(File file) throws IOException {
+		super() ;
+		this.file = file ;
+		for (Entry entry: read(file, true)) {
+			nextSequence = Math.max(nextSequence, entry.sequence+1) ;
+		}
+		truncatePartialLine(file) ;
+		open(true) ;
+	}
+
+	/**
+	 * Cut off a last line which a crash left without its newline, so the next line written starts
+	 * on a line of its own instead of being read back as part of the fragment.
+	 */
+	private static void truncatePartialLine(File file) throws IOException {
+		if (!file.exists()) {
+			return ;
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "rw") ;
+		try {
+			long end = raf.length() ;
+			long keep = end ;
+			while (keep>0) {
+				raf.seek(keep-1) ;
+				if (raf.read()=='\n') {
+					break ;
+				}
+				keep-- ;
+			}
+			if (keep<end) {
+				raf.setLength(keep) ;
+				raf.getChannel().force(false) ;
+			}
+		} finally {
+			raf.close() ;
+		}
+	}
+
+	private void open(boolean append) throws IOException {
+		this.out = new FileOutputStream(file, append) ;
+		this.channel = out.getChannel() ;
+	}
+
+	/**
+	 * Log an intended mutation and wait until it is on disk.
+	 * @param operation The name of the operation
+	 * @param args The arguments needed to check for and repeat the operation
+	 * @return The sequence number to pass to {@link #complete(long, boolean, String)}
+	 * @throws IOException If the journal cannot be written
+	 */
+	public long begin(String operation, Map<String, String> args) throws IOException {
+		long sequence ;
+		long ticket ;
+		synchronized (lock) {
+			sequence = nextSequence++ ;
+			pending.append("I ").append(sequence).append(' ').append(encode(operation)).append(' ') ;
+			boolean first = true ;
+			for (Map.Entry<String, String> arg: args.entrySet()) {
+				if (arg.getValue()==null) {
+					continue ;
+				}
+				if (!first) {
+					pending.append('&') ;
+				}
+				pending.append(encode(arg.getKey())).append('=').append(encode(arg.getValue())) ;
+				first = false ;
+			}
+			pending.append('\n') ;
+			ticket = ++appended ;
+		}
+		sync(ticket) ;
+		return sequence ;
+	}
+
+	/**
+	 * Log the outcome of a mutation. This does not wait for the disk.
+	 * @param sequence The sequence number returned by {@link #begin(String, Map)}
+	 * @param success Did the mutation take effect?
+	 * @param detail (OPTIONAL) A short description of the outcome or <code>null</code>
+	 */
+	public void complete(long sequence, boolean success, String detail) {
+		synchronized (lock) {
+			pending.append("O ").append(sequence).append(' ').append(success?"OK":"FAIL").append(' ') ;
+			pending.append(encode((detail!=null)?detail:"")).append('\n') ;
+			appended++ ;
+		}
+	}
+
+	/**
+	 * Force everything logged so far, including outcomes, to disk.
+	 * @throws IOException If the journal cannot be written
+	 */
+	public void flush() throws IOException {
+		long ticket ;
+		synchronized (lock) {
+			ticket = appended ;
+		}
+		sync(ticket) ;
+	}
+
+	/**
+	 * Wait until everything up to a ticket is on disk. Whichever caller finds no write in progress
+	 * writes and forces everything pending, including lines added by other callers while it waited.
+	 */
+	private void sync(long ticket) throws IOException {
+		while (true) {
+			byte[] batch ;
+			long upTo ;
+			synchronized (lock) {
+				while (durable<ticket && syncing) {
+					try {
+						lock.wait() ;
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt() ;
+						throw new IOException("Interrupted while waiting for the journal to be written") ;
+					}
+				}
+				if (durable>=ticket) {
+					return ;
+				}
+				syncing = true ;
+				batch = pending.toString().getBytes(UTF8) ;
+				pending.setLength(0) ;
+				upTo = appended ;
+			}
+			IOException failure = null ;
+			try {
+				out.write(batch) ;
+				channel.force(false) ;
+			} catch (IOException ioe) {
+				failure = ioe ;
+			}
+			synchronized (lock) {
+				syncing = false ;
+				if (failure==null) {
+					durable = upTo ;
+					syncCount++ ;
+				}
+				lock.notifyAll() ;
+			}
+			if (failure!=null) {
+				throw failure ;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of times the journal has been forced to disk, for comparison with the
+	 * number of intents logged
+	 */
+	public long getSyncCount() {
+		synchronized (lock) {
+			return syncCount ;
+		}
+	}
+
+	/**
+	 * @return The intents in the journal which have no outcome, oldest first
+	 * @throws IOException If the journal cannot be read
+	 */
+	public List<Entry> unconfirmed() throws IOException {
+		flush() ;
+		return read(file, false) ;
+	}
+
+	/**
+	 * @return Every intent in the journal, oldest first, each with its outcome if one was logged
+	 * @throws IOException If the journal cannot be read
+	 */
+	public List<Entry> entries() throws IOException {
+		flush() ;
+		return read(file, true) ;
+	}
+
+	/**
+	 * Rewrite the journal so that it holds only the intents which have no outcome, and those logged
+	 * with a {@link #KEY} together with their outcome.
+	 * @throws IOException If the journal cannot be rewritten
+	 */
+	public void compact() throws IOException {
+		synchronized (lock) {
+			flush() ;
+			while (syncing) {
+				try {
+					lock.wait() ;
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt() ;
+					throw new IOException("Interrupted while waiting for the journal to be written") ;
+				}
+			}
+			List<Entry> kept = read(file, true) ;
+			File temp = new File(file.getPath()+".tmp") ;
+			FileOutputStream tempOut = new FileOutputStream(temp) ;
+			try {
+				StringBuilder sb = new StringBuilder() ;
+				for (Entry entry: kept) {
+					if (entry.outcome!=null && !entry.args.containsKey(KEY)) {
+						continue ;
+					}
+					sb.append("I ").append(entry.sequence).append(' ').append(encode(entry.operation)).append(' ') ;
+					boolean first = true ;
+					for (Map.Entry<String, String> arg: entry.args.entrySet()) {
+						sb.append(first?"":"&").append(encode(arg.getKey())).append('=').append(encode(arg.getValue())) ;
+						first = false ;
+					}
+					sb.append('\n') ;
+					if (entry.outcome!=null) {
+						sb.append("O ").append(entry.sequence).append(' ').append(entry.outcome.booleanValue()?"OK":"FAIL").append(" \n") ;
+					}
+				}
+				tempOut.write(sb.toString().getBytes(UTF8)) ;
+				tempOut.getChannel().force(false) ;
+			} finally {
+				tempOut.close() ;
+			}
+			out.close() ;
+			if (!temp.renameTo(file)) {
+				file.delete() ;
+				if (!temp.renameTo(file)) {
+					open(true) ;
+					throw new IOException("Unable to replace journal file '"+file+"'") ;
+				}
+			}
+			open(true) ;
+		}
+	}
+
+	/**
+	 * Flush and close the journal
+	 * @throws IOException If the journal cannot be written
+	 */
+	public void close() throws IOException {
+		flush() ;
+		synchronized (lock) {
+			out.close() ;
+		}
+	}
+
+	/**
+	 * Read the intents in a journal file.
+	 * @param all Return every intent with its outcome, rather than only those with no outcome?
+	 */
+	private static List<Entry> read(File file, boolean all) throws IOException {
+		Map<Long, Entry> intents = new LinkedHashMap<Long, Entry>() ;
+		if (!file.exists()) {
+			return new ArrayList<Entry>() ;
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8)) ;
+		try {
+			StringBuilder line = new StringBuilder() ;
+			int c ;
+			while ((c = reader.read())!=-1) {
+				if (c!='\n') {
+					line.append((char)c) ;
+					continue ;
+				}
+				String[] parts = line.toString().split(" ", 4) ;
+				line.setLength(0) ;
+				if (parts.length<3) {
+					continue ;
+				}
+				long sequence ;
+				try {
+					sequence = Long.parseLong(parts[1]) ;
+				} catch (NumberFormatException nfe) {
+					continue ;
+				}
+				if ("I".equals(parts[0])) {
+					Map<String, String> args = new LinkedHashMap<String, String>() ;
+					String encoded = (parts.length>3)?parts[3]:"" ;
+					for (String pair: encoded.split("&")) {
+						int equals = pair.indexOf('=') ;
+						if (equals>0) {
+							args.put(decode(pair.substring(0, equals)), decode(pair.substring(equals+1))) ;
+						}
+					}
+					intents.put(sequence, new Entry(sequence, decode(parts[2]), args)) ;
+				} else if ("O".equals(parts[0])) {
+					if (!all) {
+						intents.remove(sequence) ;
+					} else if (intents.containsKey(sequence)) {
+						intents.get(sequence).outcome = Boolean.valueOf("OK".equals(parts[2])) ;
+					}
+				}
+			}
+			// Anything left in 'line' was cut short by a crash and is ignored
+		} finally {
+			reader.close() ;
+		}
+		return new ArrayList<Entry>(intents.values()) ;
+	}
+
+	private static String encode(String text) {
+		try {
+			return URLEncoder.encode(text, "UTF-8") ;
+		} catch (UnsupportedEncodingException uee) {
+			// Every Java platform supports UTF-8
+			return text ;
+		}
+	}
+
+	private static String decode(String text) {
+		try {
+			return URLDecoder.decode(text, "UTF-8") ;
+		} catch (UnsupportedEncodingException uee) {
+			return text ;
+		} catch (IllegalArgumentException iae) {
+			return text ;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.bulk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the outcomes of a bulk job as it runs and reports its throughput. Safe to update from
+ * many threads at once.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class ProgressTracker {
+
+	private final String unit ;
+	private final long startNanos = System.nanoTime() ;
+	private final AtomicLong succeeded = new AtomicLong() ;
+	private final AtomicLong skipped = new AtomicLong() ;
+	private final AtomicLong failed = new AtomicLong() ;
+	private volatile long total = -1 ;
+
+	/**
+	 * Constructor
+	 * @param unit The name of the items being processed, e.g. "users"
+	 */
+	public ProgressTracker(String unit) {
+		super() ;
+		this.unit = unit ;
+	}
+
+	public void succeeded() {
+		succeeded.incrementAndGet() ;
+	}
+
+	/**
+	 * Record an item which needed no work, e.g. because an earlier run already did it
+	 */
+	public void skipped() {
+		skipped.incrementAndGet() ;
+	}
+
+	public void failed() {
+		failed.incrementAndGet() ;
+	}
+
+	/**
+	 * @param total The total number of items the job will process, if known in advance
+	 */
+	public void setTotal(long total) {
+		this.total = total ;
+	}
+
+	public long getSucceeded() {
+		return succeeded.get() ;
+	}
+
+	public long getSkipped() {
+		return skipped.get() ;
+	}
+
+	public long getFailed() {
+		return failed.get() ;
+	}
+
+	/**
+	 * @return The number of items processed so far, whatever their outcome
+	 */
+	public long getCompleted() {
+		return succeeded.get()+skipped.get()+failed.get() ;
+	}
+
+	public long getElapsedMillis() {
+		return (System.nanoTime()-startNanos)/1000000L ;
+	}
+
+	/**
+	 * @return The number of items processed per second since the job started
+	 */
+	public double getRatePerSecond() {
+		long elapsed = System.nanoTime()-startNanos ;
+		return (elapsed<=0)?0.0:getCompleted()*1.0e9/elapsed ;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder() ;
+		sb.append(getCompleted()) ;
+		if (total>=0) {
+			sb.append('/').append(total) ;
+		}
+		sb.append(' ').append(unit).append(" (") ;
+		sb.append(succeeded.get()).append(" succeeded, ") ;
+		sb.append(skipped.get()).append(" skipped, ") ;
+		sb.append(failed.get()).append(" failed) at ") ;
+		sb.append(String.format("%.1f", getRatePerSecond())).append(' ').append(unit).append("/sec") ;
+		return sb.toString() ;
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.bulk;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces calls out evenly to hold a bulk job to a target throughput. Each permit is scheduled one
+ * interval after the previous one; a caller which arrives after an idle period may use up to one
+ * second's worth of permits straight away, but never more.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class RateLimiter {
+
+	private final long intervalNanos ;
+	private final long maxBurstNanos ;
+	private long nextFree ;
+
+	/**
+	 * Constructor
+	 * @param permitsPerSecond The target rate, which must be positive
+	 */
+	public RateLimiter(double permitsPerSecond) {
+		super() ;
+		if (permitsPerSecond<=0) {
+			throw new IllegalArgumentException("The rate must be positive") ;
+		}
+		this.intervalNanos = Math.max(1L, (long)(TimeUnit.SECONDS.toNanos(1)/permitsPerSecond)) ;
+		this.maxBurstNanos = Math.max(intervalNanos, TimeUnit.SECONDS.toNanos(1)) ;
+		this.nextFree = System.nanoTime() ;
+	}
+
+	/**
+	 * @return The target rate in permits per second
+	 */
+	public double getRate() {
+		return TimeUnit.SECONDS.toNanos(1)/(double)intervalNanos ;
+	}
+
+	/**
+	 * Wait until the next permit is due.
+	 * @throws InterruptedException If the thread is interrupted while waiting
+	 */
+	public void acquire() throws InterruptedException {
+		long wait ;
+		synchronized (this) {
+			long now = System.nanoTime() ;
+			if (now-nextFree>maxBurstNanos) {
+				nextFree = now-maxBurstNanos ;
+			}
+			wait = nextFree-now ;
+			nextFree += intervalNanos ;
+		}
+		if (wait>0) {
+			TimeUnit.NANOSECONDS.sleep(wait) ;
+		}
+	}
+}
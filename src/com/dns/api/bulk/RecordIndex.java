@@ -0,0 +1,541 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.bulk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dns.api.compiletime.ApiResult;
+import com.dns.api.compiletime.Deadline;
+import com.dns.api.compiletime.ManagementAPI;
+import com.dns.api.compiletime.ParallelRequests;
+import com.dns.api.compiletime.Validation;
+
+/**
+ * An inverted index from record data to the records which hold it, for answering "what points at
+ * this address?" without walking the account. A and AAAA records are indexed by address, so they can
+ * also be found by CIDR prefix; CNAME, MX, NS and SRV records are indexed by their target name. Other
+ * record types are not indexed.
+ * <p>
+ * The index is filled by {@link #crawl(ManagementAPI, String, int)} and kept current by
+ * {@link IndexingManagementAPI}, or by calling the update methods directly. Lookups take a read lock
+ * and a single map probe, so any number of threads can query while updates are applied.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class RecordIndex {
+
+	/**
+	 * A record as it is held in the index
+	 */
+	public static final class Entry {
+		private final long id ;
+		private final String domain ;
+		private final String host ;
+		private final String type ;
+		private final String rdata ;
+		private final int ttl ;
+
+		Entry(long id, String domain, String host, String type, String rdata, int ttl) {
+			this.id = id ;
+			this.domain = domain ;
+			this.host = host ;
+			this.type = type ;
+			this.rdata = rdata ;
+			this.ttl = ttl ;
+		}
+
+		public long getId() {
+			return id ;
+		}
+
+		public String getDomain() {
+			return domain ;
+		}
+
+		/**
+		 * @return The host name within the domain, or an empty string for the root
+		 */
+		public String getHost() {
+			return host ;
+		}
+
+		public String getType() {
+			return type ;
+		}
+
+		public String getRData() {
+			return rdata ;
+		}
+
+		/**
+		 * @return The TTL, or -1 if it was not known
+		 */
+		public int getTtl() {
+			return ttl ;
+		}
+
+		public String toString() {
+			return id+" "+((host.length()==0)?domain:host+"."+domain)+" "+ttl+" "+type+" "+rdata ;
+		}
+	}
+
+	private final Logger log = LoggerFactory.getLogger(RecordIndex.class.getSimpleName()) ;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock() ;
+	private final Map<Long, Entry> byId = new HashMap<Long, Entry>() ;
+	/** Address records keyed by a fixed width hex form of the address, so that a prefix is a key range */
+	private final TreeMap<String, List<Entry>> byAddress = new TreeMap<String, List<Entry>>() ;
+	private final Map<String, List<Entry>> byTarget = new HashMap<String, List<Entry>>() ;
+	private final Map<String, List<Entry>> byLocation = new HashMap<String, List<Entry>>() ;
+
+	/**
+	 * Index every record of every domain in the account. Domains are fetched in parallel, each on its
+	 * own thread from the API's executor; records already in the index are replaced.
+	 * @param api The {@link ManagementAPI} to read the account with
+	 * @param filter (OPTIONAL) Only crawl domains containing this text or <code>null</code>
+	 * @param concurrency The maximum number of domains to crawl at once
+	 * @return A {@link ProgressTracker} counting the domains crawled
+	 * @throws InterruptedException If the thread is interrupted while waiting for the crawl to finish
+	 */
+	public ProgressTracker crawl(final ManagementAPI api, String filter, int concurrency) throws InterruptedException {
+		final ProgressTracker progress = new ProgressTracker("domains") ;
+		ApiResult domains = ApiResult.fromResponse(api.getDomains((filter!=null)?filter:"")) ;
+		if (!domains.isSuccess()) {
+			log.warn("Unable to list domains: "+domains.getError()) ;
+			progress.setTotal(0) ;
+			return progress ;
+		}
+		JSONArray data = domains.getResponse().optJSONArray("data") ;
+		int count = (data!=null)?data.length():0 ;
+		progress.setTotal(count) ;
+
+		ParallelRequests.Bounded bounded = new ParallelRequests.Bounded(api.getExecutor(), concurrency) ;
+		try {
+			for (int x=0; x<count; x++) {
+				JSONObject domain = data.optJSONObject(x) ;
+				if (domain==null) {
+					progress.skipped() ;
+					continue ;
+				}
+				final String name = domain.optString("name") ;
+				if (Deadline.isCurrentDone()) {
+					break ;
+				}
+				bounded.submit(new Runnable() {
+					public void run() {
+						if (refreshDomain(api, name)) {
+							progress.succeeded() ;
+						} else {
+							progress.failed() ;
+						}
+					}
+				}) ;
+			}
+		} finally {
+			bounded.awaitAll() ;
+		}
+		log.debug("Indexed "+size()+" records: "+progress) ;
+		return progress ;
+	}
+
+	/**
+	 * Re-read every host of one domain and replace its records in the index.
+	 * @param api The {@link ManagementAPI} to read the domain with
+	 * @param domain The domain
+	 * @return Were all of the domain's hosts read successfully?
+	 */
+	public boolean refreshDomain(ManagementAPI api, String domain) {
+		ApiResult hosts = ApiResult.fromResponse(api.getHostnamesForDomain(domain)) ;
+		if (!hosts.isSuccess()) {
+			log.warn("Unable to list hosts of "+domain+": "+hosts.getError()) ;
+			return false ;
+		}
+		JSONArray data = hosts.getResponse().optJSONArray("data") ;
+		boolean complete = true ;
+		for (int x=0; data!=null && x<data.length(); x++) {
+			JSONObject host = data.optJSONObject(x) ;
+			if (host!=null) {
+				complete &= refreshHost(api, domain, host.optString("name")) ;
+			}
+		}
+		return complete ;
+	}
+
+	/**
+	 * Re-read one host and replace its records in the index.
+	 * @param api The {@link ManagementAPI} to read the host with
+	 * @param domain The domain the host belongs to
+	 * @param host The host name within the domain, or an empty string for the root
+	 * @return Was the host read successfully?
+	 */
+	public boolean refreshHost(ManagementAPI api, String domain, String host) {
+		ApiResult records = ApiResult.fromResponse(api.getRRSetForHostname(domain, false, host)) ;
+		if (!records.isSuccess()) {
+			log.warn("Unable to read records of "+host+"."+domain+": "+records.getError()) ;
+			return false ;
+		}
+		JSONArray data = records.getResponse().optJSONArray("data") ;
+		List<Entry> entries = new ArrayList<Entry>() ;
+		for (int x=0; data!=null && x<data.length(); x++) {
+			Entry entry = toEntry(domain, host, data.optJSONObject(x)) ;
+			if (entry!=null) {
+				entries.add(entry) ;
+			}
+		}
+		lock.writeLock().lock() ;
+		try {
+			removeMatching(domain, host) ;
+			for (Entry entry: entries) {
+				insert(entry) ;
+			}
+		} finally {
+			lock.writeLock().unlock() ;
+		}
+		return true ;
+	}
+
+	/**
+	 * Build an {@link Entry} from a record as the API returns it.
+	 * @return The entry, or <code>null</code> if the record is of a type which is not indexed
+	 */
+	static Entry toEntry(String domain, String host, JSONObject record) {
+		if (record==null || !record.has("id")) {
+			return null ;
+		}
+		String type = record.optString("type").toUpperCase() ;
+		if (!isIndexed(type)) {
+			return null ;
+		}
+		String rdata = record.optString("rdata", record.optString("answer", "")) ;
+		return new Entry(record.optLong("id"), domain, (host!=null)?host:"", type, rdata, record.optInt("ttl", -1)) ;
+	}
+
+	/**
+	 * @param type An upper case record type
+	 * @return Are records of this type held in the index?
+	 */
+	static boolean isIndexed(String type) {
+		return "A".equals(type) || "AAAA".equals(type) || "CNAME".equals(type) || "MX".equals(type)
+				|| "NS".equals(type) || "SRV".equals(type) ;
+	}
+
+	/**
+	 * Add a record to the index, replacing any record with the same ID.
+	 * @param id The record ID
+	 * @param domain The domain the record belongs to
+	 * @param host The host name within the domain, or an empty string for the root
+	 * @param type The record type; types which are not indexed are ignored
+	 * @param rdata The record data
+	 * @param ttl The TTL, or -1 if it is not known
+	 */
+	public void put(long id, String domain, String host, String type, String rdata, int ttl) {
+		String upper = type.toUpperCase() ;
+		if (!isIndexed(upper)) {
+			return ;
+		}
+		Entry entry = new Entry(id, domain, (host!=null)?host:"", upper, rdata, ttl) ;
+		lock.writeLock().lock() ;
+		try {
+			insert(entry) ;
+		} finally {
+			lock.writeLock().unlock() ;
+		}
+	}
+
+	/**
+	 * Apply an update of a record's data and TTL.
+	 * @param id The record ID
+	 * @param rdata The new record data
+	 * @param ttl (OPTIONAL) The new TTL or <code>null</code> if it was not changed
+	 * @return Was the record in the index?
+	 */
+	public boolean update(long id, String rdata, Integer ttl) {
+		lock.writeLock().lock() ;
+		try {
+			Entry old = byId.get(id) ;
+			if (old==null) {
+				return false ;
+			}
+			insert(new Entry(id, old.domain, old.host, old.type, (rdata!=null)?rdata:old.rdata, (ttl!=null)?ttl.intValue():old.ttl)) ;
+			return true ;
+		} finally {
+			lock.writeLock().unlock() ;
+		}
+	}
+
+	/**
+	 * Remove a record from the index.
+	 * @param id The record ID
+	 * @return Was the record in the index?
+	 */
+	public boolean remove(long id) {
+		lock.writeLock().lock() ;
+		try {
+			Entry old = byId.remove(id) ;
+			if (old!=null) {
+				unlink(old) ;
+			}
+			return old!=null ;
+		} finally {
+			lock.writeLock().unlock() ;
+		}
+	}
+
+	/**
+	 * Remove the records of a host, or of a whole domain.
+	 * @param domain The domain
+	 * @param host (OPTIONAL) The host within the domain or <code>null</code> for every host of the domain
+	 * @return The number of records removed
+	 */
+	public int removeAll(String domain, String host) {
+		lock.writeLock().lock() ;
+		try {
+			return removeMatching(domain, host) ;
+		} finally {
+			lock.writeLock().unlock() ;
+		}
+	}
+
+	private int removeMatching(String domain, String host) {
+		if (host!=null) {
+			List<Entry> entries = byLocation.get(locationKey(domain, host)) ;
+			if (entries==null) {
+				return 0 ;
+			}
+			List<Entry> removed = new ArrayList<Entry>(entries) ;
+			for (Entry entry: removed) {
+				byId.remove(entry.id) ;
+				unlink(entry) ;
+			}
+			return removed.size() ;
+		}
+		int removed = 0 ;
+		Iterator<Entry> entries = byId.values().iterator() ;
+		while (entries.hasNext()) {
+			Entry entry = entries.next() ;
+			if (entry.domain.equalsIgnoreCase(domain)) {
+				entries.remove() ;
+				unlink(entry) ;
+				removed++ ;
+			}
+		}
+		return removed ;
+	}
+
+	/**
+	 * Must be called with the write lock held
+	 */
+	private void insert(Entry entry) {
+		Entry old = byId.put(entry.id, entry) ;
+		if (old!=null) {
+			unlink(old) ;
+		}
+		String address = addressKey(entry.rdata) ;
+		if (address!=null) {
+			link(byAddress, address, entry) ;
+		} else {
+			link(byTarget, nameKey(entry.rdata), entry) ;
+		}
+		link(byLocation, locationKey(entry.domain, entry.host), entry) ;
+	}
+
+	private void unlink(Entry entry) {
+		unlink(byLocation, locationKey(entry.domain, entry.host), entry) ;
+		String address = addressKey(entry.rdata) ;
+		if (address!=null) {
+			unlink(byAddress, address, entry) ;
+		} else {
+			unlink(byTarget, nameKey(entry.rdata), entry) ;
+		}
+	}
+
+	private static void unlink(Map<String, List<Entry>> map, String key, Entry entry) {
+		List<Entry> entries = map.get(key) ;
+		if (entries!=null) {
+			entries.remove(entry) ;
+			if (entries.isEmpty()) {
+				map.remove(key) ;
+			}
+		}
+	}
+
+	private static void link(Map<String, List<Entry>> map, String key, Entry entry) {
+		List<Entry> entries = map.get(key) ;
+		if (entries==null) {
+			entries = new ArrayList<Entry>(1) ;
+			map.put(key, entries) ;
+		}
+		entries.add(entry) ;
+	}
+
+	/**
+	 * Find every record whose data is exactly this address or name. Names are compared without case
+	 * and without a trailing dot; addresses are compared by value, so <code>2001:db8::1</code> matches
+	 * <code>2001:0db8:0:0:0:0:0:1</code>.
+	 * @param rdata The address or name to look for
+	 * @return The matching records, possibly empty
+	 */
+	public List<Entry> lookup(String rdata) {
+		String address = addressKey(rdata) ;
+		lock.readLock().lock() ;
+		try {
+			List<Entry> entries = (address!=null)?byAddress.get(address):byTarget.get(nameKey(rdata)) ;
+			return (entries!=null)?new ArrayList<Entry>(entries):Collections.<Entry>emptyList() ;
+		} finally {
+			lock.readLock().unlock() ;
+		}
+	}
+
+	/**
+	 * Find every A or AAAA record whose address falls within a CIDR prefix.
+	 * @param cidr A prefix such as <code>192.0.2.0/24</code> or <code>2001:db8::/32</code>
+	 * @return The matching records, possibly empty
+	 */
+	public List<Entry> lookupPrefix(String cidr) {
+		int slash = cidr.indexOf('/') ;
+		String address = addressKey((slash>=0)?cidr.substring(0, slash):cidr) ;
+		if (address==null) {
+			throw new IllegalArgumentException("'"+cidr+"' is not a CIDR prefix") ;
+		}
+		int width = (address.length()-2)*4 ;
+		int bits = (slash>=0)?Integer.parseInt(cidr.substring(slash+1).trim()):width ;
+		if (bits<0 || bits>width) {
+			throw new IllegalArgumentException("'"+cidr+"' has an invalid prefix length") ;
+		}
+		char[] low = address.toCharArray() ;
+		char[] high = address.toCharArray() ;
+		for (int bit=bits; bit<width; bit++) {
+			int index = 2+bit/4 ;
+			int mask = 8 >> (bit%4) ;
+			low[index] = HEX[Character.digit(low[index], 16) & ~mask] ;
+			high[index] = HEX[Character.digit(high[index], 16) | mask] ;
+		}
+		List<Entry> result = new ArrayList<Entry>() ;
+		lock.readLock().lock() ;
+		try {
+			for (List<Entry> entries: byAddress.subMap(new String(low), true, new String(high), true).values()) {
+				result.addAll(entries) ;
+			}
+		} finally {
+			lock.readLock().unlock() ;
+		}
+		return result ;
+	}
+
+	/**
+	 * @return The number of records in the index
+	 */
+	public int size() {
+		lock.readLock().lock() ;
+		try {
+			return byId.size() ;
+		} finally {
+			lock.readLock().unlock() ;
+		}
+	}
+
+	/**
+	 * Empty the index
+	 */
+	public void clear() {
+		lock.writeLock().lock() ;
+		try {
+			byId.clear() ;
+			byAddress.clear() ;
+			byTarget.clear() ;
+			byLocation.clear() ;
+		} finally {
+			lock.writeLock().unlock() ;
+		}
+	}
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray() ;
+
+	private static String locationKey(String domain, String host) {
+		return nameKey(domain)+" "+nameKey(host) ;
+	}
+
+	private static String nameKey(String name) {
+		String key = name.trim().toLowerCase() ;
+		return (key.endsWith("."))?key.substring(0, key.length()-1):key ;
+	}
+
+	/**
+	 * Render an address literal as "4:" or "6:" followed by its value as fixed width hex, so that
+	 * numeric order and string order agree.
+	 * @return The key, or <code>null</code> if the text is not an address literal
+	 */
+	static String addressKey(String text) {
+		if (text==null) {
+			return null ;
+		}
+		String value = text.trim() ;
+		if (Validation.isIPv4(value)) {
+			StringBuilder sb = new StringBuilder(10).append("4:") ;
+			appendIPv4(sb, value) ;
+			return sb.toString() ;
+		}
+		if (!Validation.isIPv6(value)) {
+			return null ;
+		}
+		int[] groups = new int[8] ;
+		int tail = value.lastIndexOf(':') ;
+		int count = 8 ;
+		String v4 = null ;
+		if (value.indexOf('.')>=0) {
+			v4 = value.substring(tail+1) ;
+			value = value.substring(0, tail+1)+"0:0" ;
+		}
+		int gap = value.indexOf("::") ;
+		String[] head = (gap<0)?value.split(":"):splitGroups(value.substring(0, gap)) ;
+		String[] rest = (gap<0)?new String[0]:splitGroups(value.substring(gap+2)) ;
+		for (int x=0; x<head.length; x++) {
+			groups[x] = Integer.parseInt(head[x], 16) ;
+		}
+		for (int x=0; x<rest.length; x++) {
+			groups[count-rest.length+x] = Integer.parseInt(rest[x], 16) ;
+		}
+		StringBuilder sb = new StringBuilder(34).append("6:") ;
+		int groupCount = (v4!=null)?6:8 ;
+		for (int x=0; x<groupCount; x++) {
+			for (int shift=12; shift>=0; shift-=4) {
+				sb.append(HEX[(groups[x] >> shift) & 0xF]) ;
+			}
+		}
+		if (v4!=null) {
+			appendIPv4(sb, v4) ;
+		}
+		return sb.toString() ;
+	}
+
+	private static String[] splitGroups(String text) {
+		return (text.length()==0)?new String[0]:text.split(":") ;
+	}
+
+	private static void appendIPv4(StringBuilder sb, String value) {
+		int octet = 0 ;
+		for (int x=0; x<=value.length(); x++) {
+			if (x==value.length() || value.charAt(x)=='.') {
+				sb.append(HEX[octet >> 4]).append(HEX[octet & 0xF]) ;
+				octet = 0 ;
+			} else {
+				octet = octet*10+(value.charAt(x)-'0') ;
+			}
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.bulk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dns.api.compiletime.ApiResult;
+import com.dns.api.compiletime.ParallelRequests;
+import com.dns.api.compiletime.ResellerAPI;
+
+/**
+ * Creates reseller user accounts from a CSV file. The file is read as a stream and the accounts are
+ * created in parallel. Each user is looked up with {@link ResellerAPI#getUserDetails(String, String)}
+ * before it is created, so running the same file again never creates duplicates, and progress is
+ * checkpointed to a file so that an interrupted run resumes where it stopped. The checkpoint never
+ * passes a user which could not be created, so a rerun retries every failure.
+ * <p>
+ * The first line of the file names the columns. <code>email</code>, <code>password</code>,
+ * <code>first_name</code> and <code>last_name</code> are required; <code>phone</code>,
+ * <code>address1</code>, <code>address2</code>, <code>city</code>, <code>state_province</code>,
+ * <code>postal_code</code>, <code>country_iso2</code>, <code>fax</code>, <code>company</code> and
+ * <code>send_welcome_email</code> are optional.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class UserProvisioner {
+
+	private static final String[] REQUIRED_COLUMNS = {"email", "password", "first_name", "last_name"} ;
+	private static final long REPORT_INTERVAL_MILLIS = 5000L ;
+
+	private final Logger log = LoggerFactory.getLogger(UserProvisioner.class.getSimpleName()) ;
+	private final ResellerAPI api ;
+	private final String resellerCode ;
+	private final Checkpoint checkpoint ;
+	private final int concurrency ;
+	private int maxRetries = 2 ;
+
+	/**
+	 * Constructor
+	 * @param api The {@link ResellerAPI} to create the users with
+	 * @param resellerCode The unique ID of the reseller the users belong to
+	 * @param checkpointFile (OPTIONAL) The file to record progress in, or <code>null</code> to always start from the top
+	 * @param concurrency The maximum number of users to provision at the same time
+	 */
+	public UserProvisioner(ResellerAPI api, String resellerCode, File checkpointFile, int concurrency) {
+		super() ;
+		this.api = api ;
+		this.resellerCode = resellerCode ;
+		this.checkpoint = new Checkpoint(checkpointFile) ;
+		this.concurrency = Math.max(1, concurrency) ;
+	}
+
+	/**
+	 * @param retries The number of times to retry a user after a failure which may be temporary
+	 */
+	public void setMaxRetries(int retries) {
+		this.maxRetries = retries ;
+	}
+
+	/**
+	 * Provision every user in the input which an earlier run did not get to.
+	 * @param input The CSV input
+	 * @return A {@link ProgressTracker} holding the final counts
+	 * @throws IOException If the input or checkpoint cannot be read, or the input has no valid header
+	 */
+	public ProgressTracker run(Reader input) throws IOException {
+		CsvReader csv = new CsvReader(input) ;
+		String[] header = csv.next() ;
+		if (header==null) {
+			throw new IOException("The input is empty") ;
+		}
+		final Map<String, Integer> columns = new HashMap<String, Integer>() ;
+		for (int x=0; x<header.length; x++) {
+			columns.put(header[x].toLowerCase(), x) ;
+		}
+		for (String required: REQUIRED_COLUMNS) {
+			if (!columns.containsKey(required)) {
+				throw new IOException("The input has no '"+required+"' column") ;
+			}
+		}
+
+		long resumeAfter = checkpoint.load() ;
+		if (resumeAfter>0) {
+			log.info("Resuming after record "+resumeAfter) ;
+		}
+
+		final ProgressTracker progress = new ProgressTracker("users") ;
+		ParallelRequests.Bounded bounded = new ParallelRequests.Bounded(api.getExecutor(), concurrency) ;
+		long record = 0 ;
+		long lastReport = System.currentTimeMillis() ;
+		try {
+			String[] row ;
+			while ((row = csv.next())!=null) {
+				record++ ;
+				if (record<=resumeAfter) {
+					continue ;
+				}
+				final String[] fields = row ;
+				final long number = record ;
+				bounded.submit(new Runnable() {
+					public void run() {
+						try {
+							// A failed record holds the checkpoint back so that a rerun tries it again
+							if (provision(fields, columns, progress)) {
+								checkpoint.finished(number) ;
+							}
+						} catch (RuntimeException re) {
+							log.warn("Unexpected failure provisioning record "+number, re) ;
+							progress.failed() ;
+						}
+					}
+				}) ;
+				long now = System.currentTimeMillis() ;
+				if (now-lastReport>=REPORT_INTERVAL_MILLIS) {
+					lastReport = now ;
+					log.info(progress.toString()) ;
+				}
+			}
+			bounded.awaitAll() ;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt() ;
+			throw new InterruptedIOException("Interrupted after reading record "+record) ;
+		} finally {
+			checkpoint.save() ;
+		}
+		log.info(progress.toString()) ;
+		return progress ;
+	}
+
+	/**
+	 * @return <code>true</code> if the user was created or already existed
+	 */
+	private boolean provision(String[] fields, Map<String, Integer> columns, ProgressTracker progress) {
+		String email = field(fields, columns, "email") ;
+		if (email==null) {
+			log.warn("Skipping a record with no e-mail address") ;
+			progress.failed() ;
+			return false ;
+		}
+		for (int attempt=0; attempt<=maxRetries; attempt++) {
+			if (attempt>0) {
+				try {
+					Thread.sleep(500L*attempt) ;
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt() ;
+					break ;
+				}
+			}
+
+			ApiResult existing = ApiResult.fromResponse(api.getUserDetails(resellerCode, email)) ;
+			if (existing.isSuccess() && hasData(existing.getResponse())) {
+				progress.skipped() ;
+				return true ;
+			}
+			if (!existing.isSuccess() && existing.getError().isRetryable()) {
+				continue ;
+			}
+
+			String password = field(fields, columns, "password") ;
+			ApiResult created = ApiResult.fromResponse(api.createNewUser(resellerCode, email, password, password,
+					field(fields, columns, "first_name"), field(fields, columns, "last_name"),
+					field(fields, columns, "phone"), field(fields, columns, "address1"),
+					field(fields, columns, "address2"), field(fields, columns, "city"),
+					field(fields, columns, "state_province"), field(fields, columns, "postal_code"),
+					field(fields, columns, "country_iso2"), field(fields, columns, "fax"),
+					field(fields, columns, "company"), field(fields, columns, "send_welcome_email"))) ;
+			if (created.isSuccess()) {
+				progress.succeeded() ;
+				return true ;
+			}
+			if (!created.getError().isRetryable()) {
+				log.warn("Unable to create user '"+email+"': "+created.getError()) ;
+				break ;
+			}
+		}
+		progress.failed() ;
+		return false ;
+	}
+
+	private static boolean hasData(JSONObject response) {
+		Object data = response.opt("data") ;
+		if (data instanceof JSONArray) {
+			return ((JSONArray)data).length()>0 ;
+		} else if (data instanceof JSONObject) {
+			return ((JSONObject)data).length()>0 ;
+		}
+		return data!=null && data!=JSONObject.NULL && data.toString().length()>0 ;
+	}
+
+	/**
+	 * @return The URL encoded value of a column, or <code>null</code> if the column is absent or empty
+	 */
+	private static String field(String[] fields, Map<String, Integer> columns, String name) {
+		Integer index = columns.get(name) ;
+		if (index==null || index>=fields.length || fields[index].length()==0) {
+			return null ;
+		}
+		try {
+			// ResellerAPI passes its arguments through as-is, so they must be encoded here
+			return URLEncoder.encode(fields[index], "UTF-8") ;
+		} catch (UnsupportedEncodingException uee) {
+			// Every Java platform supports UTF-8
+			return fields[index] ;
+		}
+	}
+}
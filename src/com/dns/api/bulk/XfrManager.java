@@ -0,0 +1,404 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.bulk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dns.api.compiletime.ApiResult;
+import com.dns.api.compiletime.Deadline;
+import com.dns.api.compiletime.ManagementAPI;
+import com.dns.api.compiletime.ParallelRequests;
+import com.dns.api.compiletime.Validation;
+
+/**
+ * Audits and corrects the XFR (secondary zone) configurations of many domains at once. The
+ * configurations are fetched in parallel and cached, compared against a desired master, port and
+ * refresh interval, and the zones which differ are reconfigured concurrently at a target rate.
+ * <p>
+ * Progress can be followed from another thread with {@link #getProgress()} while a fetch or fix runs.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class XfrManager {
+
+	/** The port used by the API when none is given */
+	public static final int DEFAULT_PORT = 53 ;
+
+	/** The refresh interval used by the API when none is given, in seconds */
+	public static final int DEFAULT_REFRESH_INTERVAL = 3600 ;
+
+	/**
+	 * The XFR settings of one domain, or of one sub-domain within it
+	 */
+	public static final class Config {
+		private final String domain ;
+		private final String host ;
+		private final String master ;
+		private final int port ;
+		private final int refreshInterval ;
+
+		Config(String domain, String host, String master, int port, int refreshInterval) {
+			this.domain = domain ;
+			this.host = host ;
+			this.master = master ;
+			this.port = port ;
+			this.refreshInterval = refreshInterval ;
+		}
+
+		public String getDomain() {
+			return domain ;
+		}
+
+		/**
+		 * @return The sub-domain the settings apply to, or <code>null</code> for the root of the domain
+		 */
+		public String getHost() {
+			return host ;
+		}
+
+		public String getMaster() {
+			return master ;
+		}
+
+		public int getPort() {
+			return port ;
+		}
+
+		/**
+		 * @return The refresh interval in seconds
+		 */
+		public int getRefreshInterval() {
+			return refreshInterval ;
+		}
+
+		public String toString() {
+			return ((host!=null)?host+".":"")+domain+" master="+master+":"+port+" refresh="+refreshInterval ;
+		}
+	}
+
+	private final Logger log = LoggerFactory.getLogger(XfrManager.class.getSimpleName()) ;
+	private final ManagementAPI api ;
+	private final Map<String, List<Config>> cache = new ConcurrentHashMap<String, List<Config>>() ;
+	private final List<String> failures = new CopyOnWriteArrayList<String>() ;
+	private int concurrency = 8 ;
+	private double rate = 20.0 ;
+	private String master = null ;
+	private Integer port = null ;
+	private Integer refreshInterval = null ;
+	private int maxRetries = 2 ;
+	private volatile ProgressTracker progress = new ProgressTracker("domains") ;
+
+	/**
+	 * Constructor
+	 * @param api The {@link ManagementAPI} to read and change the XFR settings with
+	 */
+	public XfrManager(ManagementAPI api) {
+		super() ;
+		this.api = api ;
+	}
+
+	/**
+	 * @param concurrency The maximum number of calls to have in flight at once
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = Math.max(1, concurrency) ;
+	}
+
+	/**
+	 * @param retries The number of times to retry creating a zone's new settings after a failure which may be temporary
+	 */
+	public void setMaxRetries(int retries) {
+		this.maxRetries = retries ;
+	}
+
+	/**
+	 * @param rate The target number of changes to send per second when fixing zones
+	 */
+	public void setRate(double rate) {
+		this.rate = rate ;
+	}
+
+	/**
+	 * Set the desired XFR settings. Anything left as <code>null</code> is not checked.
+	 * @param master (OPTIONAL) The IP address every zone should transfer from or <code>null</code>
+	 * @param port (OPTIONAL) The port every zone should transfer on or <code>null</code>
+	 * @param refreshInterval (OPTIONAL) The refresh interval in seconds or <code>null</code>
+	 */
+	public void setPolicy(String master, Integer port, Integer refreshInterval) {
+		this.master = master ;
+		this.port = port ;
+		this.refreshInterval = refreshInterval ;
+	}
+
+	/**
+	 * @return The progress of the current (or last) fetch or fix
+	 */
+	public ProgressTracker getProgress() {
+		return progress ;
+	}
+
+	/**
+	 * @return A description of each domain or zone which could not be read or changed
+	 */
+	public List<String> getFailures() {
+		return Collections.unmodifiableList(failures) ;
+	}
+
+	/**
+	 * @param domain The name of the domain
+	 * @return The cached XFR settings of the domain, empty if it has none, or <code>null</code> if it
+	 * has not been fetched
+	 */
+	public List<Config> getCached(String domain) {
+		return cache.get(domain) ;
+	}
+
+	/**
+	 * @return The number of domains whose settings are cached
+	 */
+	public int getCachedCount() {
+		return cache.size() ;
+	}
+
+	/**
+	 * Discard all cached settings
+	 */
+	public void clear() {
+		cache.clear() ;
+	}
+
+	/**
+	 * Fetch the XFR settings of every domain in the account which matches a filter.
+	 * @param filter (OPTIONAL) The domain search filter or <code>null</code> for all domains
+	 * @return A {@link ProgressTracker} holding the final counts
+	 * @throws InterruptedException If the thread is interrupted while waiting for the calls
+	 */
+	public ProgressTracker fetchAll(String filter) throws InterruptedException {
+		ApiResult domains = ApiResult.fromResponse(api.getDomains((filter!=null)?filter:"")) ;
+		List<String> names = new ArrayList<String>() ;
+		if (domains.isSuccess()) {
+			JSONArray data = domains.getResponse().optJSONArray("data") ;
+			for (int x=0; data!=null && x<data.length(); x++) {
+				JSONObject domain = data.optJSONObject(x) ;
+				if (domain!=null) {
+					names.add(domain.optString("name")) ;
+				}
+			}
+		} else {
+			log.warn("Unable to list domains: "+domains.getError()) ;
+			failures.add("Domain list: "+domains.getError()) ;
+		}
+		return fetch(names) ;
+	}
+
+	/**
+	 * Fetch the XFR settings of each domain in parallel and cache them, replacing anything cached before.
+	 * @param domains The names of the domains
+	 * @return A {@link ProgressTracker} holding the final counts
+	 * @throws InterruptedException If the thread is interrupted while waiting for the calls
+	 */
+	public ProgressTracker fetch(Collection<String> domains) throws InterruptedException {
+		final ProgressTracker fetching = new ProgressTracker("domains") ;
+		fetching.setTotal(domains.size()) ;
+		progress = fetching ;
+		ParallelRequests.Bounded bounded = new ParallelRequests.Bounded(api.getExecutor(), concurrency) ;
+		try {
+			for (final String domain: domains) {
+				if (Deadline.isCurrentDone()) {
+					break ;
+				}
+				bounded.submit(new Runnable() {
+					public void run() {
+						ApiResult result = ApiResult.fromResponse(api.getXfrForZone(domain)) ;
+						if (result.isSuccess()) {
+							cache.put(domain, parse(domain, result.getResponse())) ;
+							fetching.succeeded() ;
+						} else {
+							failures.add("Fetch of "+domain+": "+result.getError()) ;
+							fetching.failed() ;
+						}
+					}
+				}) ;
+			}
+		} finally {
+			bounded.awaitAll() ;
+		}
+		log.info("Fetched XFR settings: "+fetching) ;
+		return fetching ;
+	}
+
+	private static List<Config> parse(String domain, JSONObject response) {
+		List<Config> configs = new ArrayList<Config>() ;
+		JSONArray data = response.optJSONArray("data") ;
+		if (data==null && response.optJSONObject("data")!=null) {
+			data = new JSONArray().put(response.optJSONObject("data")) ;
+		}
+		for (int x=0; data!=null && x<data.length(); x++) {
+			JSONObject xfr = data.optJSONObject(x) ;
+			if (xfr==null || xfr.optString("master", "").length()==0) {
+				continue ;
+			}
+			String host = xfr.optString("host", "") ;
+			configs.add(new Config(domain, (host.length()==0 || host.equalsIgnoreCase("null"))?null:host,
+					xfr.optString("master"), xfr.optInt("port", DEFAULT_PORT),
+					xfr.optInt("refresh_interval", DEFAULT_REFRESH_INTERVAL))) ;
+		}
+		return Collections.unmodifiableList(configs) ;
+	}
+
+	/**
+	 * @return The cached settings which differ from the policy set with {@link #setPolicy(String, Integer, Integer)}
+	 */
+	public List<Config> findDrift() {
+		List<Config> drift = new ArrayList<Config>() ;
+		for (List<Config> configs: cache.values()) {
+			for (Config config: configs) {
+				if (!matchesPolicy(config)) {
+					drift.add(config) ;
+				}
+			}
+		}
+		return drift ;
+	}
+
+	private boolean matchesPolicy(Config config) {
+		return (master==null || master.equalsIgnoreCase(config.getMaster()))
+				&& (port==null || port.intValue()==config.getPort())
+				&& (refreshInterval==null || refreshInterval.intValue()==config.getRefreshInterval()) ;
+	}
+
+	/**
+	 * Reconfigure every cached zone which differs from the policy. Each zone's settings are removed and
+	 * created again with the policy values in place of the ones that differ. A temporary failure to create
+	 * the new settings is retried, and if they still cannot be created the old ones are put back.
+	 * @return A {@link ProgressTracker} holding the final counts
+	 * @throws InterruptedException If the thread is interrupted; changes already sent are not undone
+	 */
+	public ProgressTracker fixDrift() throws InterruptedException {
+		return fix(findDrift()) ;
+	}
+
+	/**
+	 * Reconfigure the given zones to match the policy.
+	 * @param configs The current settings of the zones to change, normally from {@link #findDrift()}
+	 * @return A {@link ProgressTracker} holding the final counts
+	 * @throws InterruptedException If the thread is interrupted; changes already sent are not undone
+	 */
+	public ProgressTracker fix(List<Config> configs) throws InterruptedException {
+		final ProgressTracker fixing = new ProgressTracker("zones") ;
+		fixing.setTotal(configs.size()) ;
+		progress = fixing ;
+		ParallelRequests.Bounded bounded = new ParallelRequests.Bounded(api.getExecutor(), concurrency) ;
+		RateLimiter limiter = new RateLimiter(rate) ;
+		try {
+			for (final Config current: configs) {
+				if (Deadline.isCurrentDone()) {
+					break ;
+				}
+				limiter.acquire() ;
+				bounded.submit(new Runnable() {
+					public void run() {
+						if (apply(current)) {
+							fixing.succeeded() ;
+						} else {
+							fixing.failed() ;
+						}
+					}
+				}) ;
+			}
+		} finally {
+			bounded.awaitAll() ;
+		}
+		log.info("Fixed XFR settings: "+fixing) ;
+		return fixing ;
+	}
+
+	private boolean apply(Config current) {
+		Config wanted = new Config(current.getDomain(), current.getHost(),
+				(master!=null)?master:current.getMaster(),
+				(port!=null)?port.intValue():current.getPort(),
+				(refreshInterval!=null)?refreshInterval.intValue():current.getRefreshInterval()) ;
+		// createXfrZone refuses these without asking the server, and by then the old settings would be gone
+		String problem = (wanted.getMaster()==null || !Validation.isIPAddress(wanted.getMaster()))
+				?"The master '"+wanted.getMaster()+"' is not an IP address"
+				:Validation.checkRange("port", Integer.valueOf(wanted.getPort()), 1, 65535) ;
+		if (problem!=null) {
+			failures.add("Left "+current+" unchanged: "+problem) ;
+			return false ;
+		}
+		ApiResult removed = ApiResult.fromResponse(api.removeXfrZone(current.getDomain(), current.getHost())) ;
+		if (!removed.isSuccess()) {
+			failures.add("Removal of "+current+": "+removed.getError()) ;
+			return false ;
+		}
+		ApiResult created = create(wanted) ;
+		for (int attempt=1; attempt<=maxRetries && !created.isSuccess() && created.getError().isRetryable()
+				&& !Deadline.isCurrentDone(); attempt++) {
+			try {
+				Thread.sleep(500L*attempt) ;
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt() ;
+				break ;
+			}
+			created = create(wanted) ;
+		}
+		if (created.isSuccess()) {
+			replace(current, wanted) ;
+			return true ;
+		}
+
+		// Put the old settings back even if the caller's deadline has passed, so the zone keeps its secondary
+		Deadline outer = Deadline.current() ;
+		Deadline.exit(null) ;
+		ApiResult restored ;
+		try {
+			restored = create(current) ;
+		} finally {
+			Deadline.exit(outer) ;
+		}
+		if (restored.isSuccess()) {
+			failures.add("Creation of "+wanted+" failed, so "+current+" was put back: "+created.getError()) ;
+			return false ;
+		}
+		// Say exactly what the old settings were in case they must be put back by hand
+		failures.add("Creation of "+wanted+" failed and restoring "+current+" failed too, leaving it without XFR: "
+				+created.getError()+"; "+restored.getError()) ;
+		replace(current, null) ;
+		return false ;
+	}
+
+	private ApiResult create(Config config) {
+		return ApiResult.fromResponse(api.createXfrZone(config.getDomain(), config.getHost(), config.getMaster(),
+				Integer.valueOf(config.getPort()), Integer.valueOf(config.getRefreshInterval()))) ;
+	}
+
+	/**
+	 * Swap one cached configuration for another, or drop it if <code>replacement</code> is <code>null</code>
+	 */
+	private synchronized void replace(Config current, Config replacement) {
+		List<Config> configs = cache.get(current.getDomain()) ;
+		if (configs==null) {
+			return ;
+		}
+		List<Config> updated = new ArrayList<Config>(configs) ;
+		updated.remove(current) ;
+		if (replacement!=null) {
+			updated.add(replacement) ;
+		}
+		cache.put(current.getDomain(), Collections.unmodifiableList(updated)) ;
+	}
+}
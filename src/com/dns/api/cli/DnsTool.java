@@ -0,0 +1,654 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.cli;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.dns.api.bulk.JournaledMutations;
+import com.dns.api.bulk.MassRepoint;
+import com.dns.api.bulk.MutationJournal;
+import com.dns.api.bulk.ProgressTracker;
+import com.dns.api.bulk.RateLimiter;
+import com.dns.api.bulk.RecordIndex;
+import com.dns.api.compiletime.ApiError;
+import com.dns.api.compiletime.ApiResult;
+import com.dns.api.compiletime.BillingAPI;
+import com.dns.api.compiletime.ClientResources;
+import com.dns.api.compiletime.ManagementAPI;
+import com.dns.api.compiletime.ParallelRequests;
+import com.dns.api.compiletime.ResellerAPI;
+import com.dns.api.stats.HitStore;
+import com.dns.api.stats.HitsAggregator;
+import com.dns.api.stats.HitsReport;
+
+/**
+ * A command line tool over {@link ManagementAPI}, {@link BillingAPI} and {@link ResellerAPI} which
+ * writes its results as newline delimited JSON, one object per line, flushed as each is ready:
+ * <pre>
+ * dnstool [options] list domains|groups [filter]
+ * dnstool [options] list hosts &lt;domain&gt;
+ * dnstool [options] list group-hosts &lt;group&gt;
+ * dnstool [options] list records &lt;domain&gt; &lt;host&gt;
+ * dnstool [options] list users &lt;reseller code&gt; [filter]
+ * dnstool [options] dump [filter]
+ * dnstool [options] apply &lt;file|-&gt; [--journal &lt;file&gt;]
+ * dnstool [options] repoint &lt;from&gt; &lt;to&gt; [filter] [--dry-run] [--lower-ttl &lt;ttl&gt;[,&lt;wait ms&gt;] [--keep-low-ttl]]
+ * dnstool [options] hits &lt;yyyy-MM-dd&gt; &lt;yyyy-MM-dd&gt; [domain...] [--window &lt;days&gt;]
+ * dnstool [options] batch &lt;file|-&gt;
+ *
+ * options: --host &lt;api host&gt; --no-ssl --token &lt;token&gt; --concurrency &lt;n&gt; --rate &lt;per second&gt;
+ * </pre>
+ * The token may also be given in the <code>DNS_API_TOKEN</code> environment variable. Failures
+ * are written as lines with an <code>error</code> field rather than ending the run. In batch mode
+ * each line of the input is one command, all run in the same process over the same connection pool,
+ * and each is followed by a line with a <code>done</code> field holding its exit code.
+ * <p>
+ * The exit code is 0 when everything succeeded, 1 when anything failed and 2 for a usage error.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class DnsTool {
+
+	static final int EXIT_OK = 0 ;
+	static final int EXIT_FAILED = 1 ;
+	static final int EXIT_USAGE = 2 ;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8") ;
+
+	/** Options which take a value; every other option is a flag */
+	private static final List<String> VALUED = Arrays.asList("host", "token", "concurrency", "rate", "journal", "window", "lower-ttl") ;
+
+	private final ManagementAPI api ;
+	private final BillingAPI billing ;
+	private final ResellerAPI reseller ;
+	private final ClientResources resources ;
+	private final NdjsonWriter out ;
+	private final int concurrency ;
+	private final double rate ;
+
+	/**
+	 * Constructor
+	 * @param apiHost The API server to connect to
+	 * @param useSSL Connect with HTTPS?
+	 * @param apiToken The API token
+	 * @param concurrency The maximum number of calls to have in flight at once
+	 * @param rate The target number of changes to send per second
+	 * @param out Where to write the results
+	 */
+	DnsTool(String apiHost, boolean useSSL, String apiToken, int concurrency, double rate, NdjsonWriter out) {
+		super() ;
+		this.concurrency = Math.max(1, concurrency) ;
+		this.rate = rate ;
+		this.out = out ;
+		this.resources = new ClientResources(this.concurrency+2, null) ;
+		this.api = new ManagementAPI(apiHost, useSSL, apiToken) ;
+		this.billing = new BillingAPI(apiHost, useSSL, apiToken) ;
+		this.reseller = new ResellerAPI(apiHost, useSSL, apiToken) ;
+		api.setClientResources(resources) ;
+		billing.setClientResources(resources) ;
+		reseller.setClientResources(resources) ;
+		api.setBulkConcurrency(this.concurrency) ;
+	}
+
+	public static void main(String[] args) {
+		List<String> positional = new ArrayList<String>() ;
+		Map<String, String> options = new HashMap<String, String>() ;
+		// System.out would swallow the broken pipe when the reader exits, so write to the descriptor itself
+		NdjsonWriter out = new NdjsonWriter(new FileOutputStream(FileDescriptor.out)) ;
+		if (!parse(Arrays.asList(args), positional, options) || positional.isEmpty()) {
+			usage(out, "No command given") ;
+			System.exit(EXIT_USAGE) ;
+		}
+		String token = options.containsKey("token")?options.get("token"):System.getenv("DNS_API_TOKEN") ;
+		if (token==null) {
+			usage(out, "No API token given with --token or DNS_API_TOKEN") ;
+			System.exit(EXIT_USAGE) ;
+		}
+		DnsTool tool ;
+		try {
+			tool = new DnsTool(options.containsKey("host")?options.get("host"):"www.dns.com", !options.containsKey("no-ssl"), token,
+					options.containsKey("concurrency")?Integer.parseInt(options.get("concurrency")):8,
+					options.containsKey("rate")?Double.parseDouble(options.get("rate")):20.0, out) ;
+		} catch (NumberFormatException nfe) {
+			usage(out, "Invalid number: "+nfe.getMessage()) ;
+			System.exit(EXIT_USAGE) ;
+			return ;
+		}
+		int exitCode = tool.run(positional, options) ;
+		tool.resources.shutdown() ;
+		System.exit(exitCode) ;
+	}
+
+	/**
+	 * Split command line arguments into positional arguments and <code>--name [value]</code> options.
+	 * @return <code>false</code> if an option which needs a value has none
+	 */
+	static boolean parse(List<String> args, List<String> positional, Map<String, String> options) {
+		for (int x=0; x<args.size(); x++) {
+			String arg = args.get(x) ;
+			if (arg.startsWith("--") && arg.length()>2) {
+				String name = arg.substring(2) ;
+				if (VALUED.contains(name)) {
+					if (x+1>=args.size()) {
+						return false ;
+					}
+					options.put(name, args.get(++x)) ;
+				} else {
+					options.put(name, "true") ;
+				}
+			} else {
+				positional.add(arg) ;
+			}
+		}
+		return true ;
+	}
+
+	/**
+	 * Split a line of batch input into arguments on white space, keeping double quoted text together.
+	 */
+	static List<String> tokenize(String line) {
+		List<String> tokens = new ArrayList<String>() ;
+		StringBuilder current = null ;
+		boolean quoted = false ;
+		for (int x=0; x<line.length(); x++) {
+			char c = line.charAt(x) ;
+			if (c=='"') {
+				quoted = !quoted ;
+				if (current==null) {
+					current = new StringBuilder() ;
+				}
+			} else if (Character.isWhitespace(c) && !quoted) {
+				if (current!=null) {
+					tokens.add(current.toString()) ;
+					current = null ;
+				}
+			} else {
+				if (current==null) {
+					current = new StringBuilder() ;
+				}
+				current.append(c) ;
+			}
+		}
+		if (current!=null) {
+			tokens.add(current.toString()) ;
+		}
+		return tokens ;
+	}
+
+	/**
+	 * Run one command.
+	 * @param args The command and its positional arguments
+	 * @param options The options given with the command
+	 * @return The exit code of the command
+	 */
+	int run(List<String> args, Map<String, String> options) {
+		String command = args.get(0) ;
+		List<String> rest = args.subList(1, args.size()) ;
+		try {
+			if ("list".equals(command)) {
+				return list(rest) ;
+			} else if ("dump".equals(command)) {
+				return dump((rest.size()>0)?rest.get(0):"") ;
+			} else if ("apply".equals(command) && rest.size()==1) {
+				return apply(rest.get(0), options.get("journal")) ;
+			} else if ("repoint".equals(command) && rest.size()>=2) {
+				return repoint(rest.get(0), rest.get(1), (rest.size()>2)?rest.get(2):"", options) ;
+			} else if ("hits".equals(command) && rest.size()>=2) {
+				return hits(rest, options.containsKey("window")?Integer.parseInt(options.get("window")):0) ;
+			} else if ("batch".equals(command) && rest.size()==1) {
+				return batch(rest.get(0)) ;
+			}
+		} catch (NumberFormatException nfe) {
+			usage(out, "Invalid number: "+nfe.getMessage()) ;
+			return EXIT_USAGE ;
+		} catch (ParseException pe) {
+			usage(out, "Invalid date: "+pe.getMessage()) ;
+			return EXIT_USAGE ;
+		} catch (IOException ioe) {
+			out.write(line("error", ioe.toString())) ;
+			return EXIT_FAILED ;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt() ;
+			out.write(line("error", "Interrupted")) ;
+			return EXIT_FAILED ;
+		}
+		usage(out, "Unknown command or wrong arguments: "+args) ;
+		return EXIT_USAGE ;
+	}
+
+	private int list(List<String> args) {
+		String what = (args.size()>0)?args.get(0):"" ;
+		String arg = (args.size()>1)?args.get(1):"" ;
+		JSONObject response ;
+		if ("domains".equals(what)) {
+			response = api.getDomains(arg) ;
+		} else if ("groups".equals(what)) {
+			response = api.getDomainGroups(arg) ;
+		} else if ("hosts".equals(what) && args.size()==2) {
+			response = api.getHostnamesForDomain(arg) ;
+		} else if ("group-hosts".equals(what) && args.size()==2) {
+			response = api.getHostnamesForGroup(arg) ;
+		} else if ("records".equals(what) && args.size()==3) {
+			response = api.getRRSetForHostname(arg, false, args.get(2)) ;
+		} else if ("users".equals(what) && args.size()>=2) {
+			response = reseller.getUserList(arg, (args.size()>2)?args.get(2):"") ;
+		} else {
+			usage(out, "Unknown list: "+args) ;
+			return EXIT_USAGE ;
+		}
+		return writeData(response, null, null) ? EXIT_OK : EXIT_FAILED ;
+	}
+
+	/**
+	 * Write each element of a response's <code>data</code> as a line, or an error line if the call failed.
+	 * @param domain (OPTIONAL) A domain name to add to each line or <code>null</code>
+	 * @param host (OPTIONAL) A host name to add to each line or <code>null</code>
+	 * @return Did the call succeed?
+	 */
+	private boolean writeData(JSONObject response, String domain, String host) {
+		ApiResult result = ApiResult.fromResponse(response) ;
+		if (!result.isSuccess()) {
+			out.write(error(result.getError(), domain, host)) ;
+			return false ;
+		}
+		Object data = result.getResponse().opt("data") ;
+		if (data instanceof JSONArray) {
+			JSONArray array = (JSONArray)data ;
+			for (int x=0; x<array.length(); x++) {
+				JSONObject element = array.optJSONObject(x) ;
+				if (element!=null) {
+					out.write(locate(element, domain, host)) ;
+				}
+			}
+		} else if (data instanceof JSONObject) {
+			out.write(locate((JSONObject)data, domain, host)) ;
+		}
+		return true ;
+	}
+
+	/**
+	 * Write every record in the account, fetching the domains in parallel.
+	 */
+	private int dump(String filter) throws InterruptedException {
+		ApiResult domains = ApiResult.fromResponse(api.getDomains(filter)) ;
+		if (!domains.isSuccess()) {
+			out.write(error(domains.getError(), null, null)) ;
+			return EXIT_FAILED ;
+		}
+		JSONArray data = domains.getResponse().optJSONArray("data") ;
+		final AtomicInteger failures = new AtomicInteger() ;
+		ParallelRequests.Bounded bounded = new ParallelRequests.Bounded(api.getExecutor(), concurrency) ;
+		try {
+			for (int x=0; data!=null && x<data.length() && !out.isClosed(); x++) {
+				JSONObject domain = data.optJSONObject(x) ;
+				if (domain==null) {
+					continue ;
+				}
+				final String name = domain.optString("name") ;
+				bounded.submit(new Runnable() {
+					public void run() {
+						if (!dumpDomain(name)) {
+							failures.incrementAndGet() ;
+						}
+					}
+				}) ;
+			}
+		} finally {
+			bounded.awaitAll() ;
+		}
+		return (failures.get()==0)?EXIT_OK:EXIT_FAILED ;
+	}
+
+	private boolean dumpDomain(String domain) {
+		ApiResult hosts = ApiResult.fromResponse(api.getHostnamesForDomain(domain)) ;
+		if (!hosts.isSuccess()) {
+			out.write(error(hosts.getError(), domain, null)) ;
+			return false ;
+		}
+		boolean complete = true ;
+		JSONArray data = hosts.getResponse().optJSONArray("data") ;
+		for (int x=0; data!=null && x<data.length() && !out.isClosed(); x++) {
+			JSONObject host = data.optJSONObject(x) ;
+			if (host!=null) {
+				String name = host.optString("name") ;
+				complete &= writeData(api.getRRSetForHostname(domain, false, name), domain, name) ;
+			}
+		}
+		return complete ;
+	}
+
+	/**
+	 * Apply the changes in a file of JSON lines, e.g.
+	 * <code>{"op":"createRecord","domain":"example.com","host":"www","type":"A","rdata":"10.0.0.1","ttl":300}</code>.
+	 * The operations are <code>createHostname</code>, <code>createRecord</code>, <code>updateRRData</code>
+	 * and <code>removeRR</code>. Changes to the same domain (or record ID) are sent in file order, changes
+	 * to different ones in parallel.
+	 * <p>
+	 * With a journal each change is logged under the file name and line number it came from. Running
+	 * the same file again with the same journal first settles the changes an interrupted run left
+	 * unconfirmed, then skips every line whose change is already confirmed, so the run can be repeated
+	 * safely as long as the file is not edited in between. Lines read from standard input cannot be
+	 * told apart between runs, so they are only recovered, never skipped.
+	 * @param journal (OPTIONAL) A {@link MutationJournal} file which makes the run safe to repeat after a
+	 * crash, or <code>null</code>
+	 */
+	private int apply(String file, String journal) throws IOException, InterruptedException {
+		final JournaledMutations mutations ;
+		final Map<String, Boolean> applied ;
+		final String source = "-".equals(file)?null:new File(file).getCanonicalPath() ;
+		MutationJournal log = null ;
+		if (journal!=null) {
+			log = new MutationJournal(new File(journal)) ;
+			mutations = new JournaledMutations(api, log) ;
+			out.write(summary("recovered", mutations.recover())) ;
+			applied = mutations.keyedOutcomes() ;
+		} else {
+			mutations = null ;
+			applied = new HashMap<String, Boolean>() ;
+		}
+
+		Map<String, List<JSONObject>> lanes = new LinkedHashMap<String, List<JSONObject>>() ;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(open(file), UTF8)) ;
+		int total = 0 ;
+		int invalid = 0 ;
+		try {
+			String text ;
+			int lineNumber = 0 ;
+			while ((text = reader.readLine())!=null) {
+				lineNumber++ ;
+				if (text.trim().length()==0) {
+					continue ;
+				}
+				JSONObject op ;
+				try {
+					op = new JSONObject(text) ;
+					op.put("line", lineNumber) ;
+				} catch (JSONException jsone) {
+					out.write(line("error", "Line "+lineNumber+": "+jsone.getMessage())) ;
+					invalid++ ;
+					continue ;
+				}
+				String lane = op.has("domain")?op.optString("domain").toLowerCase():"rr:"+op.optString("rr_id") ;
+				List<JSONObject> ops = lanes.get(lane) ;
+				if (ops==null) {
+					ops = new ArrayList<JSONObject>() ;
+					lanes.put(lane, ops) ;
+				}
+				ops.add(op) ;
+				total++ ;
+			}
+		} finally {
+			reader.close() ;
+		}
+
+		final ProgressTracker progress = new ProgressTracker("changes") ;
+		progress.setTotal(total) ;
+		final RateLimiter limiter = new RateLimiter(rate) ;
+		ParallelRequests.Bounded bounded = new ParallelRequests.Bounded(api.getExecutor(), concurrency) ;
+		try {
+			for (final List<JSONObject> ops: lanes.values()) {
+				bounded.submit(new Runnable() {
+					public void run() {
+						try {
+							for (JSONObject op: ops) {
+								String key = (source!=null)?source+":"+op.opt("line"):null ;
+								if (key!=null && applied.containsKey(key)) {
+									// Applied, refused or left unconfirmed by an earlier run; sending it again could duplicate it
+									Boolean earlier = applied.get(key) ;
+									JSONObject outcome = put(line("line", op.opt("line")), "op", op.opt("op")) ;
+									put(outcome, "skipped", (earlier==null)?"unconfirmed":(earlier.booleanValue()?"applied":"refused")) ;
+									if (Boolean.TRUE.equals(earlier)) {
+										progress.skipped() ;
+									} else {
+										progress.failed() ;
+									}
+									out.write(outcome) ;
+									continue ;
+								}
+								limiter.acquire() ;
+								JSONObject response = applyOne(op, (mutations!=null && key!=null)?mutations.forKey(key):mutations) ;
+								ApiResult result = ApiResult.fromResponse(response) ;
+								JSONObject outcome = put(line("line", op.opt("line")), "op", op.opt("op")) ;
+								put(outcome, "success", Boolean.valueOf(result.isSuccess())) ;
+								if (result.isSuccess()) {
+									put(outcome, "data", result.getResponse().opt("data")) ;
+									progress.succeeded() ;
+								} else {
+									put(outcome, "error", result.getError().toJSON(false)) ;
+									progress.failed() ;
+								}
+								out.write(outcome) ;
+							}
+						} catch (InterruptedException ie) {
+							Thread.currentThread().interrupt() ;
+						} catch (IOException ioe) {
+							out.write(line("error", "Journal: "+ioe)) ;
+							progress.failed() ;
+						}
+					}
+				}) ;
+			}
+		} finally {
+			bounded.awaitAll() ;
+			if (log!=null) {
+				log.close() ;
+			}
+		}
+		out.write(summary("applied", progress)) ;
+		return (invalid==0 && progress.getFailed()==0 && progress.getCompleted()==total)?EXIT_OK:EXIT_FAILED ;
+	}
+
+	private JSONObject applyOne(JSONObject op, JournaledMutations mutations) throws IOException {
+		String name = op.optString("op") ;
+		String domain = op.optString("domain", null) ;
+		String host = op.optString("host", "") ;
+		String rdata = op.optString("rdata", null) ;
+		Integer ttl = op.has("ttl")?Integer.valueOf(op.optInt("ttl")):null ;
+		if ("createHostname".equals(name)) {
+			return (mutations!=null)?mutations.createHostname(domain, host)
+					:api.createHostname(domain, false, host, false, null) ;
+		} else if ("createRecord".equals(name)) {
+			String type = op.optString("type").toUpperCase() ;
+			Integer priority = op.has("priority")?Integer.valueOf(op.optInt("priority")):null ;
+			if (mutations!=null) {
+				return mutations.createRecord(domain, host, type, rdata, ttl, priority) ;
+			} else if ("MX".equals(type)) {
+				return api.createMXRecord(domain, false, host, rdata, (priority!=null)?priority.intValue():10, false, null, null, null, null, ttl) ;
+			} else if ("TXT".equals(type)) {
+				return api.createTXTRecord(domain, false, host, rdata, false, null, null, null, null, ttl) ;
+			}
+			return api.createDefaultRecord(domain, false, host, rdata, type, false, null, null, null, null, ttl) ;
+		} else if ("updateRRData".equals(name) && op.has("rr_id")) {
+			int rrId = op.optInt("rr_id") ;
+			return (mutations!=null)?mutations.updateRRData(rrId, rdata, ttl)
+					:api.updateRRData(Integer.valueOf(rrId), rdata, ttl, null, Boolean.FALSE, null, null, null, null, null,
+							null, null, null, null, null, null, null) ;
+		} else if ("removeRR".equals(name) && op.has("rr_id")) {
+			int rrId = op.optInt("rr_id") ;
+			return (mutations!=null)?mutations.removeRR(rrId):api.removeRR(rrId, true) ;
+		}
+		return ApiResult.failure(new ApiError(ApiError.Category.INVALID_REQUEST, 0, false, "Unknown operation '"+name+"'", null)).toJSON(false) ;
+	}
+
+	private int repoint(String from, String to, String filter, Map<String, String> options) throws InterruptedException {
+		RecordIndex index = new RecordIndex() ;
+		ProgressTracker crawled = index.crawl(api, filter, concurrency) ;
+		out.write(summary("indexed", crawled)) ;
+		MassRepoint repoint = new MassRepoint(api, index, from, to) ;
+		repoint.setConcurrency(concurrency) ;
+		repoint.setRate(rate) ;
+		if (options.containsKey("lower-ttl")) {
+			String[] lower = options.get("lower-ttl").split(",") ;
+			repoint.setLowerTtlFirst(Integer.valueOf(lower[0]), (lower.length>1)?Long.parseLong(lower[1]):0L) ;
+			repoint.setKeepLowTtl(options.containsKey("keep-low-ttl")) ;
+		}
+		if (options.containsKey("dry-run")) {
+			for (RecordIndex.Entry entry: repoint.findAffected()) {
+				JSONObject record = line("id", Long.valueOf(entry.getId())) ;
+				put(record, "domain", entry.getDomain()) ;
+				put(record, "host", entry.getHost()) ;
+				put(record, "type", entry.getType()) ;
+				put(record, "rdata", entry.getRData()) ;
+				put(record, "ttl", Integer.valueOf(entry.getTtl())) ;
+				out.write(record) ;
+			}
+			return (crawled.getFailed()==0)?EXIT_OK:EXIT_FAILED ;
+		}
+		ProgressTracker progress = repoint.run() ;
+		for (String failure: repoint.getFailures()) {
+			out.write(line("error", failure)) ;
+		}
+		out.write(summary("repointed", progress)) ;
+		return (crawled.getFailed()==0 && repoint.getFailures().isEmpty())?EXIT_OK:EXIT_FAILED ;
+	}
+
+	/**
+	 * @param windowDays The number of days in each window, or 0 for a single window over the whole range
+	 */
+	private int hits(List<String> args, int windowDays) throws ParseException, InterruptedException {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd") ;
+		format.setLenient(false) ;
+		Date start = format.parse(args.get(0)) ;
+		Date end = format.parse(args.get(1)) ;
+		if (windowDays<1) {
+			// Count calendar days, as a day lost or gained to a daylight saving change is not 24 hours long
+			windowDays = Math.max(1, HitStore.toDay(end)-HitStore.toDay(start)+1) ;
+		}
+		List<String> domains = new ArrayList<String>(args.subList(2, args.size())) ;
+		if (domains.isEmpty()) {
+			ApiResult listed = ApiResult.fromResponse(api.getDomains("")) ;
+			if (!listed.isSuccess()) {
+				out.write(error(listed.getError(), null, null)) ;
+				return EXIT_FAILED ;
+			}
+			JSONArray data = listed.getResponse().optJSONArray("data") ;
+			for (int x=0; data!=null && x<data.length(); x++) {
+				JSONObject domain = data.optJSONObject(x) ;
+				if (domain!=null) {
+					domains.add(domain.optString("name")) ;
+				}
+			}
+		}
+		HitsReport report = new HitsAggregator(billing, concurrency).aggregate(domains, start, end, windowDays) ;
+		for (String domain: domains) {
+			JSONObject result = put(line("domain", domain), "total", Long.valueOf(report.getTotal(domain))) ;
+			if (report.getWindowCount()>1) {
+				JSONArray windows = new JSONArray() ;
+				long[] counts = report.getHits(domain) ;
+				for (int x=0; counts!=null && x<counts.length; x++) {
+					JSONObject window = line("start", format.format(report.getWindowStart(x))) ;
+					put(window, "end", format.format(report.getWindowEnd(x))) ;
+					put(window, "hits", Long.valueOf(counts[x])) ;
+					windows.put(window) ;
+				}
+				put(result, "windows", windows) ;
+			}
+			out.write(result) ;
+		}
+		for (String failure: report.getFailures()) {
+			out.write(line("error", failure)) ;
+		}
+		return report.getFailures().isEmpty()?EXIT_OK:EXIT_FAILED ;
+	}
+
+	/**
+	 * Run every command in a file, one per line. Blank lines and lines starting with '#' are ignored.
+	 */
+	private int batch(String file) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(open(file), UTF8)) ;
+		int worst = EXIT_OK ;
+		try {
+			String text ;
+			while ((text = reader.readLine())!=null && !out.isClosed()) {
+				text = text.trim() ;
+				if (text.length()==0 || text.startsWith("#")) {
+					continue ;
+				}
+				List<String> positional = new ArrayList<String>() ;
+				Map<String, String> options = new HashMap<String, String>() ;
+				int exitCode ;
+				if (!parse(tokenize(text), positional, options) || positional.isEmpty()) {
+					usage(out, "Invalid command: "+text) ;
+					exitCode = EXIT_USAGE ;
+				} else if ("batch".equals(positional.get(0))) {
+					usage(out, "Batches cannot be nested") ;
+					exitCode = EXIT_USAGE ;
+				} else {
+					exitCode = run(positional, options) ;
+				}
+				out.write(put(line("done", text), "exitCode", Integer.valueOf(exitCode))) ;
+				worst = Math.max(worst, exitCode) ;
+			}
+		} finally {
+			reader.close() ;
+		}
+		return worst ;
+	}
+
+	private static InputStream open(String file) throws IOException {
+		return "-".equals(file)?System.in:new FileInputStream(file) ;
+	}
+
+	private static JSONObject line(String name, Object value) {
+		return put(new JSONObject(), name, value) ;
+	}
+
+	/**
+	 * Add a field to an output line, leaving it out if the value is <code>null</code>
+	 * @return The line, so that calls can be chained
+	 */
+	private static JSONObject put(JSONObject line, String name, Object value) {
+		try {
+			line.putOpt(name, value) ;
+		} catch (JSONException jsone) {
+			// Only thrown for null names or non-finite numbers, and every name here is a literal
+		}
+		return line ;
+	}
+
+	private static JSONObject locate(JSONObject element, String domain, String host) {
+		return put(put(element, "domain", domain), "host", host) ;
+	}
+
+	private static JSONObject error(ApiError error, String domain, String host) {
+		return locate(line("error", error.toJSON(false)), domain, host) ;
+	}
+
+	private static JSONObject summary(String name, ProgressTracker progress) {
+		JSONObject counts = line("succeeded", Long.valueOf(progress.getSucceeded())) ;
+		put(counts, "skipped", Long.valueOf(progress.getSkipped())) ;
+		put(counts, "failed", Long.valueOf(progress.getFailed())) ;
+		put(counts, "elapsedMillis", Long.valueOf(progress.getElapsedMillis())) ;
+		return line(name, counts) ;
+	}
+
+	private static void usage(NdjsonWriter out, String problem) {
+		out.write(put(line("error", problem), "usage", "dnstool [--host h] [--no-ssl] [--token t] [--concurrency n] [--rate r] "
+				+"list|dump|apply|repoint|hits|batch ...")) ;
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.json.JSONObject;
+
+/**
+ * Writes one JSON object per line and flushes after every line, so a consumer such as
+ * <code>jq</code> sees each result as soon as it is ready. Lines from different threads never
+ * interleave. Once the reader goes away (e.g. <code>head</code> exits) further lines are dropped.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+final class NdjsonWriter {
+
+	private final Writer out ;
+	private final PrintStream printStream ;
+	private volatile boolean closed = false ;
+
+	/**
+	 * Constructor
+	 * @param out The stream to write the lines to. A {@link PrintStream} hides write failures, so one
+	 * is checked with {@link PrintStream#checkError()} after every line.
+	 */
+	NdjsonWriter(OutputStream out) {
+		super() ;
+		this.out = new BufferedWriter(new OutputStreamWriter(out, Charset.forName("UTF-8"))) ;
+		this.printStream = (out instanceof PrintStream)?(PrintStream)out:null ;
+	}
+
+	/**
+	 * @param line The object to write as a single line
+	 */
+	synchronized void write(JSONObject line) {
+		if (closed) {
+			return ;
+		}
+		try {
+			out.write(line.toString()) ;
+			out.write('\n') ;
+			out.flush() ;
+			if (printStream!=null && printStream.checkError()) {
+				closed = true ;
+			}
+		} catch (IOException ioe) {
+			closed = true ;
+		}
+	}
+
+	/**
+	 * @return Has the reader stopped accepting output?
+	 */
+	boolean isClosed() {
+		return closed ;
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * The default {@link HttpTransport}, which sends requests with Apache HttpClient over a pool of
+ * persistent connections to the API host.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class ApacheHttpTransport implements HttpTransport {
+
+	private final ThreadSafeClientConnManager connectionManager ;
+	private final DefaultHttpClient httpClient ;
+	private final int maxConnections ;
+
+	/**
+	 * Constructor
+	 * @param maxConnections The maximum number of HTTP connections to keep open to the API server
+	 * @param resolver (OPTIONAL) The {@link HostResolver} new connections take their addresses from,
+	 * or <code>null</code> to resolve the host for every new connection
+	 */
+	public ApacheHttpTransport(int maxConnections, final HostResolver resolver) {
+		super() ;
+		this.maxConnections = maxConnections ;
+		this.connectionManager = new ThreadSafeClientConnManager(SchemeRegistryFactory.createDefault()) {
+			protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schemes) {
+				if (resolver==null) {
+					return super.createConnectionOperator(schemes) ;
+				}
+				// New connections take the API host's addresses from the cache instead of a fresh lookup
+				return new DefaultClientConnectionOperator(schemes) {
+					protected InetAddress[] resolveHostname(String host) throws UnknownHostException {
+						return resolver.resolve(host) ;
+					}
+				} ;
+			}
+		} ;
+		this.connectionManager.setMaxTotal(maxConnections) ;
+		// Every call goes to the same API host, so the whole pool is available to that one route
+		this.connectionManager.setDefaultMaxPerRoute(maxConnections) ;
+		this.httpClient = new DefaultHttpClient(connectionManager) ;
+		this.httpClient.addRequestInterceptor(RequestTrace.CONNECTION_INTERCEPTOR) ;
+	}
+
+	public HttpClient getHttpClient() {
+		return httpClient ;
+	}
+
+	/**
+	 * @return The number of connections currently held by the pool, idle or in use
+	 */
+	public int getConnectionsInPool() {
+		return connectionManager.getConnectionsInPool() ;
+	}
+
+	public TransportResponse send(TransportRequest request) throws IOException {
+		HttpRequestBase httpRequest ;
+		if (request.hasForm()) {
+			HttpPost post = new HttpPost(request.getUri()) ;
+			post.setEntity(request.getFormEntity()) ;
+			httpRequest = post ;
+		} else {
+			httpRequest = new HttpGet(request.getUri()) ;
+		}
+		httpRequest.addHeader("User-Agent", TransportRequest.USER_AGENT) ;
+		if (request.getConnectTimeoutMillis()>0) {
+			HttpConnectionParams.setConnectionTimeout(httpRequest.getParams(), request.getConnectTimeoutMillis()) ;
+			// Waiting for a pooled connection counts against the same limit
+			httpRequest.getParams().setParameter(ClientPNames.CONN_MANAGER_TIMEOUT, Long.valueOf(request.getConnectTimeoutMillis())) ;
+		}
+		if (request.getReadTimeoutMillis()>0) {
+			HttpConnectionParams.setSoTimeout(httpRequest.getParams(), request.getReadTimeoutMillis()) ;
+		}
+
+		HttpContext context = null ;
+		if (request.getTrace()!=null) {
+			context = new BasicHttpContext() ;
+			context.setAttribute(RequestTrace.CONTEXT_ATTRIBUTE, request.getTrace()) ;
+		}
+		final HttpRequestBase exchange = httpRequest ;
+		final Deadline.Registration abort = request.onAbort(new Runnable() {
+			public void run() {
+				// Closes the connection, so a blocked read fails and the connection leaves the pool
+				exchange.abort() ;
+			}
+		}) ;
+		final HttpResponse answer ;
+		try {
+			answer = httpClient.execute(httpRequest, context) ;
+		} catch (IOException ioe) {
+			abort.remove() ;
+			throw ioe ;
+		} catch (RuntimeException re) {
+			abort.remove() ;
+			throw re ;
+		}
+		if (answer==null) {
+			abort.remove() ;
+			return null ;
+		}
+		return new TransportResponse() {
+			public int getStatus() {
+				return answer.getStatusLine().getStatusCode() ;
+			}
+
+			public String readBody() throws IOException {
+				try {
+					return ResponseReader.readBody(answer.getEntity()) ;
+				} finally {
+					abort.remove() ;
+				}
+			}
+
+			public String readPrefix(int limit) throws IOException {
+				try {
+					return ResponseReader.readPrefix(answer.getEntity(), limit) ;
+				} finally {
+					abort.remove() ;
+				}
+			}
+
+			public void close() {
+				HttpEntity entity = answer.getEntity() ;
+				try {
+					EntityUtils.consume(entity) ;
+				} catch (IOException ioe) {
+					// The connection is discarded rather than reused
+				} finally {
+					abort.remove() ;
+				}
+			}
+		} ;
+	}
+
+	/**
+	 * Make sure the pool holds open connections to a host, connecting (and completing the TLS
+	 * handshake for HTTPS) ahead of the first request which needs them. Connections which are already
+	 * pooled count towards the total.
+	 * @param target The host to connect to
+	 * @param count The number of connections wanted, which is capped at the size of the pool
+	 * @param timeoutMillis How long to wait for a connection to be free when the pool is busy
+	 * @return The number of open connections which were returned to the pool
+	 * @throws IOException If no connection could be opened
+	 */
+	public int openConnections(HttpHost target, int count, long timeoutMillis) throws IOException {
+		HttpRoute route = new HttpRoute(target, null, "https".equalsIgnoreCase(target.getSchemeName())) ;
+		int wanted = Math.min(count, maxConnections) ;
+		List<ManagedClientConnection> held = new ArrayList<ManagedClientConnection>(wanted) ;
+		IOException failure = null ;
+		int open = 0 ;
+		try {
+			for (int x=0; x<wanted; x++) {
+				ManagedClientConnection connection ;
+				try {
+					connection = connectionManager.requestConnection(route, null).getConnection(timeoutMillis, TimeUnit.MILLISECONDS) ;
+				} catch (ConnectionPoolTimeoutException cpte) {
+					break ;
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt() ;
+					break ;
+				}
+				// Hold on to each connection until the end so the next request cannot be handed the same one
+				held.add(connection) ;
+				try {
+					if (!connection.isOpen()) {
+						connection.open(route, new BasicHttpContext(), httpClient.getParams()) ;
+					}
+					connection.markReusable() ;
+					open++ ;
+				} catch (IOException ioe) {
+					failure = ioe ;
+					break ;
+				}
+			}
+		} finally {
+			for (ManagedClientConnection connection: held) {
+				connectionManager.releaseConnection(connection, -1, TimeUnit.MILLISECONDS) ;
+			}
+		}
+		if (open==0 && failure!=null) {
+			throw failure ;
+		}
+		return open ;
+	}
+
+	public void shutdown() {
+		connectionManager.shutdown() ;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Describes why an API call failed. The causing exception is kept as-is; its stack trace is only
+ * turned into text if {@link #toJSON(boolean)} is asked for it.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class ApiError {
+
+	/**
+	 * The broad reason a call failed
+	 */
+	public enum Category {
+		/** The request could not be built from the supplied arguments */
+		INVALID_REQUEST,
+		/** The request could not be sent or the response could not be received */
+		TRANSPORT,
+		/** The server answered with an unexpected HTTP status code */
+		HTTP_STATUS,
+		/** The response body was not valid JSON */
+		PARSE,
+		/** The server processed the request and reported a failure */
+		API,
+		/** The call's {@link Deadline} passed before it completed; the server may still have acted on it */
+		TIMEOUT,
+		/** The call's {@link Deadline} was cancelled before it completed; the server may still have acted on it */
+		CANCELLED
+	}
+
+	private final Category category ;
+	private final int httpStatus ;
+	private final boolean retryable ;
+	private final String message ;
+	private final Throwable cause ;
+
+	/**
+	 * Constructor
+	 * @param category The {@link Category} of the failure
+	 * @param httpStatus The HTTP status code of the response, or 0 if there was no response
+	 * @param retryable Could the same request succeed if it were sent again?
+	 * @param message A description of the failure
+	 * @param cause (OPTIONAL) The exception which caused the failure or <code>null</code>
+	 */
+	public ApiError(Category category, int httpStatus, boolean retryable, String message, Throwable cause) {
+		super() ;
+		this.category = category ;
+		this.httpStatus = httpStatus ;
+		this.retryable = retryable ;
+		this.message = message ;
+		this.cause = cause ;
+	}
+
+	public Category getCategory() {
+		return category ;
+	}
+
+	public int getHttpStatus() {
+		return httpStatus ;
+	}
+
+	public boolean isRetryable() {
+		return retryable ;
+	}
+
+	public String getMessage() {
+		return message ;
+	}
+
+	public Throwable getCause() {
+		return cause ;
+	}
+
+	/**
+	 * Is an HTTP status code one which may clear up by itself if the request is sent again?
+	 * @param status The HTTP status code
+	 * @return <code>true</code> for timeouts, throttling and server errors
+	 */
+	public static boolean isRetryableStatus(int status) {
+		return status==408 || status==429 || status>=500 ;
+	}
+
+	/**
+	 * Render this error in the JSON layout returned by the API methods.
+	 * @param includeStackTrace Add the stack trace of the cause (if any) to the result?
+	 * @return A {@link JSONObject} describing this error
+	 */
+	public JSONObject toJSON(boolean includeStackTrace) {
+		JSONObject response = new JSONObject() ;
+		try {
+			response.put("error", (message!=null)?message:"") ;
+			response.put("breadcrumb", "") ;
+			response.put("category", category.name()) ;
+			response.put("retryable", retryable) ;
+			if (httpStatus>0) {
+				response.put("httpStatus", httpStatus) ;
+			}
+			if (includeStackTrace && cause!=null) {
+				StringBuilder traceBuilder = new StringBuilder() ;
+				StackTraceElement[] trace = cause.getStackTrace() ;
+				for (int x=0; x<trace.length; x++) {
+					traceBuilder.append(trace[x]).append('\n') ;
+				}
+				response.put("stackTrace", traceBuilder.toString()) ;
+			}
+		} catch (JSONException jsone) {
+			// Only thrown for null keys or non-finite numbers, neither of which are used here
+		}
+		return response ;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder(category.name()) ;
+		if (httpStatus>0) {
+			sb.append(" (").append(httpStatus).append(')') ;
+		}
+		return sb.append(": ").append(message).toString() ;
+	}
+}
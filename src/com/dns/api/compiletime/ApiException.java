@@ -0,0 +1,32 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+/**
+ * Thrown by higher level operations when an API call they depend on fails.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class ApiException extends Exception {
+
+	private static final long serialVersionUID = 1L ;
+
+	private final ApiError error ;
+
+	/**
+	 * Constructor
+	 * @param context What was being done when the call failed
+	 * @param error The {@link ApiError} describing the failure
+	 */
+	public ApiException(String context, ApiError error) {
+		super(context+": "+error, error.getCause()) ;
+		this.error = error ;
+	}
+
+	public ApiError getError() {
+		return error ;
+	}
+}
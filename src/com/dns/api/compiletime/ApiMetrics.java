@@ -0,0 +1,98 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts calls, failures and time spent per API endpoint. Register it with
+ * {@link GenericAPI#addRequestListener(RequestListener)}; the API objects created by a
+ * {@link TenantClientFactory} all report to the one in their {@link ClientResources}.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class ApiMetrics extends RequestListenerAdapter {
+
+	/**
+	 * The counters for one endpoint
+	 */
+	public static class EndpointStats {
+		private final AtomicLong calls = new AtomicLong() ;
+		private final AtomicLong failures = new AtomicLong() ;
+		private final AtomicLong totalNanos = new AtomicLong() ;
+		private final AtomicLong maxNanos = new AtomicLong() ;
+
+		public long getCalls() {
+			return calls.get() ;
+		}
+
+		public long getFailures() {
+			return failures.get() ;
+		}
+
+		public long getTotalNanos() {
+			return totalNanos.get() ;
+		}
+
+		public long getMaxNanos() {
+			return maxNanos.get() ;
+		}
+
+		/**
+		 * @return The mean time per call in nanoseconds, or 0 if there have been no calls
+		 */
+		public long getMeanNanos() {
+			long count = calls.get() ;
+			return (count==0)?0:totalNanos.get()/count ;
+		}
+
+		public String toString() {
+			return "calls="+getCalls()+" failures="+getFailures()+" meanMs="+(getMeanNanos()/1000000.0)
+					+" maxMs="+(getMaxNanos()/1000000.0) ;
+		}
+	}
+
+	private final ConcurrentMap<String, EndpointStats> endpoints = new ConcurrentHashMap<String, EndpointStats>() ;
+
+	public void requestCompleted(String endpoint, long elapsedNanos, ApiResult result) {
+		EndpointStats stats = endpoints.get(endpoint) ;
+		if (stats==null) {
+			EndpointStats created = new EndpointStats() ;
+			stats = endpoints.putIfAbsent(endpoint, created) ;
+			if (stats==null) {
+				stats = created ;
+			}
+		}
+		stats.calls.incrementAndGet() ;
+		if (result==null || !result.isSuccess()) {
+			stats.failures.incrementAndGet() ;
+		}
+		stats.totalNanos.addAndGet(elapsedNanos) ;
+		long max = stats.maxNanos.get() ;
+		while (elapsedNanos>max && !stats.maxNanos.compareAndSet(max, elapsedNanos)) {
+			max = stats.maxNanos.get() ;
+		}
+	}
+
+	/**
+	 * @param endpoint The name of an API call, e.g. <code>getDomains</code>
+	 * @return The counters for that endpoint, or <code>null</code> if it has not been called
+	 */
+	public EndpointStats getStats(String endpoint) {
+		return endpoints.get(endpoint) ;
+	}
+
+	/**
+	 * @return A sorted copy of the counters for every endpoint which has been called
+	 */
+	public Map<String, EndpointStats> getAllStats() {
+		return new TreeMap<String, EndpointStats>(endpoints) ;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import org.json.JSONObject;
+
+/**
+ * The outcome of an API call: either the parsed response or an {@link ApiError}.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class ApiResult {
+
+	private final JSONObject response ;
+	private final ApiError error ;
+
+	private ApiResult(JSONObject response, ApiError error) {
+		super() ;
+		this.response = response ;
+		this.error = error ;
+	}
+
+	/**
+	 * Create a successful result
+	 * @param response The parsed response
+	 * @return An {@link ApiResult}
+	 */
+	public static ApiResult success(JSONObject response) {
+		return new ApiResult(response, null) ;
+	}
+
+	/**
+	 * Create a failed result
+	 * @param error The reason for the failure
+	 * @return An {@link ApiResult}
+	 */
+	public static ApiResult failure(ApiError error) {
+		return new ApiResult(null, error) ;
+	}
+
+	/**
+	 * Classify a response returned by one of the API methods. Transport failures are recognised by
+	 * their top level <code>error</code> field and API failures by <code>meta.success</code> being 0.
+	 * @param response A {@link JSONObject} returned by an API method
+	 * @return An {@link ApiResult}
+	 */
+	public static ApiResult fromResponse(JSONObject response) {
+		if (response==null) {
+			return failure(new ApiError(ApiError.Category.TRANSPORT, 0, true, "No response", null)) ;
+		}
+		if (response.has("error")) {
+			ApiError.Category category = ApiError.Category.TRANSPORT ;
+			try {
+				category = ApiError.Category.valueOf(response.optString("category", "TRANSPORT")) ;
+			} catch (IllegalArgumentException iae) {
+				// Keep the default category
+			}
+			return failure(new ApiError(category, response.optInt("httpStatus", 0),
+					response.optBoolean("retryable", false), response.optString("error"), null)) ;
+		}
+		JSONObject meta = response.optJSONObject("meta") ;
+		if (meta!=null && meta.has("success") && meta.optInt("success", 1)==0) {
+			return failure(new ApiError(ApiError.Category.API, meta.optInt("code", 0), false,
+					meta.optString("error", ""), null)) ;
+		}
+		return success(response) ;
+	}
+
+	public boolean isSuccess() {
+		return error==null ;
+	}
+
+	/**
+	 * @return The parsed response, or <code>null</code> if the call failed
+	 */
+	public JSONObject getResponse() {
+		return response ;
+	}
+
+	/**
+	 * @return The reason the call failed, or <code>null</code> if it succeeded
+	 */
+	public ApiError getError() {
+		return error ;
+	}
+
+	/**
+	 * Render this result in the JSON layout returned by the API methods.
+	 * @param includeStackTrace Add the stack trace of a failure's cause to the result?
+	 * @return A {@link JSONObject}
+	 */
+	public JSONObject toJSON(boolean includeStackTrace) {
+		return (error==null)?response:error.toJSON(includeStackTrace) ;
+	}
+}
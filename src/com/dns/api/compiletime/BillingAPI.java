@@ -17,6 +17,13 @@ import org.json.JSONObject;
  */
 public class BillingAPI extends GenericAPI {
 
+	/** {@link SimpleDateFormat} is not thread safe, so each thread keeps its own */
+	private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("yyyy-MM-dd") ;
+		}
+	} ;
+
 	/**
 	 * Constructor
 	 * @param apiHost The host name of the server to make API calls against.
@@ -27,6 +34,14 @@ public class BillingAPI extends GenericAPI {
 		super(apiHost, useSSL, apiToken) ;
 	}
 
+	/**
+	 * Constructor
+	 * @param config The {@link ClientConfig} to make API calls with
+	 */
+	public BillingAPI(ClientConfig config) {
+		super(config) ;
+	}
+
 	/**
 	 * Get the hit count for the specified domain and the optionally specified start/end dates
 	 * @param domain The domain to retrieve the hit count for
@@ -35,19 +50,18 @@ public class BillingAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject getHits(String domain, Date start, Date end) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/getHits/?") ;
-		uriBuilder.append("API_TOKEN="+apiToken) ;
+		uriBuilder.append("API_TOKEN="+config.getApiToken()) ;
 		uriBuilder.append("&domain="+domain) ;
 
 		if (start!=null) {
-			String startDate = (new SimpleDateFormat("yyyy-MM-dd")).format(start) ;
-			uriBuilder.append("&start="+startDate) ;
+			uriBuilder.append("&start=").append(DATE_FORMAT.get().format(start)) ;
 		}
 		if (end!=null) {
-			String endDate = (new SimpleDateFormat("yyyy-MM-dd")).format(end) ;
-			uriBuilder.append("&end="+endDate) ;
+			uriBuilder.append("&end=").append(DATE_FORMAT.get().format(end)) ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
 	}
 }
@@ -0,0 +1,233 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+/**
+ * The settings of an API object: where requests go, how they authenticate and how they are sent.
+ * A {@link ClientConfig} never changes once built. Each <code>with</code> method returns a copy with
+ * one setting changed, and {@link GenericAPI#setConfig(ClientConfig)} swaps the copy in as a whole.
+ * Every call reads the configuration once when it starts and uses that snapshot until it completes,
+ * so rotating the API token or moving to another host never gives a call which is already in flight
+ * a mix of old and new settings. One API object can therefore be shared by any number of threads.
+ * <pre>
+ * ClientConfig config = new ClientConfig("www.dns.com", true, token).withPostMutations(true) ;
+ * api.setConfig(config) ;
+ * ...
+ * api.setConfig(api.getConfig().withApiToken(rotatedToken)) ;
+ * </pre>
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public final class ClientConfig {
+
+	private final String apiHost ;
+	private final boolean useSSL ;
+	private final String apiToken ;
+	private final int maxUriLength ;
+	private final int bulkConcurrency ;
+	private final boolean postMutations ;
+	private final int maxFormLength ;
+	private final boolean captureStackTraces ;
+	private final boolean validateArguments ;
+	private final int connectTimeout ;
+	private final int readTimeout ;
+	private final long callTimeout ;
+	private final boolean collapseReads ;
+
+	/**
+	 * Constructor which uses the default for every other setting
+	 * @param apiHost The host name of the server to make API calls against.
+	 * @param useSSL Should we use HTTPS connections for API calls?
+	 * @param apiToken The API Token for authenticating requests, URL encoded if it needs to be.
+	 */
+	public ClientConfig(String apiHost, boolean useSSL, String apiToken) {
+		this(apiHost, useSSL, apiToken, 2000, 4, false, 1048576, false, true, 10000, 60000, 0L, false) ;
+	}
+
+	private ClientConfig(String apiHost, boolean useSSL, String apiToken, int maxUriLength, int bulkConcurrency,
+			boolean postMutations, int maxFormLength, boolean captureStackTraces, boolean validateArguments,
+			int connectTimeout, int readTimeout, long callTimeout, boolean collapseReads) {
+		super() ;
+		this.apiHost = apiHost ;
+		this.useSSL = useSSL ;
+		this.apiToken = apiToken ;
+		this.maxUriLength = maxUriLength ;
+		this.bulkConcurrency = bulkConcurrency ;
+		this.postMutations = postMutations ;
+		this.maxFormLength = maxFormLength ;
+		this.captureStackTraces = captureStackTraces ;
+		this.validateArguments = validateArguments ;
+		this.connectTimeout = connectTimeout ;
+		this.readTimeout = readTimeout ;
+		this.callTimeout = callTimeout ;
+		this.collapseReads = collapseReads ;
+	}
+
+	public String getApiHost() {
+		return apiHost ;
+	}
+
+	public ClientConfig withApiHost(String host) {
+		return new ClientConfig(host, useSSL, apiToken, maxUriLength, bulkConcurrency, postMutations, maxFormLength,
+				captureStackTraces, validateArguments, connectTimeout, readTimeout, callTimeout, collapseReads) ;
+	}
+
+	public boolean isSSL() {
+		return useSSL ;
+	}
+
+	public ClientConfig withSSL(boolean isSSL) {
+		return new ClientConfig(apiHost, isSSL, apiToken, maxUriLength, bulkConcurrency, postMutations, maxFormLength,
+				captureStackTraces, validateArguments, connectTimeout, readTimeout, callTimeout, collapseReads) ;
+	}
+
+	public String getApiToken() {
+		return apiToken ;
+	}
+
+	/**
+	 * @param token The API Token for authenticating requests, URL encoded if it needs to be.
+	 * @return A copy of this configuration with the new token
+	 */
+	public ClientConfig withApiToken(String token) {
+		return new ClientConfig(apiHost, useSSL, token, maxUriLength, bulkConcurrency, postMutations, maxFormLength,
+				captureStackTraces, validateArguments, connectTimeout, readTimeout, callTimeout, collapseReads) ;
+	}
+
+	/**
+	 * @return The maximum length of the path and query string for a single request
+	 */
+	public int getMaxUriLength() {
+		return maxUriLength ;
+	}
+
+	/**
+	 * @param length The maximum length of the path and query string for a single request. Bulk methods
+	 * which accept a list of values split their input so that no request exceeds this length.
+	 * @return A copy of this configuration with the new length
+	 */
+	public ClientConfig withMaxUriLength(int length) {
+		return new ClientConfig(apiHost, useSSL, apiToken, length, bulkConcurrency, postMutations, maxFormLength,
+				captureStackTraces, validateArguments, connectTimeout, readTimeout, callTimeout, collapseReads) ;
+	}
+
+	/**
+	 * @return The maximum number of requests a single bulk method call may have in flight at once
+	 */
+	public int getBulkConcurrency() {
+		return bulkConcurrency ;
+	}
+
+	public ClientConfig withBulkConcurrency(int concurrency) {
+		return new ClientConfig(apiHost, useSSL, apiToken, maxUriLength, concurrency, postMutations, maxFormLength,
+				captureStackTraces, validateArguments, connectTimeout, readTimeout, callTimeout, collapseReads) ;
+	}
+
+	/**
+	 * @return Are calls which change data sent as POST requests with a form body?
+	 */
+	public boolean isPostMutations() {
+		return postMutations ;
+	}
+
+	public ClientConfig withPostMutations(boolean post) {
+		return new ClientConfig(apiHost, useSSL, apiToken, maxUriLength, bulkConcurrency, post, maxFormLength,
+				captureStackTraces, validateArguments, connectTimeout, readTimeout, callTimeout, collapseReads) ;
+	}
+
+	/**
+	 * @return The maximum size of a single POST body in characters
+	 */
+	public int getMaxFormLength() {
+		return maxFormLength ;
+	}
+
+	public ClientConfig withMaxFormLength(int length) {
+		return new ClientConfig(apiHost, useSSL, apiToken, maxUriLength, bulkConcurrency, postMutations, length,
+				captureStackTraces, validateArguments, connectTimeout, readTimeout, callTimeout, collapseReads) ;
+	}
+
+	/**
+	 * @return Do error responses include the stack trace of the underlying exception?
+	 */
+	public boolean isCaptureStackTraces() {
+		return captureStackTraces ;
+	}
+
+	public ClientConfig withCaptureStackTraces(boolean capture) {
+		return new ClientConfig(apiHost, useSSL, apiToken, maxUriLength, bulkConcurrency, postMutations, maxFormLength,
+				capture, validateArguments, connectTimeout, readTimeout, callTimeout, collapseReads) ;
+	}
+
+	/**
+	 * @return Are the arguments of calls which create or change records checked before sending them?
+	 */
+	public boolean isValidateArguments() {
+		return validateArguments ;
+	}
+
+	public ClientConfig withValidateArguments(boolean validate) {
+		return new ClientConfig(apiHost, useSSL, apiToken, maxUriLength, bulkConcurrency, postMutations, maxFormLength,
+				captureStackTraces, validate, connectTimeout, readTimeout, callTimeout, collapseReads) ;
+	}
+
+	/**
+	 * @return How long to wait for a connection in milliseconds, or 0 to wait forever
+	 */
+	public int getConnectTimeout() {
+		return connectTimeout ;
+	}
+
+	public ClientConfig withConnectTimeout(int millis) {
+		return new ClientConfig(apiHost, useSSL, apiToken, maxUriLength, bulkConcurrency, postMutations, maxFormLength,
+				captureStackTraces, validateArguments, millis, readTimeout, callTimeout, collapseReads) ;
+	}
+
+	/**
+	 * @return How long to wait for each read in milliseconds, or 0 to wait forever
+	 */
+	public int getReadTimeout() {
+		return readTimeout ;
+	}
+
+	public ClientConfig withReadTimeout(int millis) {
+		return new ClientConfig(apiHost, useSSL, apiToken, maxUriLength, bulkConcurrency, postMutations, maxFormLength,
+				captureStackTraces, validateArguments, connectTimeout, millis, callTimeout, collapseReads) ;
+	}
+
+	/**
+	 * @return The most time a call may take in milliseconds, or 0 for no limit
+	 */
+	public long getCallTimeout() {
+		return callTimeout ;
+	}
+
+	public ClientConfig withCallTimeout(long millis) {
+		return new ClientConfig(apiHost, useSSL, apiToken, maxUriLength, bulkConcurrency, postMutations, maxFormLength,
+				captureStackTraces, validateArguments, connectTimeout, readTimeout, millis, collapseReads) ;
+	}
+
+	/**
+	 * @return Are identical read calls made while one of them is in flight collapsed into one request?
+	 */
+	public boolean isCollapseReads() {
+		return collapseReads ;
+	}
+
+	public ClientConfig withCollapseReads(boolean collapse) {
+		return new ClientConfig(apiHost, useSSL, apiToken, maxUriLength, bulkConcurrency, postMutations, maxFormLength,
+				captureStackTraces, validateArguments, connectTimeout, readTimeout, callTimeout, collapse) ;
+	}
+
+	/**
+	 * @return The settings, without the API token
+	 */
+	public String toString() {
+		return (useSSL?"https://":"http://")+apiHost+" postMutations="+postMutations+" maxUriLength="+maxUriLength
+				+" maxFormLength="+maxFormLength+" bulkConcurrency="+bulkConcurrency+" connectTimeout="+connectTimeout
+				+" readTimeout="+readTimeout+" callTimeout="+callTimeout+" collapseReads="+collapseReads ;
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.HttpClient;
+
+/**
+ * The heavyweight parts of a client: the {@link HttpTransport} and its connections, the thread pool
+ * used for parallel requests and the {@link ApiMetrics} collected for them. One instance can be shared
+ * by any number of API objects (see {@link GenericAPI#setClientResources(ClientResources)} and
+ * {@link TenantClientFactory}), which then cost little more than their API token.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class ClientResources {
+
+	private final HttpTransport transport ;
+	private final ExecutorService executor ;
+	private final ApiMetrics metrics ;
+	private final HostResolver hostResolver ;
+
+	/**
+	 * Constructor which allows 20 pooled connections and creates its own thread pool.
+	 */
+	public ClientResources() {
+		this(20, null) ;
+	}
+
+	/**
+	 * Constructor which sends requests with an {@link ApacheHttpTransport}
+	 * @param maxConnections The maximum number of HTTP connections to keep open to the API server
+	 * @param executor (OPTIONAL) The {@link ExecutorService} for parallel requests or <code>null</code>
+	 * to create a pool of daemon threads
+	 */
+	public ClientResources(int maxConnections, ExecutorService executor) {
+		this(new HostResolver(), maxConnections, executor) ;
+	}
+
+	private ClientResources(HostResolver hostResolver, int maxConnections, ExecutorService executor) {
+		this(new ApacheHttpTransport(maxConnections, hostResolver), hostResolver, executor) ;
+	}
+
+	/**
+	 * Constructor
+	 * @param transport The {@link HttpTransport} to send requests with
+	 * @param executor (OPTIONAL) The {@link ExecutorService} for parallel requests or <code>null</code>
+	 * to create a pool of daemon threads
+	 */
+	public ClientResources(HttpTransport transport, ExecutorService executor) {
+		this(transport, new HostResolver(), executor) ;
+	}
+
+	private ClientResources(HttpTransport transport, HostResolver hostResolver, ExecutorService executor) {
+		super() ;
+		this.transport = transport ;
+		this.hostResolver = hostResolver ;
+		// Bulk jobs hand their requests to this executor, so it carries each caller's Deadline across
+		this.executor = new DeadlineExecutor((executor!=null)?executor:Executors.newCachedThreadPool(ParallelRequests.daemonThreadFactory("dnsapi-bulk"))) ;
+		this.metrics = new ApiMetrics() ;
+	}
+
+	public HttpTransport getTransport() {
+		return transport ;
+	}
+
+	/**
+	 * @return The Apache {@link HttpClient} behind the transport, or <code>null</code> if the
+	 * transport is not an {@link ApacheHttpTransport}
+	 */
+	public HttpClient getHttpClient() {
+		return (transport instanceof ApacheHttpTransport)?((ApacheHttpTransport)transport).getHttpClient():null ;
+	}
+
+	/**
+	 * @return The {@link ExecutorService} for parallel requests; each task runs under the {@link Deadline}
+	 * of the thread which submitted it
+	 */
+	public ExecutorService getExecutor() {
+		return executor ;
+	}
+
+	public ApiMetrics getMetrics() {
+		return metrics ;
+	}
+
+	/**
+	 * @return The {@link HostResolver} which caches the addresses used for new connections
+	 */
+	public HostResolver getHostResolver() {
+		return hostResolver ;
+	}
+
+	/**
+	 * Open connections to a host ahead of the first requests which need them.
+	 * @param target The host to connect to
+	 * @param count The number of connections wanted
+	 * @param timeoutMillis How long to wait for a connection to be free when the pool is busy
+	 * @return The number of open connections available
+	 * @throws IOException If no connection could be opened
+	 * @see HttpTransport#openConnections(HttpHost, int, long)
+	 */
+	public int openConnections(HttpHost target, int count, long timeoutMillis) throws IOException {
+		return transport.openConnections(target, count, timeoutMillis) ;
+	}
+
+	/**
+	 * @return The number of connections currently held by the pool, idle or in use, or 0 if the
+	 * transport does not keep a pool of its own
+	 */
+	public int getConnectionsInPool() {
+		return (transport instanceof ApacheHttpTransport)?((ApacheHttpTransport)transport).getConnectionsInPool():0 ;
+	}
+
+	/**
+	 * Close all pooled connections and stop the thread pool
+	 */
+	public void shutdown() {
+		executor.shutdown() ;
+		transport.shutdown() ;
+	}
+}
@@ -0,0 +1,299 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A point in time by which a call, or a whole job made of many calls, must finish, which can also
+ * be cancelled early. While a deadline is entered on a thread with {@link #enter()}, every API call
+ * made on that thread gets only the time remaining: its connect and read timeouts are cut to fit,
+ * and when the deadline passes or is cancelled the HTTP exchange is aborted and its connection
+ * released. Calls made after that fail straight away with {@link ApiError.Category#TIMEOUT} or
+ * {@link ApiError.Category#CANCELLED} instead of being sent.
+ * <p>
+ * Work handed to {@link GenericAPI#getExecutor()} or {@link ParallelRequests} runs under the deadline
+ * of the thread which handed it over, so a deadline entered around a bulk job covers every request
+ * the job makes.
+ * <pre>
+ * Deadline deadline = Deadline.after(30, TimeUnit.SECONDS) ;
+ * Deadline previous = deadline.enter() ;
+ * try {
+ *     index.crawl(api, null, 8) ;
+ * } finally {
+ *     Deadline.exit(previous) ;
+ * }
+ * </pre>
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public final class Deadline {
+
+	private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<Deadline>() ;
+
+	private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, ParallelRequests.daemonThreadFactory("dnsapi-deadline")) ;
+
+	/**
+	 * A cancelled timer stays queued until its delay runs out, so the queue is purged after this many cancellations
+	 */
+	private static final int PURGE_INTERVAL = 1000 ;
+
+	private static final AtomicInteger CANCELLED_TIMERS = new AtomicInteger() ;
+
+	/**
+	 * A callback registered with {@link Deadline#whenDone(Runnable)}
+	 */
+	public interface Registration {
+
+		/**
+		 * Stop the callback from running, e.g. because the work it would abort has finished
+		 */
+		void remove() ;
+	}
+
+	private static final Registration NONE = new Registration() {
+		public void remove() {
+			// Nothing was registered
+		}
+	} ;
+
+	private final long expiresNanos ;
+	private final Deadline parent ;
+	private final List<Runnable> callbacks = new ArrayList<Runnable>() ;
+	private volatile boolean cancelled = false ;
+	private volatile boolean fired = false ;
+	private ScheduledFuture<?> timer = null ;
+
+	private Deadline(long expiresNanos, Deadline parent) {
+		super() ;
+		this.expiresNanos = expiresNanos ;
+		this.parent = parent ;
+	}
+
+	/**
+	 * @param timeout How long from now the deadline is
+	 * @param unit The {@link TimeUnit} of <code>timeout</code>
+	 * @return A new {@link Deadline}
+	 */
+	public static Deadline after(long timeout, TimeUnit unit) {
+		return new Deadline(System.nanoTime()+unit.toNanos(Math.max(0L, timeout)), null) ;
+	}
+
+	/**
+	 * @return The deadline entered on the current thread, or <code>null</code> if there is none
+	 */
+	public static Deadline current() {
+		return CURRENT.get() ;
+	}
+
+	/**
+	 * @return Has the deadline entered on the current thread passed or been cancelled?
+	 */
+	public static boolean isCurrentDone() {
+		Deadline deadline = CURRENT.get() ;
+		return deadline!=null && deadline.isDone() ;
+	}
+
+	/**
+	 * A deadline for one step of a longer job: it is this deadline or <code>timeout</code> from now,
+	 * whichever is sooner, and it is cancelled whenever this one is.
+	 * @param timeout The most time the step may take
+	 * @param unit The {@link TimeUnit} of <code>timeout</code>
+	 * @return A new {@link Deadline}
+	 */
+	public Deadline child(long timeout, TimeUnit unit) {
+		long expires = System.nanoTime()+unit.toNanos(Math.max(0L, timeout)) ;
+		return new Deadline((expires-expiresNanos<0)?expires:expiresNanos, this) ;
+	}
+
+	/**
+	 * @param unit The {@link TimeUnit} wanted
+	 * @return The time left before the deadline, which is 0 once it has passed
+	 */
+	public long remaining(TimeUnit unit) {
+		return unit.convert(Math.max(0L, expiresNanos-System.nanoTime()), TimeUnit.NANOSECONDS) ;
+	}
+
+	public boolean isExpired() {
+		return expiresNanos-System.nanoTime()<=0 ;
+	}
+
+	/**
+	 * @return Has this deadline, or one it was derived from, been cancelled?
+	 */
+	public boolean isCancelled() {
+		return cancelled || (parent!=null && parent.isCancelled()) ;
+	}
+
+	/**
+	 * @return Has the deadline passed or been cancelled?
+	 */
+	public boolean isDone() {
+		return isCancelled() || isExpired() ;
+	}
+
+	/**
+	 * Cancel the deadline now, aborting any requests made under it which are still in flight
+	 */
+	public void cancel() {
+		cancelled = true ;
+		fire() ;
+	}
+
+	/**
+	 * Run an action once the deadline passes or is cancelled, or straight away if it already has.
+	 * @param action The action, e.g. aborting an HTTP exchange; it may run on a timer thread
+	 * @return A {@link Registration} with which to remove the action once it is no longer needed
+	 */
+	public Registration whenDone(Runnable action) {
+		final Runnable once = once(action) ;
+		final Registration own = register(once) ;
+		final Registration inherited = (parent!=null)?parent.whenDone(once):NONE ;
+		return new Registration() {
+			public void remove() {
+				own.remove() ;
+				inherited.remove() ;
+			}
+		} ;
+	}
+
+	private Registration register(final Runnable action) {
+		synchronized (callbacks) {
+			if (!fired && !isDone()) {
+				callbacks.add(action) ;
+				if (timer==null) {
+					timer = TIMER.schedule(new Runnable() {
+						public void run() {
+							fire() ;
+						}
+					}, remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS) ;
+				}
+				return new Registration() {
+					public void remove() {
+						synchronized (callbacks) {
+							callbacks.remove(action) ;
+							if (callbacks.isEmpty() && timer!=null) {
+								// Nothing left to abort, so the timer can go until something new registers
+								cancelTimer(timer) ;
+								timer = null ;
+							}
+						}
+					}
+				} ;
+			}
+		}
+		action.run() ;
+		return NONE ;
+	}
+
+	private void fire() {
+		List<Runnable> actions ;
+		synchronized (callbacks) {
+			fired = true ;
+			actions = new ArrayList<Runnable>(callbacks) ;
+			callbacks.clear() ;
+			if (timer!=null) {
+				cancelTimer(timer) ;
+				timer = null ;
+			}
+		}
+		for (Runnable action: actions) {
+			action.run() ;
+		}
+	}
+
+	private static void cancelTimer(ScheduledFuture<?> timer) {
+		if (timer.cancel(false) && CANCELLED_TIMERS.incrementAndGet()%PURGE_INTERVAL==0) {
+			TIMER.purge() ;
+		}
+	}
+
+	private static Runnable once(final Runnable action) {
+		final AtomicBoolean ran = new AtomicBoolean() ;
+		return new Runnable() {
+			public void run() {
+				if (ran.compareAndSet(false, true)) {
+					action.run() ;
+				}
+			}
+		} ;
+	}
+
+	/**
+	 * Make this the deadline of the current thread.
+	 * @return The deadline the thread had before, to be passed to {@link #exit(Deadline)}
+	 */
+	public Deadline enter() {
+		Deadline previous = CURRENT.get() ;
+		CURRENT.set(this) ;
+		return previous ;
+	}
+
+	/**
+	 * Put back the deadline the current thread had before {@link #enter()}.
+	 * @param previous The value returned by {@link #enter()}
+	 */
+	public static void exit(Deadline previous) {
+		if (previous==null) {
+			CURRENT.remove() ;
+		} else {
+			CURRENT.set(previous) ;
+		}
+	}
+
+	/**
+	 * @param task The task to run
+	 * @return The task, changed to run under the current thread's deadline if it has one
+	 */
+	public static Runnable propagate(final Runnable task) {
+		final Deadline deadline = CURRENT.get() ;
+		if (deadline==null) {
+			return task ;
+		}
+		return new Runnable() {
+			public void run() {
+				Deadline previous = deadline.enter() ;
+				try {
+					task.run() ;
+				} finally {
+					exit(previous) ;
+				}
+			}
+		} ;
+	}
+
+	/**
+	 * @param task The task to run
+	 * @return The task, changed to run under the current thread's deadline if it has one
+	 */
+	public static <T> Callable<T> propagate(final Callable<T> task) {
+		final Deadline deadline = CURRENT.get() ;
+		if (deadline==null) {
+			return task ;
+		}
+		return new Callable<T>() {
+			public T call() throws Exception {
+				Deadline previous = deadline.enter() ;
+				try {
+					return task.call() ;
+				} finally {
+					exit(previous) ;
+				}
+			}
+		} ;
+	}
+
+	public String toString() {
+		return isCancelled()?"cancelled":(remaining(TimeUnit.MILLISECONDS)+"ms remaining") ;
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps an {@link ExecutorService} so that every task runs under the {@link Deadline} of the thread
+ * which submitted it.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+class DeadlineExecutor extends AbstractExecutorService {
+
+	private final ExecutorService delegate ;
+
+	DeadlineExecutor(ExecutorService delegate) {
+		super() ;
+		this.delegate = delegate ;
+	}
+
+	public void execute(Runnable command) {
+		delegate.execute(Deadline.propagate(command)) ;
+	}
+
+	public void shutdown() {
+		delegate.shutdown() ;
+	}
+
+	public List<Runnable> shutdownNow() {
+		return delegate.shutdownNow() ;
+	}
+
+	public boolean isShutdown() {
+		return delegate.isShutdown() ;
+	}
+
+	public boolean isTerminated() {
+		return delegate.isTerminated() ;
+	}
+
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit) ;
+	}
+}
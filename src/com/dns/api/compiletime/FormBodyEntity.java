@@ -0,0 +1,115 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * An <code>application/x-www-form-urlencoded</code> request body which is written straight from
+ * the query string the API methods already build, without first copying it into a byte array.
+ * Characters outside of US-ASCII are percent encoded as UTF-8 on the way out.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+class FormBodyEntity extends AbstractHttpEntity {
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray() ;
+
+	private final CharSequence form ;
+	private final int start ;
+	private final long length ;
+
+	/**
+	 * Constructor
+	 * @param form The text holding the form arguments
+	 * @param start The offset in <code>form</code> at which the arguments begin
+	 */
+	FormBodyEntity(CharSequence form, int start) {
+		super() ;
+		this.form = form ;
+		this.start = start ;
+		long len = 0 ;
+		for (int x=start; x<form.length(); x++) {
+			len += encodedLength(form.charAt(x)) ;
+		}
+		this.length = len ;
+		setContentType("application/x-www-form-urlencoded") ;
+	}
+
+	private static int encodedLength(char c) {
+		if (c<0x80) {
+			return 1 ;
+		} else if (c<0x800) {
+			return 6 ;
+		} else if (isSurrogate(c)) {
+			// Each half of a surrogate pair accounts for half of the 4 byte UTF-8 sequence
+			return 6 ;
+		}
+		return 9 ;
+	}
+
+	private static boolean isSurrogate(char c) {
+		return c>=Character.MIN_SURROGATE && c<=Character.MAX_SURROGATE ;
+	}
+
+	public boolean isRepeatable() {
+		return true ;
+	}
+
+	public long getContentLength() {
+		return length ;
+	}
+
+	public InputStream getContent() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream((int)length) ;
+		writeTo(buffer) ;
+		return new ByteArrayInputStream(buffer.toByteArray()) ;
+	}
+
+	public void writeTo(OutputStream out) throws IOException {
+		for (int x=start; x<form.length(); x++) {
+			char c = form.charAt(x) ;
+			if (c<0x80) {
+				out.write(c) ;
+			} else if (c<0x800) {
+				writeEscaped(out, 0xC0 | (c >> 6)) ;
+				writeEscaped(out, 0x80 | (c & 0x3F)) ;
+			} else if (Character.isHighSurrogate(c) && x+1<form.length() && Character.isLowSurrogate(form.charAt(x+1))) {
+				int cp = Character.toCodePoint(c, form.charAt(++x)) ;
+				writeEscaped(out, 0xF0 | (cp >> 18)) ;
+				writeEscaped(out, 0x80 | ((cp >> 12) & 0x3F)) ;
+				writeEscaped(out, 0x80 | ((cp >> 6) & 0x3F)) ;
+				writeEscaped(out, 0x80 | (cp & 0x3F)) ;
+			} else if (isSurrogate(c)) {
+				// An unpaired surrogate has no UTF-8 form; send '?' padded to the length we promised
+				for (int y=0; y<6; y++) {
+					out.write('?') ;
+				}
+			} else {
+				writeEscaped(out, 0xE0 | (c >> 12)) ;
+				writeEscaped(out, 0x80 | ((c >> 6) & 0x3F)) ;
+				writeEscaped(out, 0x80 | (c & 0x3F)) ;
+			}
+		}
+		out.flush() ;
+	}
+
+	private static void writeEscaped(OutputStream out, int b) throws IOException {
+		out.write('%') ;
+		out.write(HEX[(b >> 4) & 0x0F]) ;
+		out.write(HEX[b & 0x0F]) ;
+	}
+
+	public boolean isStreaming() {
+		return false ;
+	}
+}
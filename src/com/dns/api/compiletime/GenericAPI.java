@@ -1,30 +1,49 @@
 package com.dns.api.compiletime;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.net.URLEncoder;
-import org.apache.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHost;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.DefaultHttpClient;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- *
+ * The base of the API classes, which sends their calls to the API server. The settings are held in an
+ * immutable {@link ClientConfig}; every setter swaps in a changed copy, and each call works from the
+ * snapshot it read when it started. One instance may be shared by many threads.
  * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
  */
 public class GenericAPI {
 
-	protected String apiHost = null ;
-	protected boolean useSSL = false ;
-	protected String apiToken = null ;
+	/** The number of bytes of an error response body which are kept for logging */
+	private static final int MAX_ERROR_BODY = 512 ;
+
+	/** How long {@link #warmUp(int, boolean)} waits for a busy pool to free a connection */
+	private static final long WARM_UP_TIMEOUT = 10000L ;
+
 	protected Logger log = null ;
+	protected volatile WireRecorder wireRecorder = null ;
+	private volatile ClientConfig config ;
+	private volatile RequestListener[] listeners = new RequestListener[0] ;
+	private volatile ClientResources resources = null ;
+	private volatile Semaphore quota = null ;
+	private final SingleFlight readFlights = new SingleFlight() {
+		ApiResult load(ClientConfig config, String req) {
+			return executeRequest(config, req, false) ;
+		}
+	} ;
 
 	/**
 	 * Constructor
@@ -35,38 +54,372 @@ public class GenericAPI {
 	public GenericAPI(String apiHost, boolean useSSL, String apiToken) {
 		super() ;
 		this.log = LoggerFactory.getLogger(GenericAPI.class.getSimpleName()) ;
-		this.apiHost = apiHost ;
-		this.useSSL = useSSL ;
+		String encodedToken = null ;
 		try {
-			this.apiToken = URLEncoder.encode(apiToken, "US-ASCII") ;
+			encodedToken = URLEncoder.encode(apiToken, "US-ASCII") ;
 		} catch (UnsupportedEncodingException uee) {
 			System.out.println(uee.getLocalizedMessage()) ;
 			System.out.println(serializeStackTrace(uee.getStackTrace())) ;
 		}
+		this.config = new ClientConfig(apiHost, useSSL, encodedToken) ;
+	}
+
+	/**
+	 * Constructor
+	 * @param config The {@link ClientConfig} to make API calls with
+	 */
+	public GenericAPI(ClientConfig config) {
+		super() ;
+		if (config==null) {
+			throw new IllegalArgumentException("The configuration must not be null") ;
+		}
+		this.log = LoggerFactory.getLogger(GenericAPI.class.getSimpleName()) ;
+		this.config = config ;
 	}
 
-	public void setSSL(boolean isSSL) {
-		this.useSSL = isSSL ;
+	/**
+	 * Replace the whole configuration at once, e.g. to rotate the API token. Calls already in flight
+	 * finish with the configuration they started with; calls made from now on use the new one.
+	 * @param config The new {@link ClientConfig}
+	 */
+	public synchronized void setConfig(ClientConfig config) {
+		if (config==null) {
+			throw new IllegalArgumentException("The configuration must not be null") ;
+		}
+		this.config = config ;
+	}
+
+	/**
+	 * @return The current {@link ClientConfig}; it never changes, so it may be kept and read freely
+	 */
+	public ClientConfig getConfig() {
+		return config ;
+	}
+
+	public synchronized void setSSL(boolean isSSL) {
+		config = config.withSSL(isSSL) ;
 	}
 
 	public boolean isSSL() {
-		return useSSL ;
+		return config.isSSL() ;
 	}
 
-	public void setApiHost(String host) {
-		this.apiHost = host ;
+	public synchronized void setApiHost(String host) {
+		config = config.withApiHost(host) ;
 	}
 
 	public String getApiHost() {
-		return this.apiHost ;
+		return config.getApiHost() ;
 	}
 
-	public void setApiToken(String token) {
-		this.apiToken = token ;
+	public synchronized void setApiToken(String token) {
+		config = config.withApiToken(token) ;
 	}
 
 	public String getApiToken() {
-		return this.apiToken ;
+		return config.getApiToken() ;
+	}
+
+	/**
+	 * Set the maximum length of the path and query string for a single request. Bulk methods
+	 * which accept a list of values split their input so that no request exceeds this length.
+	 * @param length The maximum request length in characters
+	 */
+	public synchronized void setMaxUriLength(int length) {
+		config = config.withMaxUriLength(length) ;
+	}
+
+	public int getMaxUriLength() {
+		return config.getMaxUriLength() ;
+	}
+
+	/**
+	 * Set the maximum number of requests a single bulk method call may have in flight at once.
+	 * @param concurrency The maximum number of concurrent requests
+	 */
+	public synchronized void setBulkConcurrency(int concurrency) {
+		config = config.withBulkConcurrency(concurrency) ;
+	}
+
+	public int getBulkConcurrency() {
+		return config.getBulkConcurrency() ;
+	}
+
+	/**
+	 * Choose how calls which change data are sent. When enabled, their arguments (including the API
+	 * token) are sent as an <code>application/x-www-form-urlencoded</code> POST body instead of in
+	 * the URL, so they are not limited by URL length and do not appear in server access logs.
+	 * @param post Send mutation calls as POST requests?
+	 */
+	public synchronized void setPostMutations(boolean post) {
+		config = config.withPostMutations(post) ;
+	}
+
+	public boolean isPostMutations() {
+		return config.isPostMutations() ;
+	}
+
+	/**
+	 * Set the maximum size of a single POST body. Bulk methods split their input so that no POST
+	 * body exceeds this length when {@link #isPostMutations()} is enabled.
+	 * @param length The maximum form body length in characters
+	 */
+	public synchronized void setMaxFormLength(int length) {
+		config = config.withMaxFormLength(length) ;
+	}
+
+	public int getMaxFormLength() {
+		return config.getMaxFormLength() ;
+	}
+
+	/**
+	 * Include the stack trace of the underlying exception in the <code>stackTrace</code> field of
+	 * error responses. This is off by default because rendering stack traces is expensive when
+	 * many calls are failing at once.
+	 * @param capture Add stack traces to error responses?
+	 */
+	public synchronized void setCaptureStackTraces(boolean capture) {
+		config = config.withCaptureStackTraces(capture) ;
+	}
+
+	public boolean isCaptureStackTraces() {
+		return config.isCaptureStackTraces() ;
+	}
+
+	/**
+	 * Check the arguments of calls which create or change records locally (see {@link Validation}) and
+	 * reject bad ones without making a request. This is on by default.
+	 * @param validate Validate arguments before sending them?
+	 */
+	public synchronized void setValidateArguments(boolean validate) {
+		config = config.withValidateArguments(validate) ;
+	}
+
+	public boolean isValidateArguments() {
+		return config.isValidateArguments() ;
+	}
+
+	/**
+	 * @param millis How long to wait for a connection to the API server, or 0 to wait forever. The
+	 * default is 10 seconds.
+	 */
+	public synchronized void setConnectTimeout(int millis) {
+		config = config.withConnectTimeout(millis) ;
+	}
+
+	public int getConnectTimeout() {
+		return config.getConnectTimeout() ;
+	}
+
+	/**
+	 * @param millis How long to wait for each read from the API server, or 0 to wait forever. The
+	 * default is 60 seconds.
+	 */
+	public synchronized void setReadTimeout(int millis) {
+		config = config.withReadTimeout(millis) ;
+	}
+
+	public int getReadTimeout() {
+		return config.getReadTimeout() ;
+	}
+
+	/**
+	 * Limit the total time of each call, from waiting for a connection to reading the last byte of
+	 * the response. A call which runs over is aborted and fails with {@link ApiError.Category#TIMEOUT}.
+	 * Calls made under a {@link Deadline} get whichever of the two is sooner.
+	 * @param millis The most time a call may take, or 0 for no limit beyond the connect and read
+	 * timeouts. There is no limit by default.
+	 */
+	public synchronized void setCallTimeout(long millis) {
+		config = config.withCallTimeout(millis) ;
+	}
+
+	public long getCallTimeout() {
+		return config.getCallTimeout() ;
+	}
+
+	/**
+	 * Record a sample of request/response exchanges in memory for troubleshooting. Request and
+	 * response bodies are no longer written to the debug log; use {@link WireRecorder#dump(Appendable)}
+	 * to inspect them instead.
+	 * @param recorder The {@link WireRecorder} to use or <code>null</code> to stop recording
+	 */
+	public void setWireRecorder(WireRecorder recorder) {
+		this.wireRecorder = recorder ;
+	}
+
+	public WireRecorder getWireRecorder() {
+		return this.wireRecorder ;
+	}
+
+	/**
+	 * Register a {@link RequestListener} to be told about each stage of every call made through
+	 * this instance. When no listeners are registered the request path does no extra work.
+	 * @param listener The {@link RequestListener} to add
+	 */
+	public synchronized void addRequestListener(RequestListener listener) {
+		RequestListener[] updated = new RequestListener[listeners.length+1] ;
+		System.arraycopy(listeners, 0, updated, 0, listeners.length) ;
+		updated[listeners.length] = listener ;
+		listeners = updated ;
+	}
+
+	/**
+	 * Stop notifying a previously registered {@link RequestListener}
+	 * @param listener The {@link RequestListener} to remove
+	 */
+	public synchronized void removeRequestListener(RequestListener listener) {
+		for (int x=0; x<listeners.length; x++) {
+			if (listeners[x]==listener) {
+				RequestListener[] updated = new RequestListener[listeners.length-1] ;
+				System.arraycopy(listeners, 0, updated, 0, x) ;
+				System.arraycopy(listeners, x+1, updated, x, listeners.length-x-1) ;
+				listeners = updated ;
+				return ;
+			}
+		}
+	}
+
+	/**
+	 * Share a connection pool and thread pool with other API objects. If none is set, this object
+	 * creates its own {@link ClientResources} the first time it makes a request.
+	 * @param resources The {@link ClientResources} to use
+	 */
+	public synchronized void setClientResources(ClientResources resources) {
+		this.resources = resources ;
+	}
+
+	public ClientResources getClientResources() {
+		// Every request comes through here, so only the first one takes the lock
+		ClientResources shared = resources ;
+		if (shared==null) {
+			synchronized (this) {
+				shared = resources ;
+				if (shared==null) {
+					shared = new ClientResources() ;
+					resources = shared ;
+				}
+			}
+		}
+		return shared ;
+	}
+
+	/**
+	 * @return The {@link ExecutorService} used to run parallel requests
+	 */
+	public ExecutorService getExecutor() {
+		return getClientResources().getExecutor() ;
+	}
+
+	/**
+	 * Limit the number of calls which may be in flight at once through this object. The same
+	 * {@link Semaphore} may be given to several objects to apply one limit to all of them.
+	 * @param quota The {@link Semaphore} whose permits bound concurrent calls, or <code>null</code> for no limit
+	 */
+	public void setConcurrencyQuota(Semaphore quota) {
+		this.quota = quota ;
+	}
+
+	public Semaphore getConcurrencyQuota() {
+		return this.quota ;
+	}
+
+	/**
+	 * Collapse identical read calls which are made while one of them is already in flight, so that
+	 * only one request goes over the wire and every caller receives its result. Callers then share
+	 * the same parsed {@link JSONObject}, so they must not modify it. Calls which change data are never
+	 * collapsed.
+	 * @param collapse Share the result of identical concurrent read calls?
+	 */
+	public synchronized void setCollapseReads(boolean collapse) {
+		config = config.withCollapseReads(collapse) ;
+	}
+
+	public boolean isCollapseReads() {
+		return config.isCollapseReads() ;
+	}
+
+	/**
+	 * @return The number of read calls which were answered by joining an identical call in flight
+	 */
+	public long getCollapsedReadCount() {
+		return readFlights.getJoinedCount() ;
+	}
+
+	/**
+	 * Get this client ready for its first real requests, so they do not pay for name resolution,
+	 * connecting, the TLS handshake and cold code. The API host's addresses are resolved and cached
+	 * (see {@link HostResolver}), the requested number of connections are opened into the pool and,
+	 * if asked, one cheap read call is made to exercise the request and parsing path.
+	 * @param connections The number of pooled connections to open
+	 * @param probe Make a cheap read call once connected? APIs without a suitable call skip this step.
+	 * @return A {@link JSONObject} describing the addresses and connections which were warmed, or an error
+	 */
+	public JSONObject warmUp(int connections, boolean probe) {
+		long start = System.nanoTime() ;
+		ClientConfig config = this.config ;
+		ClientResources shared = getClientResources() ;
+		HttpHost target = getTargetHost(config) ;
+		JSONArray addresses = new JSONArray() ;
+		int opened ;
+		try {
+			for (InetAddress address: shared.getHostResolver().refresh(target.getHostName())) {
+				addresses.put(address.getHostAddress()) ;
+			}
+			opened = shared.openConnections(target, connections, WARM_UP_TIMEOUT) ;
+		} catch (UnknownHostException uhe) {
+			log.warn("Unable to resolve API host: " + uhe.getLocalizedMessage()) ;
+			return ApiResult.failure(new ApiError(ApiError.Category.TRANSPORT, 0, true, "Unable to resolve API host "+target.getHostName(), uhe)).toJSON(config.isCaptureStackTraces()) ;
+		} catch (IOException ioe) {
+			log.warn("Unable to open connections to API host: " + ioe.getLocalizedMessage()) ;
+			return ApiResult.failure(new ApiError(ApiError.Category.TRANSPORT, 0, true, ioe.getLocalizedMessage(), ioe)).toJSON(config.isCaptureStackTraces()) ;
+		}
+
+		String probeRequest = probe?getWarmUpRequest(config):null ;
+		if (probeRequest!=null) {
+			ApiResult result = executeRequest(config, probeRequest, false) ;
+			if (!result.isSuccess()) {
+				return result.toJSON(config.isCaptureStackTraces()) ;
+			}
+		}
+
+		JSONObject response = new JSONObject() ;
+		try {
+			JSONObject data = new JSONObject() ;
+			data.put("addresses", addresses) ;
+			data.put("connections", opened) ;
+			data.put("probed", probeRequest!=null) ;
+			data.put("elapsedMillis", (System.nanoTime()-start)/1000000L) ;
+			response.put("meta", new JSONObject().put("success", 1)) ;
+			response.put("data", data) ;
+		} catch (JSONException jsone) {
+			log.error(jsone.getLocalizedMessage(), jsone) ;
+		}
+		return response ;
+	}
+
+	/**
+	 * The request {@link #warmUp(int, boolean)} makes to exercise the request path. Subclasses return
+	 * the cheapest read call their API offers.
+	 * @param config The {@link ClientConfig} the call is made with
+	 * @return The portion of the URL after the host name, or <code>null</code> if there is no suitable call
+	 */
+	protected String getWarmUpRequest(ClientConfig config) {
+		return null ;
+	}
+
+	/**
+	 * @return The scheme, host and port requests are sent to, as the connection pool sees them
+	 */
+	private static HttpHost getTargetHost(ClientConfig config) {
+		String host = config.getApiHost() ;
+		int port = -1 ;
+		int colon = host.lastIndexOf(':') ;
+		if (colon>0 && host.indexOf(']', colon)<0 && (host.startsWith("[") || host.indexOf(':')==colon)) {
+			port = Integer.parseInt(host.substring(colon+1)) ;
+			host = host.substring(0, colon) ;
+		}
+		return new HttpHost(host, port, config.isSSL()?"https":"http") ;
 	}
 
 	private String serializeStackTrace(StackTraceElement[] trace) {
@@ -77,143 +430,323 @@ public class GenericAPI {
 		return traceBuilder.toString() ;
 	}
 
+	/**
+	 * Build the response for a call whose arguments were rejected before any request was made.
+	 * @param config The {@link ClientConfig} the call was made with
+	 * @param problem A description of what is wrong with the arguments
+	 * @return A {@link JSONObject} describing an <code>INVALID_REQUEST</code> error
+	 */
+	protected JSONObject invalidArguments(ClientConfig config, String problem) {
+		return ApiResult.failure(new ApiError(ApiError.Category.INVALID_REQUEST, 0, false, problem, null)).toJSON(config.isCaptureStackTraces()) ;
+	}
+
+	/**
+	 * Makes a mutation request for a list of values, splitting the list across as many requests as are
+	 * needed to keep each one under {@link #getMaxUriLength()} (or {@link #getMaxFormLength()} when
+	 * mutations are POSTed). The requests are sent in parallel, at most
+	 * {@link #getBulkConcurrency()} at a time, and their results are merged into a single response.
+	 * @param config The {@link ClientConfig} to make every one of the requests with
+	 * @param prefix The portion of the URL before the list values (path, token and leading arguments)
+	 * @param param The name of the query parameter which is repeated for each value
+	 * @param values The values to send
+	 * @param suffix Any arguments which must follow the list values, or an empty string
+	 * @return A {@link JSONObject} containing the merged results of all of the requests.
+	 */
+	protected JSONObject makeChunkedHttpRequest(final ClientConfig config, String prefix, String param, String[] values, String suffix) {
+		int maxLength = config.isPostMutations()?config.getMaxFormLength():config.getMaxUriLength() ;
+		List<String> requests = new ArrayList<String>() ;
+		StringBuilder uriBuilder = new StringBuilder(prefix) ;
+		int chunkStart = 0 ;
+		List<Integer> chunkStarts = new ArrayList<Integer>() ;
+		for (int x=0; x<values.length; x++) {
+			int argLength = param.length() + values[x].length() + 2 ;
+			if (x>chunkStart && uriBuilder.length()+argLength+suffix.length()>maxLength) {
+				requests.add(uriBuilder.append(suffix).toString()) ;
+				chunkStarts.add(chunkStart) ;
+				uriBuilder.setLength(prefix.length()) ;
+				chunkStart = x ;
+			}
+			uriBuilder.append('&').append(param).append('=').append(values[x]) ;
+		}
+		requests.add(uriBuilder.append(suffix).toString()) ;
+		chunkStarts.add(chunkStart) ;
+
+		if (requests.size()==1) {
+			return makeMutationRequest(config, requests.get(0)) ;
+		}
+		log.debug("Splitting "+values.length+" values into "+requests.size()+" requests") ;
+
+		List<Callable<JSONObject>> tasks = new ArrayList<Callable<JSONObject>>(requests.size()) ;
+		for (final String req: requests) {
+			tasks.add(new Callable<JSONObject>() {
+				public JSONObject call() {
+					return makeMutationRequest(config, req) ;
+				}
+			}) ;
+		}
+		List<JSONObject> results = ParallelRequests.invokeAll(getExecutor(), tasks, config.getBulkConcurrency()) ;
+
+		JSONObject response = new JSONObject() ;
+		try {
+			JSONArray data = new JSONArray() ;
+			JSONArray errors = new JSONArray() ;
+			for (int x=0; x<results.size(); x++) {
+				JSONObject result = results.get(x) ;
+				JSONObject meta = result.optJSONObject("meta") ;
+				if (meta!=null && meta.optInt("success", 0)==1) {
+					JSONArray chunkData = result.optJSONArray("data") ;
+					if (chunkData!=null) {
+						for (int y=0; y<chunkData.length(); y++) {
+							data.put(chunkData.get(y)) ;
+						}
+					} else if (result.has("data")) {
+						data.put(result.get("data")) ;
+					}
+				} else {
+					int end = (x+1<chunkStarts.size())?chunkStarts.get(x+1):values.length ;
+					JSONArray failed = new JSONArray() ;
+					for (int y=chunkStarts.get(x); y<end; y++) {
+						failed.put(values[y]) ;
+					}
+					JSONObject error = new JSONObject() ;
+					error.put("error", (meta!=null)?meta.optString("error", ""):result.optString("error", "")) ;
+					error.put(param, failed) ;
+					errors.put(error) ;
+				}
+			}
+			JSONObject meta = new JSONObject() ;
+			meta.put("success", (errors.length()==0)?1:0) ;
+			meta.put("requests", results.size()) ;
+			if (errors.length()>0) {
+				meta.put("error", errors.length()+" of "+results.size()+" requests failed") ;
+				meta.put("errors", errors) ;
+			}
+			response.put("meta", meta) ;
+			response.put("data", data) ;
+		} catch (JSONException jsone) {
+			log.error(jsone.getLocalizedMessage(), jsone) ;
+		}
+		return response ;
+	}
+
+	/**
+	 * Makes a request for an API call which changes data. This is sent as a POST with a form body
+	 * if {@link ClientConfig#isPostMutations()} is enabled, otherwise as an ordinary GET.
+	 * @param config The {@link ClientConfig} to make the request with
+	 * @param req The portion of the URL after the host name
+	 * @return A {@link JSONObject} containing the results of the request.
+	 */
+	protected JSONObject makeMutationRequest(ClientConfig config, String req) {
+		return makeHttpRequest(config, req, config.isPostMutations()) ;
+	}
+
 	/**
 	 * Takes a protocol string and a URI and makes an HTTP request. Returns a parsed
 	 * {@link JSONObject} from the results.
+	 * @param config The {@link ClientConfig} to make the request with
 	 * @param req The portion of the URL after the host name
 	 * @return A {@link JSONObject} containing the results of the request.
 	 */
-	protected JSONObject makeHttpRequest(String req) {
-		String protocol = this.useSSL?"https":"http" ;
-		String breadCrumbs = "" ;
-		JSONObject response ;
-
-		if (req!=null) {
-			String apiCall = protocol + "://" + apiHost + req;
-			response = null;
-			HttpClient client = new DefaultHttpClient();
-			HttpGet request = new HttpGet(apiCall);
-			request.addHeader("User-Agent", "DNS-Android");
-			HttpResponse answer = null;
+	protected JSONObject makeHttpRequest(ClientConfig config, String req) {
+		if (config.isCollapseReads() && req!=null) {
+			return readFlights.execute(config, req).toJSON(config.isCaptureStackTraces()) ;
+		}
+		return makeHttpRequest(config, req, false) ;
+	}
+
+	/**
+	 * Takes a protocol string and a URI and makes an HTTP request. Returns a parsed
+	 * {@link JSONObject} from the results.
+	 * @param config The {@link ClientConfig} to make the request with
+	 * @param req The portion of the URL after the host name
+	 * @param post Send the query arguments as a form encoded POST body rather than in the URL?
+	 * @return A {@link JSONObject} containing the results of the request.
+	 */
+	protected JSONObject makeHttpRequest(ClientConfig config, String req, boolean post) {
+		return executeRequest(config, req, post).toJSON(config.isCaptureStackTraces()) ;
+	}
+
+	/**
+	 * Makes an HTTP request and returns either the parsed response or a description of the failure.
+	 * @param config The {@link ClientConfig} to make the request with; the same snapshot must be used
+	 * for building <code>req</code>, so the token and host always match
+	 * @param req The portion of the URL after the host name
+	 * @param post Send the query arguments as a form encoded POST body rather than in the URL?
+	 * @return An {@link ApiResult} holding the parsed response or an {@link ApiError}.
+	 */
+	protected ApiResult executeRequest(ClientConfig config, String req, boolean post) {
+		if (req==null) {
+			return ApiResult.failure(new ApiError(ApiError.Category.INVALID_REQUEST, 0, false, "The request string is null!!!", null)) ;
+		}
+
+		Deadline deadline = Deadline.current() ;
+		long callTimeout = config.getCallTimeout() ;
+		if (callTimeout>0) {
+			deadline = (deadline!=null)?deadline.child(callTimeout, TimeUnit.MILLISECONDS):Deadline.after(callTimeout, TimeUnit.MILLISECONDS) ;
+		}
+		if (deadline!=null && deadline.isDone()) {
+			return deadlineFailure(deadline, null, "before it was sent") ;
+		}
+
+		Semaphore permits = this.quota ;
+		if (permits!=null) {
 			try {
-				log.debug("Sending request to " + protocol + "://" + apiHost + req + "&isAndroid=true");
-				answer = client.execute(request);
-				log.debug("API HTTP Request Completed.");
-			} catch (ClientProtocolException cpe) {
-				log.debug("ClientProtocolException when trying to request API URL", cpe);
-				response = new JSONObject();
-				try {
-					response.put("error", cpe.getLocalizedMessage());
-					response.put("breadcrumb", breadCrumbs);
-					response.put("stackTrace", serializeStackTrace(cpe.getStackTrace()));
-				} catch (JSONException jsone) {
-					log.error(cpe.getLocalizedMessage(), cpe);
+				if (deadline==null) {
+					permits.acquire() ;
+				} else if (!permits.tryAcquire(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)) {
+					return deadlineFailure(deadline, null, "while waiting for a concurrency permit") ;
 				}
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt() ;
+				return ApiResult.failure(new ApiError(ApiError.Category.TRANSPORT, 0, false, "Interrupted while waiting for a concurrency permit", ie)) ;
+			}
+		}
+		try {
+			RequestListener[] active = this.listeners ;
+			if (active.length==0) {
+				return sendRequest(config, req, post, null, deadline) ;
+			}
+			RequestTrace trace = new RequestTrace(RequestTrace.endpointName(req), active) ;
+			ApiResult result = null ;
+			try {
+				result = sendRequest(config, req, post, trace, deadline) ;
+			} finally {
+				trace.requestCompleted(result) ;
+			}
+			return result ;
+		} finally {
+			if (permits!=null) {
+				permits.release() ;
+			}
+		}
+	}
+
+	/**
+	 * The failure for a call whose {@link Deadline} passed or was cancelled.
+	 * @param when Where the call had got to, e.g. "while reading the response"
+	 */
+	private ApiResult deadlineFailure(Deadline deadline, Throwable cause, String when) {
+		boolean cancelled = deadline.isCancelled() ;
+		String message = (cancelled?"The call was cancelled ":"The call's deadline passed ")+when ;
+		log.debug(message) ;
+		// Retryable because the server may never have seen the call; it may also have acted on it
+		return ApiResult.failure(new ApiError(cancelled?ApiError.Category.CANCELLED:ApiError.Category.TIMEOUT, 0, true, message, cause)) ;
+	}
+
+	private ApiResult sendRequest(ClientConfig config, String req, boolean post, RequestTrace trace, Deadline deadline) {
+		String protocol = config.isSSL()?"https":"http" ;
+		String apiHost = config.getApiHost() ;
+		HttpTransport transport = getClientResources().getTransport() ;
+		TransportRequest request ;
+		int queryStart = req.indexOf('?') ;
+		if (post && queryStart>=0) {
+			request = TransportRequest.post(protocol + "://" + apiHost + req.substring(0, queryStart), req, queryStart+1, trace) ;
+		} else {
+			request = TransportRequest.get(protocol + "://" + apiHost + req, trace) ;
+		}
+		request.setLimits(config.getConnectTimeout(), config.getReadTimeout(), deadline) ;
+
+		WireRecorder recorder = this.wireRecorder ;
+		WireRecorder.Exchange exchange = (recorder!=null)?recorder.begin(request.getMethod(), req):null ;
+
+		TransportResponse answer ;
+		try {
+			if (log.isDebugEnabled()) {
+				log.debug("Sending " + request.getMethod() + " request to " + protocol + "://" + apiHost
+						+ ((queryStart>=0)?req.substring(0, queryStart):req));
+			}
+			answer = transport.send(request);
+			log.debug("API HTTP Request Completed.");
+		} catch (ClientProtocolException cpe) {
+			return failure(exchange, ApiError.Category.TRANSPORT, 0, false, "ClientProtocolException when trying to request API URL", cpe) ;
+		} catch (IOException ioe) {
+			if (deadline!=null && deadline.isDone()) {
+				return finish(exchange, 0, deadlineFailure(deadline, ioe, "while waiting for the response")) ;
+			}
+			return failure(exchange, ApiError.Category.TRANSPORT, 0, true, "IOException when trying to request API URL", ioe) ;
+		}
+		if (answer == null) {
+			return failure(exchange, ApiError.Category.TRANSPORT, 0, true, "HttpClient response is null.", null) ;
+		}
+
+		if (trace!=null) {
+			trace.firstByteReceived() ;
+		}
+
+		int status = answer.getStatus() ;
+		if ((status >= 200 && status <= 220) || status == 403) {
+			String responseText ;
+			try {
+				responseText = answer.readBody();
 			} catch (IOException ioe) {
-				log.error("IOException when trying to request API URL", ioe);
-				response = new JSONObject();
-				try {
-					response.put("error", ioe.getLocalizedMessage());
-					response.put("breadcrumb", breadCrumbs);
-					response.put("stackTrace", serializeStackTrace(ioe.getStackTrace()));
-				} catch (JSONException jsone) {
-					log.error(jsone.getLocalizedMessage(), jsone);
+				if (deadline!=null && deadline.isDone()) {
+					return finish(exchange, status, deadlineFailure(deadline, ioe, "while reading the response")) ;
 				}
+				return failure(exchange, ApiError.Category.TRANSPORT, status, true, "IOException when trying to read response body", ioe) ;
 			}
-			boolean isValidStatus = false;
-			if (answer != null) {
-				if ((answer.getStatusLine().getStatusCode() >= 200 && answer.getStatusLine().getStatusCode() <= 220) || answer.getStatusLine().getStatusCode() == 403) {
-					isValidStatus = true;
-				}
-			} else {
-				log.error("The HTTP answer object is null!!");
-				response = new JSONObject();
-				try {
-					response.put("error", "HttpClient response is null.");
-					response.put("breadcrumb", breadCrumbs);
-				} catch (JSONException jsone) {
-					log.error(jsone.getLocalizedMessage(), jsone);
-				}
+			if (log.isDebugEnabled()) {
+				log.debug("Response body read (" + responseText.length() + " characters)");
 			}
-			if (isValidStatus) {
-				log.debug("HTTP Response status is 200 OK");
-				try {
-					BufferedReader bis = new BufferedReader(new InputStreamReader(answer.getEntity().getContent()));
-					StringBuilder responseText = new StringBuilder();
-					String line = null;
-					log.debug("Reading in the response body.");
-					line = bis.readLine();
-					while (line != null) {
-						responseText.append(line);
-						line = bis.readLine();
-					}
-					log.debug("Response body read and stored\n\n" + responseText.toString() + "\n");
-					response = new JSONObject(responseText.toString());
-					bis.close() ;
-				} catch (IOException ioe) {
-					log.error("IOException when trying to read response body", ioe);
-					response = new JSONObject();
-					try {
-						response.put("error", ioe.getLocalizedMessage());
-						response.put("breadcrumb", breadCrumbs);
-						response.put("stackTrace", serializeStackTrace(ioe.getStackTrace()));
-					} catch (JSONException jsone) {
-						log.error(jsone.getLocalizedMessage(), jsone);
-					}
-				} catch (JSONException jsone) {
-					log.error("JSONException encountered while parsing request body.", jsone);
-					response = new JSONObject();
-					try {
-						response.put("error", jsone.getLocalizedMessage());
-						response.put("breadcrumb", breadCrumbs);
-						response.put("stackTrace", serializeStackTrace(jsone.getStackTrace()));
-					} catch (JSONException jsone1) {
-						log.error(jsone1.getLocalizedMessage(), jsone1);
-					}
-				}
-			} else {
-				log.debug("Status '" + answer.getStatusLine().getStatusCode() + "' was not valid");
-				BufferedReader bis = null;
-				try {
-					bis = new BufferedReader(new InputStreamReader(answer.getEntity().getContent()));
-				} catch (IllegalStateException e) {
-					log.error(e.getLocalizedMessage(), e);
-				} catch (IOException e) {
-					log.error(e.getLocalizedMessage(), e);
-				}
-				if (bis != null) {
-					StringBuilder responseText = new StringBuilder();
-					String line = null;
-					log.debug("Reading in the response body.");
-					try {
-						line = bis.readLine();
-						while (line != null) {
-							responseText.append(line);
-							line = bis.readLine();
-						}
-						bis.close() ;
-					} catch (IOException e) {
-						log.error(e.getLocalizedMessage(), e);
-					}
-					log.debug("Response body read and stored\n\n" + responseText.toString() + "\n");
-					response = new JSONObject();
-					try {
-						response.put("error", "HttpClient response has code '" + answer.getStatusLine().getStatusCode() + "'.");
-						response.put("breadcrumb", breadCrumbs);
-					} catch (JSONException jsone) {
-						log.error(jsone.getLocalizedMessage(), jsone);
-					}
-				}
+			if (trace!=null) {
+				trace.bodyRead(responseText.length()) ;
+			}
+			if (exchange!=null) {
+				exchange.response = responseText ;
 			}
-		} else {
-			response = new JSONObject() ;
 			try {
-				response.put("error", "The request string is null!!!") ;
+				JSONObject response = new JSONObject(responseText) ;
+				if (trace!=null) {
+					trace.parseCompleted() ;
+				}
+				if (exchange!=null) {
+					recorder.finish(exchange, status, responseText, null) ;
+				}
+				return ApiResult.success(response) ;
 			} catch (JSONException jsone) {
-				log.error(jsone.getLocalizedMessage(), jsone);
+				return failure(exchange, ApiError.Category.PARSE, status, false, "JSONException encountered while parsing request body.", jsone) ;
 			}
 		}
 
-		return response;
+		log.debug("Status '" + status + "' was not valid");
+		String responseText = null ;
+		try {
+			responseText = answer.readPrefix(MAX_ERROR_BODY);
+		} catch (IOException ioe) {
+			log.debug(ioe.getLocalizedMessage(), ioe);
+		}
+		if (exchange!=null) {
+			exchange.response = responseText ;
+		}
+		return failure(exchange, ApiError.Category.HTTP_STATUS, status, ApiError.isRetryableStatus(status),
+				"HttpClient response has code '" + status + "'.", null) ;
+	}
+
+	/**
+	 * Record a failed exchange if it is being sampled.
+	 */
+	private ApiResult finish(WireRecorder.Exchange exchange, int status, ApiResult result) {
+		WireRecorder recorder = this.wireRecorder ;
+		if (exchange!=null && recorder!=null) {
+			recorder.finish(exchange, status, exchange.response, result.getError().getMessage()) ;
+		}
+		return result ;
+	}
+
+	/**
+	 * Build a failed {@link ApiResult} and record it if the exchange is being sampled. The failure is
+	 * logged as a single line; the stack trace is only logged when debugging is enabled.
+	 */
+	private ApiResult failure(WireRecorder.Exchange exchange, ApiError.Category category, int status, boolean retryable, String context, Throwable cause) {
+		String message = (cause!=null && cause.getLocalizedMessage()!=null)?cause.getLocalizedMessage():context ;
+		if (log.isDebugEnabled()) {
+			log.debug(context, cause) ;
+		} else {
+			log.warn(context + ": " + message) ;
+		}
+		WireRecorder recorder = this.wireRecorder ;
+		if (exchange!=null && recorder!=null) {
+			recorder.finish(exchange, status, exchange.response, message) ;
+		}
+		return ApiResult.failure(new ApiError(category, status, retryable, message, cause)) ;
 	}
 }
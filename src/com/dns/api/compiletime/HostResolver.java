@@ -0,0 +1,99 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the addresses of the API host so that new connections do not each wait on a name lookup.
+ * Entries are looked up again once they are older than the refresh interval; if that lookup fails
+ * the previous addresses are kept, so a resolver outage does not take the client down with it.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class HostResolver {
+
+	private static final class Entry {
+		final InetAddress[] addresses ;
+		final long resolvedAt ;
+
+		Entry(InetAddress[] addresses, long resolvedAt) {
+			this.addresses = addresses ;
+			this.resolvedAt = resolvedAt ;
+		}
+	}
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>() ;
+	private volatile long refreshMillis ;
+
+	/**
+	 * Constructor which refreshes addresses every 60 seconds.
+	 */
+	public HostResolver() {
+		this(60000L) ;
+	}
+
+	/**
+	 * Constructor
+	 * @param refreshMillis How long resolved addresses are used before they are looked up again
+	 */
+	public HostResolver(long refreshMillis) {
+		super() ;
+		this.refreshMillis = refreshMillis ;
+	}
+
+	public void setRefreshMillis(long refreshMillis) {
+		this.refreshMillis = refreshMillis ;
+	}
+
+	public long getRefreshMillis() {
+		return this.refreshMillis ;
+	}
+
+	/**
+	 * Get the addresses of a host, looking them up only if they are not cached or are due a refresh.
+	 * @param host The host name or address literal
+	 * @return The addresses of the host
+	 * @throws UnknownHostException If the host has never been resolved and cannot be resolved now
+	 */
+	public InetAddress[] resolve(String host) throws UnknownHostException {
+		Entry entry = entries.get(host) ;
+		long now = System.currentTimeMillis() ;
+		if (entry!=null && now-entry.resolvedAt<refreshMillis) {
+			return entry.addresses.clone() ;
+		}
+		try {
+			return refresh(host).clone() ;
+		} catch (UnknownHostException uhe) {
+			if (entry!=null) {
+				return entry.addresses.clone() ;
+			}
+			throw uhe ;
+		}
+	}
+
+	/**
+	 * Look up a host now and cache the result, whether or not the cached entry is due a refresh.
+	 * @param host The host name or address literal
+	 * @return The addresses of the host
+	 * @throws UnknownHostException If the host cannot be resolved
+	 */
+	public InetAddress[] refresh(String host) throws UnknownHostException {
+		InetAddress[] addresses = InetAddress.getAllByName(host) ;
+		entries.put(host, new Entry(addresses, System.currentTimeMillis())) ;
+		return addresses ;
+	}
+
+	/**
+	 * Forget all cached addresses
+	 */
+	public void clear() {
+		entries.clear() ;
+	}
+}
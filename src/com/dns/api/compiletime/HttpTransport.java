@@ -0,0 +1,44 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.io.IOException;
+
+import org.apache.http.HttpHost;
+
+/**
+ * Sends the HTTP requests made by the API objects. The default transport is {@link ApacheHttpTransport};
+ * others can be installed with {@link ClientResources#ClientResources(HttpTransport, java.util.concurrent.ExecutorService)}.
+ * Implementations must be safe for use by many threads at once.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public interface HttpTransport {
+
+	/**
+	 * Send a request and wait for the response headers.
+	 * @param request The {@link TransportRequest} to send
+	 * @return The {@link TransportResponse}, whose body the caller reads or closes
+	 * @throws IOException If the request could not be sent or no response was received
+	 */
+	TransportResponse send(TransportRequest request) throws IOException ;
+
+	/**
+	 * Open connections to a host ahead of the first requests which need them.
+	 * @param target The host to connect to
+	 * @param count The number of connections wanted
+	 * @param timeoutMillis How long to wait for a busy pool to free a connection
+	 * @return The number of open connections now available, which is 0 for transports that cannot
+	 * connect ahead of time
+	 * @throws IOException If no connection could be opened
+	 */
+	int openConnections(HttpHost target, int count, long timeoutMillis) throws IOException ;
+
+	/**
+	 * Close any connections held by this transport
+	 */
+	void shutdown() ;
+}
@@ -0,0 +1,150 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.apache.http.HttpHost;
+
+/**
+ * An {@link HttpTransport} built on the JDK's own {@link HttpURLConnection}, for applications which
+ * would rather not depend on the Apache connection pool. Persistent connections are kept by the
+ * JDK's keep-alive cache, whose size is set with the <code>http.maxConnections</code> system
+ * property, so this transport cannot open connections ahead of time.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class JdkHttpTransport implements HttpTransport {
+
+	private final int connectTimeoutMillis ;
+	private final int readTimeoutMillis ;
+
+	/**
+	 * Constructor which waits up to 10 seconds to connect and 60 seconds for each read.
+	 */
+	public JdkHttpTransport() {
+		this(10000, 60000) ;
+	}
+
+	/**
+	 * Constructor
+	 * @param connectTimeoutMillis How long to wait for a connection, or 0 to wait forever
+	 * @param readTimeoutMillis How long to wait for each read from the server, or 0 to wait forever
+	 */
+	public JdkHttpTransport(int connectTimeoutMillis, int readTimeoutMillis) {
+		super() ;
+		this.connectTimeoutMillis = connectTimeoutMillis ;
+		this.readTimeoutMillis = readTimeoutMillis ;
+	}
+
+	public TransportResponse send(TransportRequest request) throws IOException {
+		final HttpURLConnection connection = (HttpURLConnection)new URL(request.getUri()).openConnection() ;
+		connection.setConnectTimeout((request.getConnectTimeoutMillis()>0)?request.getConnectTimeoutMillis():connectTimeoutMillis) ;
+		connection.setReadTimeout((request.getReadTimeoutMillis()>0)?request.getReadTimeoutMillis():readTimeoutMillis) ;
+		connection.setUseCaches(false) ;
+		connection.setRequestMethod(request.getMethod()) ;
+		connection.setRequestProperty("User-Agent", TransportRequest.USER_AGENT) ;
+		Deadline.Registration abort = request.onAbort(new Runnable() {
+			public void run() {
+				connection.disconnect() ;
+			}
+		}) ;
+		try {
+			if (request.hasForm()) {
+				connection.setDoOutput(true) ;
+				connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded") ;
+				connection.setFixedLengthStreamingMode((int)request.getFormLength()) ;
+				connection.connect() ;
+				request.connectionAcquired() ;
+				OutputStream out = connection.getOutputStream() ;
+				try {
+					request.writeForm(out) ;
+				} finally {
+					out.close() ;
+				}
+			} else {
+				connection.connect() ;
+				request.connectionAcquired() ;
+			}
+			return new JdkResponse(connection, connection.getResponseCode(), abort) ;
+		} catch (IOException ioe) {
+			abort.remove() ;
+			throw ioe ;
+		} catch (RuntimeException re) {
+			abort.remove() ;
+			throw re ;
+		}
+	}
+
+	/**
+	 * Always returns 0; the JDK only keeps connections which a completed request has released.
+	 */
+	public int openConnections(HttpHost target, int count, long timeoutMillis) throws IOException {
+		return 0 ;
+	}
+
+	/**
+	 * Does nothing; idle connections are closed by the JDK's keep-alive cache.
+	 */
+	public void shutdown() {
+		// Nothing to release
+	}
+
+	private static final class JdkResponse implements TransportResponse {
+		private final HttpURLConnection connection ;
+		private final int status ;
+		private final Deadline.Registration abort ;
+
+		JdkResponse(HttpURLConnection connection, int status, Deadline.Registration abort) {
+			super() ;
+			this.connection = connection ;
+			this.status = status ;
+			this.abort = abort ;
+		}
+
+		public int getStatus() {
+			return status ;
+		}
+
+		/**
+		 * Error statuses have their body on a separate stream; reading either one fully is what lets
+		 * the JDK return the connection to its keep-alive cache.
+		 */
+		private InputStream body() throws IOException {
+			return (status>=400)?connection.getErrorStream():connection.getInputStream() ;
+		}
+
+		public String readBody() throws IOException {
+			try {
+				return ResponseReader.readBody(body(), connection.getContentLength()) ;
+			} finally {
+				abort.remove() ;
+			}
+		}
+
+		public String readPrefix(int limit) throws IOException {
+			try {
+				return ResponseReader.readPrefix(body(), limit) ;
+			} finally {
+				abort.remove() ;
+			}
+		}
+
+		public void close() {
+			try {
+				ResponseReader.readPrefix(body(), 0) ;
+			} catch (IOException ioe) {
+				connection.disconnect() ;
+			} finally {
+				abort.remove() ;
+			}
+		}
+	}
+}
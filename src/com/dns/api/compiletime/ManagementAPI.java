@@ -7,9 +7,7 @@
 package com.dns.api.compiletime;
 
 import java.io.UnsupportedEncodingException;
-import java.net.InetAddress;
 import java.net.URLEncoder;
-import java.net.UnknownHostException;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -30,6 +28,14 @@ public class ManagementAPI extends GenericAPI {
 		super(apiHost, useSSL, apiToken) ;
 	}
 
+	/**
+	 * Constructor
+	 * @param config The {@link ClientConfig} to make API calls with
+	 */
+	public ManagementAPI(ClientConfig config) {
+		super(config) ;
+	}
+
 	/**
 	 * Returns the JSON results of an appendToGeoGroup API call.
 	 * @param name The name of the GeoGroup to be appended to
@@ -39,8 +45,9 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject appendToGeoGroup(String name, String iso2Code, String region, String city) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/appendToGeoGroup/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 		uriBuilder.append("&name="+name) ;
 		uriBuilder.append("&iso2_code="+iso2Code) ;
 		if (region!=null) {
@@ -49,7 +56,7 @@ public class ManagementAPI extends GenericAPI {
 		if (city!=null) {
 			uriBuilder.append("city="+city) ;
 		}
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -60,15 +67,16 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject assignDomainMode(String domain, String mode, String group) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/assignDomainMode/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 		uriBuilder.append("&domain="+domain) ;
 		uriBuilder.append("&mode="+mode) ;
 		if (group!=null) {
 			uriBuilder.append("&group="+group) ;
 		}
 		
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -92,8 +100,9 @@ public class ManagementAPI extends GenericAPI {
 			String primary_wildcard,
 			String primary_wildcard_qtype,
 			String default_mx) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/createDomain/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 		uriBuilder.append("&domain="+domain) ;
 		uriBuilder.append("&mode="+mode) ;
 		if (group!=null) {
@@ -116,7 +125,7 @@ public class ManagementAPI extends GenericAPI {
 		if (default_mx!=null) {
 			uriBuilder.append("&default_mx="+default_mx) ;
 		}
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -136,8 +145,9 @@ public class ManagementAPI extends GenericAPI {
 				String primary_wildcard,
 				String primary_wildcard_qtype,
 				String default_mx) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/createDomainGroup/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 		uriBuilder.append("&name="+name) ;
 		if (rname!=null) {
 			uriBuilder.append("&rname="+rname) ;
@@ -156,29 +166,30 @@ public class ManagementAPI extends GenericAPI {
 		if (default_mx!=null) {
 			uriBuilder.append("&default_mx="+default_mx) ;
 		}
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
-	 * Create multiple new domains and optionally assign them to a domain group.
+	 * Create multiple new domains and optionally assign them to a domain group. Long lists are split
+	 * across several parallel requests (see {@link #setMaxUriLength(int)}) and the results merged.
 	 * @param domains A list of domains to be added.
 	 * @param mode The mode to set for the domains (either "advanced" or "group"
 	 * @param group (OPTIONAL) The domain group to assign the domains to or <code>null</code>
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject createDomains(String mode, String[] domains, String group) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/createDomainGroup/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&mode="+mode) ;
-		for (int x=0; x<domains.length; x++) {
-			uriBuilder.append("&domains="+domains[x]) ;
-		}
+
+		String suffix = "" ;
 		if (group!=null) {
-			uriBuilder.append("&group="+group) ;
+			suffix = "&group="+group ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeChunkedHttpRequest(config, uriBuilder.toString(), "domains", domains, suffix) ;
 	}
 
 	/**
@@ -187,12 +198,13 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject createGeoGroup(String group) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/createDomainGroup/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&group="+group) ;
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -205,8 +217,15 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject createHostname(String name, boolean isGroup, String host, boolean isUrlForward, String defaultAddr) {
+		ClientConfig config = getConfig() ;
+		if (config.isValidateArguments()) {
+			String problem = Validation.checkHost(host) ;
+			if (problem!=null) {
+				return invalidArguments(config, problem) ;
+			}
+		}
 		StringBuilder uriBuilder = new StringBuilder("/api/createHostname/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (isGroup) {
 			uriBuilder.append("&group="+name) ;
@@ -224,7 +243,7 @@ public class ManagementAPI extends GenericAPI {
 			uriBuilder.append("&default="+defaultAddr) ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -255,8 +274,16 @@ public class ManagementAPI extends GenericAPI {
 				String region,
 				String city,
 				Integer ttl) {
+		ClientConfig config = getConfig() ;
+		if (config.isValidateArguments()) {
+			String problem = Validation.checkRecord(host, type, rdata, ttl) ;
+			if (problem!=null) {
+				return invalidArguments(config, problem) ;
+			}
+		}
+
 		StringBuilder uriBuilder = new StringBuilder("/api/createRRData/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (isGroup) {
 			uriBuilder.append("&group="+name) ;
@@ -289,7 +316,7 @@ public class ManagementAPI extends GenericAPI {
 			uriBuilder.append("&ttl="+ttl) ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -476,8 +503,16 @@ public class ManagementAPI extends GenericAPI {
 				String region,
 				String city,
 				Integer ttl) {
+		ClientConfig config = getConfig() ;
+		if (config.isValidateArguments()) {
+			String problem = Validation.checkRecord(host, "SOA", rdata, ttl) ;
+			if (problem!=null) {
+				return invalidArguments(config, problem) ;
+			}
+		}
+
 		StringBuilder uriBuilder = new StringBuilder("/api/createRRData/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (isGroup) {
 			uriBuilder.append("&group="+name) ;
@@ -521,7 +556,7 @@ public class ManagementAPI extends GenericAPI {
 			uriBuilder.append("&expire="+expire) ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -556,8 +591,25 @@ public class ManagementAPI extends GenericAPI {
 				String region,
 				String city,
 				Integer ttl) {
+		ClientConfig config = getConfig() ;
+		if (config.isValidateArguments()) {
+			String problem = Validation.checkRecord(host, "SRV", rdata, ttl) ;
+			if (problem==null) {
+				problem = Validation.checkRange("priority", priority, 0, 65535) ;
+			}
+			if (problem==null) {
+				problem = Validation.checkRange("weight", weight, 0, 65535) ;
+			}
+			if (problem==null) {
+				problem = Validation.checkRange("port", port, 0, 65535) ;
+			}
+			if (problem!=null) {
+				return invalidArguments(config, problem) ;
+			}
+		}
+
 		StringBuilder uriBuilder = new StringBuilder("/api/createRRData/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (isGroup) {
 			uriBuilder.append("&group="+name) ;
@@ -593,7 +645,7 @@ public class ManagementAPI extends GenericAPI {
 			uriBuilder.append("&ttl="+ttl) ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -623,8 +675,19 @@ public class ManagementAPI extends GenericAPI {
 				String region,
 				String city,
 				Integer ttl) {
+		ClientConfig config = getConfig() ;
+		if (config.isValidateArguments()) {
+			String problem = Validation.checkRecord(host, "MX", rdata, ttl) ;
+			if (problem==null) {
+				problem = Validation.checkRange("priority", priority, 0, 65535) ;
+			}
+			if (problem!=null) {
+				return invalidArguments(config, problem) ;
+			}
+		}
+
 		StringBuilder uriBuilder = new StringBuilder("/api/createRRData/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (isGroup) {
 			uriBuilder.append("&group="+name) ;
@@ -658,7 +721,7 @@ public class ManagementAPI extends GenericAPI {
 			uriBuilder.append("&ttl="+ttl) ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -722,6 +785,7 @@ public class ManagementAPI extends GenericAPI {
 				String region,
 				String city,
 				Integer ttl) {
+		ClientConfig config = getConfig() ;
 		String encTitle = null ;
 		String encDesc = null ;
 		String encKeywords = null ;
@@ -734,7 +798,7 @@ public class ManagementAPI extends GenericAPI {
 		}
 
 		StringBuilder uriBuilder = new StringBuilder("/api/createRRData/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (isGroup) {
 			uriBuilder.append("&group="+name) ;
@@ -776,7 +840,7 @@ public class ManagementAPI extends GenericAPI {
 			uriBuilder.append("&description="+encDesc) ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -815,15 +879,16 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject deleteDomain(String domain, boolean confirm) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/deleteDomain/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&domain="+domain) ;
 		if(confirm) {
 			uriBuilder.append("&confirm=true") ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -833,15 +898,16 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject disableDomain(String domain, boolean confirm) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/disableDomain/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&domain="+domain) ;
 		if(confirm) {
 			uriBuilder.append("&confirm=true") ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -850,15 +916,16 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject enableDomain(String domain, boolean confirm) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/enableDomain/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&domain="+domain) ;
 		if(confirm) {
 			uriBuilder.append("&confirm=true") ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -867,12 +934,13 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject getDomainGroups(String filter) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/getDomainGroups/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&search_term="+filter) ;
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -881,12 +949,13 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject getDomains(String filter) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/getDomains/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&search_term="+filter) ;
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -895,12 +964,13 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject getDomainsInGroup(String group) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/getDomainsInGroup/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&group="+group) ;
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -909,12 +979,13 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject getGeoGroupDetails(String name) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/getGeoGroupDetails/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&name="+name) ;
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -923,12 +994,13 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject getGeoGroups(String filter) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/getGeoGroups/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&search_term="+filter) ;
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -937,12 +1009,13 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject getHostnamesForDomain(String domain) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/getHostnamesForDomain/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&domain="+domain) ;
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -951,12 +1024,13 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject getHostnamesForGroup(String group) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/getHostnamesForGroup/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&group="+group) ;
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -967,8 +1041,9 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject getRRSetForHostname(String name, boolean isGroup, String hostname) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/getRRSetForHostname/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (isGroup) {
 			uriBuilder.append("&group="+name) ;
@@ -978,7 +1053,7 @@ public class ManagementAPI extends GenericAPI {
 
 		uriBuilder.append("&host="+hostname) ;
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -988,8 +1063,9 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject rebuild(String name, boolean isGroup) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/rebuild/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (isGroup) {
 			uriBuilder.append("&group="+name) ;
@@ -997,7 +1073,7 @@ public class ManagementAPI extends GenericAPI {
 			uriBuilder.append("&domain="+name) ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -1007,8 +1083,9 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject removeDomainGroup(String group, boolean confirm) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/removeDomainGroup/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&group="+group) ;
 
@@ -1016,7 +1093,7 @@ public class ManagementAPI extends GenericAPI {
 			uriBuilder.append("&confirm=true") ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -1028,8 +1105,9 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject removeHostname(String name, boolean isGroup, String host, boolean confirm) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/removeHostname/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (isGroup) {
 			uriBuilder.append("&group="+name) ;
@@ -1043,7 +1121,7 @@ public class ManagementAPI extends GenericAPI {
 			uriBuilder.append("&confirm=true") ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -1053,15 +1131,16 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject removeRR(int rrId, boolean confirm) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/removeRR/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 		uriBuilder.append("&rr_id="+rrId) ;
 
 		if (confirm) {
 			uriBuilder.append("&confirm=true") ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -1071,8 +1150,9 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject updateRootWildcardForList(String address, String group) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/removeHostname/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&IP="+address) ;
 
@@ -1080,26 +1160,24 @@ public class ManagementAPI extends GenericAPI {
 			uriBuilder.append("&group="+group) ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
 	 * Update the root wildcard address for the listed domains and/or group
 	 * @param address The IPv4 address to set as the rdata for the listed domains and groups
-	 * @param domains (OPTIONAL) The list of domains to update the root wildcard for or <code>null</code>
+	 * @param domains The list of domains to update the root wildcard for. Long lists are split across
+	 * several parallel requests (see {@link #setMaxUriLength(int)}) and the results merged.
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject updateRootWildcardForList(String address, String[] domains) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/removeHostname/?") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&IP="+address) ;
 
-		for (int x=0; x<domains.length; x++) {
-			uriBuilder.append("&domains="+domains[x]) ;
-		}
-
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeChunkedHttpRequest(config, uriBuilder.toString(), "domains", domains, "") ;
 	}
 
 	/**
@@ -1118,10 +1196,27 @@ public class ManagementAPI extends GenericAPI {
 	public JSONObject updateRRData(Integer rrId, String rdata, Integer ttl, Integer priority, Boolean isWildcard, 
 			Integer retry, Integer expire, Integer minimum, Integer weight, Integer port, String title, 
 			String keywords, String description, String geoGroup, String country, String region, String city) {
+		ClientConfig config = getConfig() ;
+
+		if (config.isValidateArguments()) {
+			String problem = Validation.checkTtl(ttl) ;
+			if (problem==null) {
+				problem = Validation.checkRange("priority", priority, 0, 65535) ;
+			}
+			if (problem==null) {
+				problem = Validation.checkRange("weight", weight, 0, 65535) ;
+			}
+			if (problem==null) {
+				problem = Validation.checkRange("port", port, 0, 65535) ;
+			}
+			if (problem!=null) {
+				return invalidArguments(config, problem) ;
+			}
+		}
 
 		StringBuilder uriBuilder = new StringBuilder("/api/updateRRData/?") ;
 		log.debug("Setting API Token") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		uriBuilder.append("&rr_id="+rrId) ;
 		log.debug("Setting RR ID") ;
@@ -1199,7 +1294,7 @@ public class ManagementAPI extends GenericAPI {
 			log.error("UnsupportedEncodingException while attempting to URL Encode text", e) ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -1212,10 +1307,11 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response from the API server
 	 */
 	public JSONObject createXfrZone(String domain, String host, String master, Integer port, Integer refresh_interval) {
+		ClientConfig config = getConfig() ;
 
 		StringBuilder uriBuilder = new StringBuilder("/api/createXfrZone/?") ;
 		log.debug("Setting API Token") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (domain==null) {
 			JSONObject error = new JSONObject() ;
@@ -1235,7 +1331,7 @@ public class ManagementAPI extends GenericAPI {
 					JSONObject meta = new JSONObject() ;
 					meta.put("success", 0) ;
 					meta.put("error", "The 'domain' argument is too small to be a valid domain.") ;
-					error.put("meta", error) ;
+					error.put("meta", meta) ;
 					return error ;
 				} catch (JSONException e) {
 					log.error("An error was encountered while attempting to return an error message.", e) ;
@@ -1252,10 +1348,10 @@ public class ManagementAPI extends GenericAPI {
 		}
 
 		if (master!=null) {
-			try {
-				InetAddress.getByName(master) ;
+			// Only an address literal is accepted, so this never waits on a name lookup
+			if (Validation.isIPAddress(master)) {
 				uriBuilder.append("&master=").append(master) ;
-			} catch (UnknownHostException uhe) {
+			} else {
 				try {
 					JSONObject error = new JSONObject() ;
 					JSONObject meta = new JSONObject() ;
@@ -1273,7 +1369,7 @@ public class ManagementAPI extends GenericAPI {
 				JSONObject meta = new JSONObject() ;
 				meta.put("success", 0) ;
 				meta.put("error", "The required argument 'master' is NULL") ;
-				error.put("meta", error) ;
+				error.put("meta", meta) ;
 				return error ;
 			} catch (JSONException jsone) {
 				log.error("An error was encountered while attempting to return an error message.", jsone) ;
@@ -1281,6 +1377,10 @@ public class ManagementAPI extends GenericAPI {
 		}
 
 		if (port!=null) {
+			String problem = Validation.checkRange("port", port, 1, 65535) ;
+			if (problem!=null) {
+				return invalidArguments(config, problem) ;
+			}
 			uriBuilder.append("&port=").append(port) ;
 		}
 
@@ -1288,7 +1388,7 @@ public class ManagementAPI extends GenericAPI {
 			uriBuilder.append("&refresh_interval=").append(refresh_interval) ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -1303,10 +1403,11 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} which contains the result status and either error details or returned data
 	 */
 	public JSONObject getCityList(String filter, Integer countryCode, Integer regionCode, Integer limit, Integer offset, String orderBy, String direction) {
+		ClientConfig config = getConfig() ;
 
 		StringBuilder uriBuilder = new StringBuilder("/api/getCityList?") ;
 		log.debug("Setting API Token") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (filter!=null) {
 			uriBuilder.append("&filter=").append(filter) ;
@@ -1338,7 +1439,14 @@ public class ManagementAPI extends GenericAPI {
 			}
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
+	}
+
+	/**
+	 * Warm up with a single row of the country list, which is cheap to produce and the same for every account
+	 */
+	protected String getWarmUpRequest(ClientConfig config) {
+		return "/api/getCountryList?AUTH_TOKEN="+config.getApiToken()+"&limit=1" ;
 	}
 
 	/**
@@ -1351,10 +1459,11 @@ public class ManagementAPI extends GenericAPI {
 	 * @return
 	 */
 	public JSONObject getCountryList(String filter, Integer limit, Integer offset, String orderBy, String direction) {
+		ClientConfig config = getConfig() ;
 
 		StringBuilder uriBuilder = new StringBuilder("/api/getCountryList?") ;
 		log.debug("Setting API Token") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (filter!=null) {
 			uriBuilder.append("&filter=").append(filter) ;
@@ -1378,7 +1487,7 @@ public class ManagementAPI extends GenericAPI {
 			}
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -1391,10 +1500,11 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} which contains the result status and either error details or returned data
 	 */
 	public JSONObject getRegionList(String filter, Integer countryCode, Integer limit, Integer offset, String orderBy, String direction) {
+		ClientConfig config = getConfig() ;
 
 		StringBuilder uriBuilder = new StringBuilder("/api/getCityList?") ;
 		log.debug("Setting API Token") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (filter!=null) {
 			uriBuilder.append("&filter=").append(filter) ;
@@ -1422,7 +1532,7 @@ public class ManagementAPI extends GenericAPI {
 			}
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -1431,15 +1541,16 @@ public class ManagementAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the result status and either an error message or data.
 	 */
 	public JSONObject getXfrForZone(String domain) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/getXfrForZone?") ;
 		log.debug("Setting API Token") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (domain!=null) {
-			uriBuilder.append("?domainname=").append(domain) ;
+			uriBuilder.append("&domainname=").append(domain) ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -1449,19 +1560,20 @@ public class ManagementAPI extends GenericAPI {
 	 * @returnA {@link JSONObject} containing the result status and either an error message.
 	 */
 	public JSONObject removeXfrZone(String domain, String host) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/removeXfrZone?") ;
 		log.debug("Setting API Token") ;
-		uriBuilder.append("AUTH_TOKEN="+apiToken) ;
+		uriBuilder.append("AUTH_TOKEN="+config.getApiToken()) ;
 
 		if (domain!=null) {
-			uriBuilder.append("?domainname=").append(domain) ;
+			uriBuilder.append("&domainname=").append(domain) ;
 		}
 
 		if (host!=null) {
-			uriBuilder.append("?host=").append(host) ;
+			uriBuilder.append("&host=").append(host) ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeMutationRequest(config, uriBuilder.toString()) ;
 	}
 
 	
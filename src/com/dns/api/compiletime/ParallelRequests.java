@@ -0,0 +1,192 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a list of independent API calls on an {@link ExecutorService} while never having more
+ * than a fixed number of them outstanding at once.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public final class ParallelRequests {
+
+	private ParallelRequests() {
+		super() ;
+	}
+
+	/**
+	 * Run all of the tasks, keeping at most <code>maxConcurrent</code> of them in flight. The tasks run
+	 * under the caller's {@link Deadline}, so once it passes or is cancelled the remaining calls fail
+	 * straight away and the whole batch returns promptly.
+	 * @param executor The {@link ExecutorService} to run the tasks on
+	 * @param tasks The tasks to run
+	 * @param maxConcurrent The maximum number of tasks which may be running at the same time
+	 * @return The results of the tasks, in the same order as the tasks were supplied
+	 */
+	public static <T> List<T> invokeAll(ExecutorService executor, List<? extends Callable<T>> tasks, int maxConcurrent) {
+		List<T> results = new ArrayList<T>(tasks.size()) ;
+		for (int x=0; x<tasks.size(); x++) {
+			results.add(null) ;
+		}
+
+		if (maxConcurrent<=1 || tasks.size()<=1) {
+			// Nothing to overlap, so skip the thread hand-off entirely
+			for (int x=0; x<tasks.size(); x++) {
+				try {
+					results.set(x, tasks.get(x).call()) ;
+				} catch (RuntimeException re) {
+					throw re ;
+				} catch (Exception e) {
+					throw new IllegalStateException("Parallel request failed", e) ;
+				}
+			}
+			return results ;
+		}
+
+		CompletionService<T> completion = new ExecutorCompletionService<T>(executor) ;
+		List<Callable<T>> bound = new ArrayList<Callable<T>>(tasks.size()) ;
+		for (Callable<T> task: tasks) {
+			bound.add(Deadline.propagate(task)) ;
+		}
+		Map<Future<T>, Integer> pending = new IdentityHashMap<Future<T>, Integer>() ;
+		int next = 0 ;
+		try {
+			while (next<tasks.size() && pending.size()<maxConcurrent) {
+				pending.put(completion.submit(bound.get(next)), next) ;
+				next++ ;
+			}
+			while (!pending.isEmpty()) {
+				Future<T> done = completion.take() ;
+				int index = pending.remove(done) ;
+				results.set(index, done.get()) ;
+				if (next<tasks.size()) {
+					pending.put(completion.submit(bound.get(next)), next) ;
+					next++ ;
+				}
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt() ;
+			throw new IllegalStateException("Interrupted while waiting for parallel requests", ie) ;
+		} catch (ExecutionException ee) {
+			if (ee.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)ee.getCause() ;
+			}
+			throw new IllegalStateException("Parallel request failed", ee.getCause()) ;
+		} finally {
+			for (Future<T> f: pending.keySet()) {
+				f.cancel(true) ;
+			}
+		}
+
+		return results ;
+	}
+
+	/**
+	 * Hands tasks to an {@link Executor} one at a time as they are produced, never letting more than a
+	 * fixed number run at once. For bulk jobs which read their work from a stream or a large list, where
+	 * {@link #invokeAll(ExecutorService, List, int)} would need every task up front.
+	 * <pre>
+	 * ParallelRequests.Bounded bounded = new ParallelRequests.Bounded(api.getExecutor(), 8) ;
+	 * try {
+	 *     for (...) {
+	 *         bounded.submit(task) ;
+	 *     }
+	 * } finally {
+	 *     bounded.awaitAll() ;
+	 * }
+	 * </pre>
+	 */
+	public static final class Bounded {
+		private final Executor executor ;
+		private final int maxConcurrent ;
+		private final Semaphore inFlight ;
+		private volatile boolean rejected = false ;
+
+		/**
+		 * Constructor
+		 * @param executor The {@link Executor} to run the tasks on
+		 * @param maxConcurrent The maximum number of tasks which may be running at the same time
+		 */
+		public Bounded(Executor executor, int maxConcurrent) {
+			super() ;
+			this.executor = executor ;
+			this.maxConcurrent = Math.max(1, maxConcurrent) ;
+			this.inFlight = new Semaphore(this.maxConcurrent) ;
+		}
+
+		/**
+		 * Wait until fewer than the maximum number of tasks are running, then hand this one over.
+		 * @param task The task to run
+		 * @throws InterruptedException If the thread is interrupted while waiting for a free slot
+		 * @throws java.util.concurrent.RejectedExecutionException If the executor refuses the task, e.g.
+		 * because it has been shut down; {@link #awaitAll()} then returns without waiting
+		 */
+		public void submit(final Runnable task) throws InterruptedException {
+			inFlight.acquire() ;
+			try {
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							task.run() ;
+						} finally {
+							inFlight.release() ;
+						}
+					}
+				}) ;
+			} catch (RuntimeException re) {
+				rejected = true ;
+				inFlight.release() ;
+				throw re ;
+			}
+		}
+
+		/**
+		 * Wait for every task handed over so far to finish. Once a task has been refused, the executor
+		 * may never run the ones it had already accepted, so this returns straight away instead.
+		 * @throws InterruptedException If the thread is interrupted while waiting
+		 */
+		public void awaitAll() throws InterruptedException {
+			if (rejected) {
+				return ;
+			}
+			inFlight.acquire(maxConcurrent) ;
+			inFlight.release(maxConcurrent) ;
+		}
+	}
+
+	/**
+	 * Creates a {@link ThreadFactory} which produces named daemon threads, so that an idle pool
+	 * never keeps the JVM alive.
+	 * @param prefix The prefix for the thread names
+	 * @return A {@link ThreadFactory}
+	 */
+	public static ThreadFactory daemonThreadFactory(final String prefix) {
+		return new ThreadFactory() {
+			private final AtomicInteger counter = new AtomicInteger() ;
+
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, prefix+"-"+counter.incrementAndGet()) ;
+				t.setDaemon(true) ;
+				return t ;
+			}
+		} ;
+	}
+}
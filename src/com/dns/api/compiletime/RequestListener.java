@@ -0,0 +1,64 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+/**
+ * Receives notifications as an API call moves through the request path. All callbacks for one
+ * call are made on the thread which made the call, in the order below, and every elapsed time is
+ * measured from the start of that call. Callbacks which do not apply to a call (for example
+ * {@link #bodyRead(String, long, int)} when the connection fails) are skipped, but
+ * {@link #requestCompleted(String, long, ApiResult)} is always made.
+ * <p>
+ * Listeners are registered with {@link GenericAPI#addRequestListener(RequestListener)}. Extend
+ * {@link RequestListenerAdapter} to implement only the callbacks you need.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public interface RequestListener {
+
+	/**
+	 * The call is about to be sent
+	 * @param endpoint The name of the API call, e.g. <code>getDomains</code>
+	 */
+	void requestStarted(String endpoint) ;
+
+	/**
+	 * A connection to the API server has been obtained and the request is being written to it
+	 * @param endpoint The name of the API call
+	 * @param elapsedNanos The time since {@link #requestStarted(String)}
+	 */
+	void connectionAcquired(String endpoint, long elapsedNanos) ;
+
+	/**
+	 * The status line and headers of the response have been received
+	 * @param endpoint The name of the API call
+	 * @param elapsedNanos The time since {@link #requestStarted(String)}
+	 */
+	void firstByteReceived(String endpoint, long elapsedNanos) ;
+
+	/**
+	 * The whole response body has been read
+	 * @param endpoint The name of the API call
+	 * @param elapsedNanos The time since {@link #requestStarted(String)}
+	 * @param length The length of the body in characters
+	 */
+	void bodyRead(String endpoint, long elapsedNanos, int length) ;
+
+	/**
+	 * The response body has been parsed as JSON
+	 * @param endpoint The name of the API call
+	 * @param elapsedNanos The time since {@link #requestStarted(String)}
+	 */
+	void parseCompleted(String endpoint, long elapsedNanos) ;
+
+	/**
+	 * The call has finished, successfully or not
+	 * @param endpoint The name of the API call
+	 * @param elapsedNanos The total time taken by the call
+	 * @param result The outcome of the call
+	 */
+	void requestCompleted(String endpoint, long elapsedNanos, ApiResult result) ;
+}
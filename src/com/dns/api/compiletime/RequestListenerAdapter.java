@@ -0,0 +1,32 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+/**
+ * A {@link RequestListener} which ignores every callback, for subclasses which only need some of them.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public abstract class RequestListenerAdapter implements RequestListener {
+
+	public void requestStarted(String endpoint) {
+	}
+
+	public void connectionAcquired(String endpoint, long elapsedNanos) {
+	}
+
+	public void firstByteReceived(String endpoint, long elapsedNanos) {
+	}
+
+	public void bodyRead(String endpoint, long elapsedNanos, int length) {
+	}
+
+	public void parseCompleted(String endpoint, long elapsedNanos) {
+	}
+
+	public void requestCompleted(String endpoint, long elapsedNanos, ApiResult result) {
+	}
+}
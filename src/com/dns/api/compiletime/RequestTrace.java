@@ -0,0 +1,131 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the timing of a single call and passes each stage on to the registered
+ * {@link RequestListener}s. Only created when at least one listener is registered.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+class RequestTrace {
+
+	/** The {@link HttpContext} attribute under which the trace for a request is stored */
+	static final String CONTEXT_ATTRIBUTE = "com.dns.api.trace" ;
+
+	/**
+	 * Request interceptors run once the connection for a request has been obtained, just before the
+	 * request is written, which is as close as HttpClient lets us get to "connection acquired".
+	 */
+	static final HttpRequestInterceptor CONNECTION_INTERCEPTOR = new HttpRequestInterceptor() {
+		public void process(HttpRequest request, HttpContext context) throws HttpException {
+			Object trace = context.getAttribute(CONTEXT_ATTRIBUTE) ;
+			if (trace!=null) {
+				((RequestTrace)trace).connectionAcquired() ;
+			}
+		}
+	} ;
+
+	private static final Logger log = LoggerFactory.getLogger(RequestTrace.class.getSimpleName()) ;
+
+	private final String endpoint ;
+	private final RequestListener[] listeners ;
+	private final long start ;
+
+	RequestTrace(String endpoint, RequestListener[] listeners) {
+		super() ;
+		this.endpoint = endpoint ;
+		this.listeners = listeners ;
+		for (int x=0; x<listeners.length; x++) {
+			try {
+				listeners[x].requestStarted(endpoint) ;
+			} catch (RuntimeException re) {
+				log.debug("RequestListener failed", re) ;
+			}
+		}
+		this.start = System.nanoTime() ;
+	}
+
+	void connectionAcquired() {
+		long elapsed = System.nanoTime()-start ;
+		for (int x=0; x<listeners.length; x++) {
+			try {
+				listeners[x].connectionAcquired(endpoint, elapsed) ;
+			} catch (RuntimeException re) {
+				log.debug("RequestListener failed", re) ;
+			}
+		}
+	}
+
+	void firstByteReceived() {
+		long elapsed = System.nanoTime()-start ;
+		for (int x=0; x<listeners.length; x++) {
+			try {
+				listeners[x].firstByteReceived(endpoint, elapsed) ;
+			} catch (RuntimeException re) {
+				log.debug("RequestListener failed", re) ;
+			}
+		}
+	}
+
+	void bodyRead(int length) {
+		long elapsed = System.nanoTime()-start ;
+		for (int x=0; x<listeners.length; x++) {
+			try {
+				listeners[x].bodyRead(endpoint, elapsed, length) ;
+			} catch (RuntimeException re) {
+				log.debug("RequestListener failed", re) ;
+			}
+		}
+	}
+
+	void parseCompleted() {
+		long elapsed = System.nanoTime()-start ;
+		for (int x=0; x<listeners.length; x++) {
+			try {
+				listeners[x].parseCompleted(endpoint, elapsed) ;
+			} catch (RuntimeException re) {
+				log.debug("RequestListener failed", re) ;
+			}
+		}
+	}
+
+	void requestCompleted(ApiResult result) {
+		long elapsed = System.nanoTime()-start ;
+		for (int x=0; x<listeners.length; x++) {
+			try {
+				listeners[x].requestCompleted(endpoint, elapsed, result) ;
+			} catch (RuntimeException re) {
+				log.debug("RequestListener failed", re) ;
+			}
+		}
+	}
+
+	/**
+	 * Extract the name of the API call from a request, e.g. <code>getDomains</code> from
+	 * <code>/api/getDomains/?AUTH_TOKEN=...</code>
+	 * @param req The portion of the URL after the host name
+	 * @return The name of the API call
+	 */
+	static String endpointName(String req) {
+		int end = req.indexOf('?') ;
+		if (end<0) {
+			end = req.length() ;
+		}
+		while (end>0 && req.charAt(end-1)=='/') {
+			end-- ;
+		}
+		int begin = req.lastIndexOf('/', end-1)+1 ;
+		return req.substring(begin, end) ;
+	}
+}
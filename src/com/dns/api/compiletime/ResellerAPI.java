@@ -24,6 +24,14 @@ public class ResellerAPI extends GenericAPI {
 		super(apiHost, useSSL, apiToken) ;
 	}
 
+	/**
+	 * Constructor
+	 * @param config The {@link ClientConfig} to make API calls with
+	 */
+	public ResellerAPI(ClientConfig config) {
+		super(config) ;
+	}
+
 	/**
 	 * Create a new user associated with the specified reseller ID
 	 * @param resellerCode The unique ID of the reseller creating the use new user account
@@ -48,8 +56,9 @@ public class ResellerAPI extends GenericAPI {
 			String passConfirm, String forename, String surname, String phone, String addr1,
 			String addr2, String city, String province, String postCode, String country,
 			String fax, String company, String sendWelcomeMail) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/createNewUser/?") ;
-		uriBuilder.append("API_TOKEN="+apiToken) ;
+		uriBuilder.append("API_TOKEN="+config.getApiToken()) ;
 		uriBuilder.append("&resellerCode="+resellerCode) ;
 		uriBuilder.append("&user_email="+eMail) ;
 		if (password.equals(passConfirm)) {
@@ -89,7 +98,7 @@ public class ResellerAPI extends GenericAPI {
 				uriBuilder.append("&send_welcome_email="+sendWelcomeMail) ;
 			}
 
-			return makeHttpRequest("") ;
+			return makeMutationRequest(config, uriBuilder.toString()) ;
 		} else {
 			JSONObject response = new JSONObject() ;
 			try {
@@ -109,12 +118,13 @@ public class ResellerAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject getUserDetails(String resellerCode, String eMail) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/getUserDetails/?") ;
-		uriBuilder.append("API_TOKEN="+apiToken) ;
+		uriBuilder.append("API_TOKEN="+config.getApiToken()) ;
 		uriBuilder.append("&resellerCode="+resellerCode) ;
 		uriBuilder.append("&email="+eMail) ;
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
 	}
 
 	/**
@@ -124,14 +134,15 @@ public class ResellerAPI extends GenericAPI {
 	 * @return A {@link JSONObject} containing the JSON response or an error code.
 	 */
 	public JSONObject getUserList(String resellerCode, String filter) {
+		ClientConfig config = getConfig() ;
 		StringBuilder uriBuilder = new StringBuilder("/api/getUserList/?") ;
-		uriBuilder.append("API_TOKEN="+apiToken) ;
+		uriBuilder.append("API_TOKEN="+config.getApiToken()) ;
 		uriBuilder.append("&resellerCode="+resellerCode) ;
 
 		if (filter!=null) {
 			uriBuilder.append("&search_term="+filter) ;
 		}
 
-		return makeHttpRequest(uriBuilder.toString()) ;
+		return makeHttpRequest(config, uriBuilder.toString()) ;
 	}
 }
@@ -0,0 +1,141 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import org.apache.http.HttpEntity;
+
+/**
+ * Reads HTTP response bodies into a per-thread byte buffer which is reused from one request to the
+ * next, and decodes them as UTF-8 in a single step.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+final class ResponseReader {
+
+	static final Charset UTF8 = Charset.forName("UTF-8") ;
+
+	private static final int INITIAL_BUFFER = 8192 ;
+
+	/** Buffers which grow beyond this size for an unusually large response are not kept. */
+	private static final int MAX_RETAINED_BUFFER = 1048576 ;
+
+	private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+		protected byte[] initialValue() {
+			return new byte[INITIAL_BUFFER] ;
+		}
+	} ;
+
+	private ResponseReader() {
+		super() ;
+	}
+
+	/**
+	 * Read the whole body of an entity.
+	 * @param entity The response entity, may be <code>null</code>
+	 * @return The body decoded as UTF-8, or an empty string if there is no body
+	 * @throws IOException If the body cannot be read
+	 */
+	static String readBody(HttpEntity entity) throws IOException {
+		if (entity==null) {
+			return "" ;
+		}
+		return readBody(entity.getContent(), entity.getContentLength()) ;
+	}
+
+	/**
+	 * Read a whole stream and close it.
+	 * @param in The stream to read, may be <code>null</code>
+	 * @param expected The expected number of bytes, or a negative number if it is not known
+	 * @return The content decoded as UTF-8, or an empty string if there is none
+	 * @throws IOException If the stream cannot be read
+	 */
+	static String readBody(InputStream in, long expected) throws IOException {
+		if (in==null) {
+			return "" ;
+		}
+		byte[] buffer = BUFFERS.get() ;
+		if (expected>buffer.length && expected<=Integer.MAX_VALUE) {
+			buffer = new byte[(int)expected] ;
+		}
+		int length = 0 ;
+		try {
+			while (true) {
+				if (length==buffer.length) {
+					// Only grow once a byte beyond a full buffer turns up, so a body of exactly the expected length is never copied
+					int next = in.read() ;
+					if (next==-1) {
+						break ;
+					}
+					byte[] larger = new byte[buffer.length*2] ;
+					System.arraycopy(buffer, 0, larger, 0, length) ;
+					buffer = larger ;
+					buffer[length++] = (byte)next ;
+				}
+				int read = in.read(buffer, length, buffer.length-length) ;
+				if (read==-1) {
+					break ;
+				}
+				length += read ;
+			}
+		} finally {
+			in.close() ;
+			if (buffer.length<=MAX_RETAINED_BUFFER) {
+				BUFFERS.set(buffer) ;
+			}
+		}
+		return new String(buffer, 0, length, UTF8) ;
+	}
+
+	/**
+	 * Read at most <code>limit</code> bytes from the start of an entity and discard the rest
+	 * without buffering it.
+	 * @param entity The response entity, may be <code>null</code>
+	 * @param limit The maximum number of bytes to keep
+	 * @return The retained prefix decoded as UTF-8
+	 * @throws IOException If the body cannot be read
+	 */
+	static String readPrefix(HttpEntity entity, int limit) throws IOException {
+		if (entity==null) {
+			return "" ;
+		}
+		return readPrefix(entity.getContent(), limit) ;
+	}
+
+	/**
+	 * Read at most <code>limit</code> bytes from the start of a stream, discard the rest without
+	 * buffering it and close the stream.
+	 * @param in The stream to read, may be <code>null</code>
+	 * @param limit The maximum number of bytes to keep
+	 * @return The retained prefix decoded as UTF-8
+	 * @throws IOException If the stream cannot be read
+	 */
+	static String readPrefix(InputStream in, int limit) throws IOException {
+		if (in==null) {
+			return "" ;
+		}
+		byte[] buffer = BUFFERS.get() ;
+		int max = Math.min(limit, buffer.length) ;
+		int length = 0 ;
+		try {
+			int read = 0 ;
+			while (length<max && (read = in.read(buffer, length, max-length))!=-1) {
+				length += read ;
+			}
+			if (read!=-1) {
+				while (in.skip(INITIAL_BUFFER)>0 || in.read()!=-1) {
+					// Drain the remainder so the connection can be reused
+				}
+			}
+		} finally {
+			in.close() ;
+		}
+		return new String(buffer, 0, length, UTF8) ;
+	}
+}
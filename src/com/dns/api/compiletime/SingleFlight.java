@@ -0,0 +1,97 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses identical concurrent requests into one. The first caller for a request sends it; callers
+ * which ask for the same request while it is in flight wait for that call and share its result.
+ * Nothing is cached: once a call completes the next identical request goes over the wire again.
+ * A caller waiting on another's request waits no longer than its own {@link Deadline}, and if that
+ * request timed out or was cancelled while this caller still has time left, the request is sent again.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+abstract class SingleFlight {
+
+	private static final class Call {
+		final CountDownLatch done = new CountDownLatch(1) ;
+		volatile ApiResult result = null ;
+	}
+
+	private final ConcurrentMap<String, Call> inFlight = new ConcurrentHashMap<String, Call>() ;
+	private final AtomicLong joined = new AtomicLong() ;
+
+	/**
+	 * Actually make a request
+	 * @param config The {@link ClientConfig} to make the request with
+	 * @param req The request
+	 * @return The result of the request
+	 */
+	abstract ApiResult load(ClientConfig config, String req) ;
+
+	/**
+	 * Make a request, or join an identical one to the same server which is already in flight.
+	 * @param config The {@link ClientConfig} to make the request with
+	 * @param req The request
+	 * @return The result of the request
+	 */
+	ApiResult execute(ClientConfig config, String req) {
+		String key = (config.isSSL()?"https://":"http://")+config.getApiHost()+req ;
+		while (true) {
+			Call call = new Call() ;
+			Call existing = inFlight.putIfAbsent(key, call) ;
+			if (existing==null) {
+				try {
+					call.result = load(config, req) ;
+					return call.result ;
+				} finally {
+					// Remove before releasing the waiters so that a caller arriving now starts a fresh request
+					inFlight.remove(key, call) ;
+					call.done.countDown() ;
+				}
+			}
+			joined.incrementAndGet() ;
+			Deadline deadline = Deadline.current() ;
+			try {
+				if (deadline==null) {
+					existing.done.await() ;
+				} else if (!existing.done.await(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)) {
+					// The shared request carries on for the callers which still have time for it
+					ApiError.Category category = deadline.isCancelled()?ApiError.Category.CANCELLED:ApiError.Category.TIMEOUT ;
+					return ApiResult.failure(new ApiError(category, 0, true, "The deadline passed while waiting for a shared request", null)) ;
+				}
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt() ;
+				return ApiResult.failure(new ApiError(ApiError.Category.TRANSPORT, 0, false, "Interrupted while waiting for a shared request", ie)) ;
+			}
+			ApiResult result = existing.result ;
+			if (result==null) {
+				return ApiResult.failure(new ApiError(ApiError.Category.TRANSPORT, 0, true, "The shared request failed", null)) ;
+			}
+			if (result.isSuccess() || (deadline!=null && deadline.isDone())) {
+				return result ;
+			}
+			ApiError.Category category = result.getError().getCategory() ;
+			if (category!=ApiError.Category.TIMEOUT && category!=ApiError.Category.CANCELLED) {
+				return result ;
+			}
+			// The caller which sent the request ran out of time, not this one, so send it again
+		}
+	}
+
+	/**
+	 * @return The number of calls which joined a request already in flight rather than sending their own
+	 */
+	long getJoinedCount() {
+		return joined.get() ;
+	}
+}
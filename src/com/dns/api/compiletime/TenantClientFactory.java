@@ -0,0 +1,96 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Creates API objects for many different API tokens (for example the customer accounts managed by
+ * a reseller) which all share one {@link ClientResources}. Each token is also limited to a fixed
+ * number of concurrent calls across all of the objects created for it, so that one busy tenant
+ * cannot take the whole connection pool.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class TenantClientFactory {
+
+	private final String apiHost ;
+	private final boolean useSSL ;
+	private final ClientResources resources ;
+	private final int tenantConcurrency ;
+	private final ConcurrentMap<String, Semaphore> quotas = new ConcurrentHashMap<String, Semaphore>() ;
+
+	/**
+	 * Constructor
+	 * @param apiHost The host name of the server to make API calls against.
+	 * @param useSSL Should we use HTTPS connections for API calls?
+	 * @param resources The {@link ClientResources} shared by every tenant
+	 * @param tenantConcurrency The maximum number of concurrent calls for each API token, or 0 for no limit
+	 */
+	public TenantClientFactory(String apiHost, boolean useSSL, ClientResources resources, int tenantConcurrency) {
+		super() ;
+		this.apiHost = apiHost ;
+		this.useSSL = useSSL ;
+		this.resources = resources ;
+		this.tenantConcurrency = tenantConcurrency ;
+	}
+
+	public ClientResources getResources() {
+		return resources ;
+	}
+
+	/**
+	 * @param apiToken The API token of the tenant
+	 * @return A {@link ManagementAPI} acting for that tenant
+	 */
+	public ManagementAPI management(String apiToken) {
+		return attach(new ManagementAPI(apiHost, useSSL, apiToken), apiToken) ;
+	}
+
+	/**
+	 * @param apiToken The API token of the tenant
+	 * @return A {@link BillingAPI} acting for that tenant
+	 */
+	public BillingAPI billing(String apiToken) {
+		return attach(new BillingAPI(apiHost, useSSL, apiToken), apiToken) ;
+	}
+
+	/**
+	 * @param apiToken The API token of the reseller
+	 * @return A {@link ResellerAPI} acting for that reseller
+	 */
+	public ResellerAPI reseller(String apiToken) {
+		return attach(new ResellerAPI(apiHost, useSSL, apiToken), apiToken) ;
+	}
+
+	/**
+	 * Forget the concurrency quota of a tenant which is no longer being served. Objects already
+	 * created for the tenant keep their quota.
+	 * @param apiToken The API token of the tenant
+	 */
+	public void removeTenant(String apiToken) {
+		quotas.remove(apiToken) ;
+	}
+
+	private <T extends GenericAPI> T attach(T api, String apiToken) {
+		api.setClientResources(resources) ;
+		api.addRequestListener(resources.getMetrics()) ;
+		if (tenantConcurrency>0) {
+			Semaphore quota = quotas.get(apiToken) ;
+			if (quota==null) {
+				Semaphore created = new Semaphore(tenantConcurrency) ;
+				quota = quotas.putIfAbsent(apiToken, created) ;
+				if (quota==null) {
+					quota = created ;
+				}
+			}
+			api.setConcurrencyQuota(quota) ;
+		}
+		return api ;
+	}
+}
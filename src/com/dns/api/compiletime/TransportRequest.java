@@ -0,0 +1,159 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A request to be sent by an {@link HttpTransport}: a GET with its arguments in the URL, or a POST
+ * with its arguments as an <code>application/x-www-form-urlencoded</code> body.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public final class TransportRequest {
+
+	/** The User-Agent header sent with every request */
+	public static final String USER_AGENT = "DNS-Android" ;
+
+	private static final Deadline.Registration NO_ABORT = new Deadline.Registration() {
+		public void remove() {
+			// Nothing was registered
+		}
+	} ;
+
+	private final String method ;
+	private final String uri ;
+	private final FormBodyEntity form ;
+	private final RequestTrace trace ;
+	private Deadline deadline = null ;
+	private int connectTimeoutMillis = 0 ;
+	private int readTimeoutMillis = 0 ;
+
+	private TransportRequest(String method, String uri, FormBodyEntity form, RequestTrace trace) {
+		super() ;
+		this.method = method ;
+		this.uri = uri ;
+		this.form = form ;
+		this.trace = trace ;
+	}
+
+	static TransportRequest get(String uri, RequestTrace trace) {
+		return new TransportRequest("GET", uri, null, trace) ;
+	}
+
+	static TransportRequest post(String uri, CharSequence form, int formStart, RequestTrace trace) {
+		return new TransportRequest("POST", uri, new FormBodyEntity(form, formStart), trace) ;
+	}
+
+	/**
+	 * Set the time limits of this request. Each timeout is cut down to the time left before the
+	 * deadline, if that is shorter.
+	 * @param connectTimeoutMillis How long to wait for a connection, or 0 to wait forever
+	 * @param readTimeoutMillis How long to wait for each read from the server, or 0 to wait forever
+	 * @param deadline (OPTIONAL) The {@link Deadline} of the call or <code>null</code>
+	 */
+	void setLimits(int connectTimeoutMillis, int readTimeoutMillis, Deadline deadline) {
+		this.deadline = deadline ;
+		this.connectTimeoutMillis = limit(connectTimeoutMillis) ;
+		this.readTimeoutMillis = limit(readTimeoutMillis) ;
+	}
+
+	private int limit(int timeoutMillis) {
+		if (deadline==null) {
+			return timeoutMillis ;
+		}
+		// Rounded up so the timeout never fires before the deadline has passed, and never 0, which would mean no limit at all
+		long remaining = Math.max(1L, (deadline.remaining(TimeUnit.NANOSECONDS)+999999L)/1000000L) ;
+		return (int)((timeoutMillis>0)?Math.min(timeoutMillis, remaining):Math.min(Integer.MAX_VALUE, remaining)) ;
+	}
+
+	/**
+	 * @return "GET" or "POST"
+	 */
+	public String getMethod() {
+		return method ;
+	}
+
+	/**
+	 * @return The absolute URL to request, including the query string for a GET
+	 */
+	public String getUri() {
+		return uri ;
+	}
+
+	/**
+	 * @return Does this request have a form body?
+	 */
+	public boolean hasForm() {
+		return form!=null ;
+	}
+
+	/**
+	 * @return The length of the encoded form body in bytes, or 0 if there is none
+	 */
+	public long getFormLength() {
+		return (form!=null)?form.getContentLength():0 ;
+	}
+
+	/**
+	 * Write the encoded form body, if there is one.
+	 * @param out Where to write the body
+	 * @throws IOException If <code>out</code> cannot be written to
+	 */
+	public void writeForm(OutputStream out) throws IOException {
+		if (form!=null) {
+			form.writeTo(out) ;
+		}
+	}
+
+	/**
+	 * Transports call this once they have a connection and are about to write the request, so that
+	 * registered {@link RequestListener}s see the time spent waiting for a connection.
+	 */
+	public void connectionAcquired() {
+		if (trace!=null) {
+			trace.connectionAcquired() ;
+		}
+	}
+
+	/**
+	 * @return How long to wait for a connection, in milliseconds, or 0 to wait forever
+	 */
+	public int getConnectTimeoutMillis() {
+		return connectTimeoutMillis ;
+	}
+
+	/**
+	 * @return How long to wait for each read from the server, in milliseconds, or 0 to wait forever
+	 */
+	public int getReadTimeoutMillis() {
+		return readTimeoutMillis ;
+	}
+
+	/**
+	 * Transports call this with an action which aborts the exchange, closing its connection so that
+	 * a blocked read or write fails straight away. The action runs when the call's {@link Deadline}
+	 * passes or is cancelled, and the transport removes it once the response has been read or closed.
+	 * @param abort The action which aborts the exchange
+	 * @return A {@link Deadline.Registration} to remove once the exchange is over
+	 */
+	public Deadline.Registration onAbort(Runnable abort) {
+		if (deadline==null) {
+			return NO_ABORT ;
+		}
+		return deadline.whenDone(abort) ;
+	}
+
+	FormBodyEntity getFormEntity() {
+		return form ;
+	}
+
+	RequestTrace getTrace() {
+		return trace ;
+	}
+}
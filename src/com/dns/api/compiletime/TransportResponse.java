@@ -0,0 +1,42 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.io.IOException;
+
+/**
+ * The response to a {@link TransportRequest}. Exactly one of {@link #readBody()},
+ * {@link #readPrefix(int)} or {@link #close()} should be called, which releases the connection.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public interface TransportResponse {
+
+	/**
+	 * @return The HTTP status code
+	 */
+	int getStatus() ;
+
+	/**
+	 * Read the whole body.
+	 * @return The body decoded as UTF-8, or an empty string if there is none
+	 * @throws IOException If the body cannot be read
+	 */
+	String readBody() throws IOException ;
+
+	/**
+	 * Read the start of the body and discard the rest.
+	 * @param limit The maximum number of bytes to keep
+	 * @return The retained prefix decoded as UTF-8
+	 * @throws IOException If the body cannot be read
+	 */
+	String readPrefix(int limit) throws IOException ;
+
+	/**
+	 * Discard the body without reading it
+	 */
+	void close() ;
+}
@@ -0,0 +1,275 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+/**
+ * Checks API arguments locally so that obviously bad values are rejected before any network I/O.
+ * Every check is a single pass over the characters of its argument: nothing is looked up, no
+ * regular expressions are compiled and nothing is allocated unless the argument is invalid.
+ * The <code>check...</code> methods return a description of the problem, or <code>null</code> if
+ * the argument is acceptable.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public final class Validation {
+
+	/** The smallest TTL the API accepts */
+	public static final int MIN_TTL = 1 ;
+
+	/** The largest TTL the API accepts */
+	public static final int MAX_TTL = 65535 ;
+
+	private Validation() {
+		super() ;
+	}
+
+	/**
+	 * @param value The text to check
+	 * @return Is the text a dotted quad IPv4 address such as <code>192.0.2.1</code>?
+	 */
+	public static boolean isIPv4(CharSequence value) {
+		if (value==null) {
+			return false ;
+		}
+		return isIPv4(value, 0, value.length()) ;
+	}
+
+	private static boolean isIPv4(CharSequence value, int start, int end) {
+		int octets = 0 ;
+		int x = start ;
+		while (x<end) {
+			int octet = 0 ;
+			int digits = 0 ;
+			while (x<end && value.charAt(x)>='0' && value.charAt(x)<='9') {
+				if (digits>0 && octet==0) {
+					// Leading zeroes are read as octal by some resolvers, so they are not allowed
+					return false ;
+				}
+				octet = octet*10+(value.charAt(x)-'0') ;
+				digits++ ;
+				x++ ;
+				if (octet>255) {
+					return false ;
+				}
+			}
+			if (digits==0) {
+				return false ;
+			}
+			octets++ ;
+			if (x<end) {
+				if (value.charAt(x)!='.' || octets==4) {
+					return false ;
+				}
+				x++ ;
+				if (x==end) {
+					return false ;
+				}
+			}
+		}
+		return octets==4 ;
+	}
+
+	/**
+	 * @param value The text to check
+	 * @return Is the text an IPv6 address in any of its textual forms, including <code>::</code>
+	 * compression and a trailing dotted quad?
+	 */
+	public static boolean isIPv6(CharSequence value) {
+		if (value==null || value.length()<2) {
+			return false ;
+		}
+		int length = value.length() ;
+		int groups = 0 ;
+		boolean compressed = false ;
+		int x = 0 ;
+		if (value.charAt(0)==':') {
+			if (value.charAt(1)!=':') {
+				return false ;
+			}
+			compressed = true ;
+			x = 2 ;
+		}
+		while (x<length) {
+			int groupStart = x ;
+			while (x<length && x-groupStart<5 && hexValue(value.charAt(x))>=0) {
+				x++ ;
+			}
+			int digits = x-groupStart ;
+			if (x<length && value.charAt(x)=='.') {
+				// An embedded IPv4 address takes the place of the last two groups
+				return isIPv4(value, groupStart, length) && (compressed?groups<=5:groups==6) ;
+			}
+			if (digits==0 || digits>4) {
+				return false ;
+			}
+			groups++ ;
+			if (x==length) {
+				break ;
+			}
+			if (value.charAt(x)!=':') {
+				return false ;
+			}
+			x++ ;
+			if (x<length && value.charAt(x)==':') {
+				if (compressed) {
+					return false ;
+				}
+				compressed = true ;
+				x++ ;
+			} else if (x==length) {
+				return false ;
+			}
+		}
+		return compressed?groups<=7:groups==8 ;
+	}
+
+	private static int hexValue(char c) {
+		if (c>='0' && c<='9') {
+			return c-'0' ;
+		} else if (c>='a' && c<='f') {
+			return c-'a'+10 ;
+		} else if (c>='A' && c<='F') {
+			return c-'A'+10 ;
+		}
+		return -1 ;
+	}
+
+	/**
+	 * @param value The text to check
+	 * @return Is the text an IPv4 or IPv6 address?
+	 */
+	public static boolean isIPAddress(CharSequence value) {
+		return isIPv4(value) || isIPv6(value) ;
+	}
+
+	/**
+	 * Check the syntax of a domain name: dot separated labels of 1 to 63 letters, digits, hyphens or
+	 * underscores which do not begin or end with a hyphen, at most 253 characters in all and with an
+	 * optional trailing dot. A label of just <code>*</code> is allowed as the first label.
+	 * @param value The text to check
+	 * @return Is the text a syntactically valid domain name?
+	 */
+	public static boolean isHostname(CharSequence value) {
+		if (value==null) {
+			return false ;
+		}
+		int length = value.length() ;
+		if (length>0 && value.charAt(length-1)=='.') {
+			length-- ;
+		}
+		if (length==0 || length>253) {
+			return false ;
+		}
+		int labelStart = 0 ;
+		for (int x=0; x<=length; x++) {
+			if (x==length || value.charAt(x)=='.') {
+				int labelLength = x-labelStart ;
+				if (labelLength==0 || labelLength>63) {
+					return false ;
+				}
+				if (labelLength==1 && value.charAt(labelStart)=='*') {
+					if (labelStart!=0) {
+						return false ;
+					}
+				} else if (value.charAt(labelStart)=='-' || value.charAt(x-1)=='-') {
+					return false ;
+				}
+				labelStart = x+1 ;
+			} else {
+				char c = value.charAt(x) ;
+				if (!((c>='a' && c<='z') || (c>='A' && c<='Z') || (c>='0' && c<='9') || c=='-' || c=='_' || c=='*')) {
+					return false ;
+				}
+				if (c=='*' && !(x==0 && (x+1==length || value.charAt(x+1)=='.'))) {
+					return false ;
+				}
+			}
+		}
+		return true ;
+	}
+
+	/**
+	 * @param ttl (OPTIONAL) The TTL to check or <code>null</code> to use the default
+	 * @return A description of the problem or <code>null</code> if the TTL is acceptable
+	 */
+	public static String checkTtl(Integer ttl) {
+		return checkRange("ttl", ttl, MIN_TTL, MAX_TTL) ;
+	}
+
+	/**
+	 * @param name The name of the argument, used in the description of the problem
+	 * @param value (OPTIONAL) The value to check or <code>null</code> if it was not supplied
+	 * @param min The smallest acceptable value
+	 * @param max The largest acceptable value
+	 * @return A description of the problem or <code>null</code> if the value is absent or in range
+	 */
+	public static String checkRange(String name, Integer value, int min, int max) {
+		if (value==null || (value.intValue()>=min && value.intValue()<=max)) {
+			return null ;
+		}
+		return "The '"+name+"' argument must be between "+min+" and "+max+" but was "+value ;
+	}
+
+	/**
+	 * @param host The host name within a domain or group; an empty string or <code>@</code> is the root
+	 * @return A description of the problem or <code>null</code> if the host is acceptable
+	 */
+	public static String checkHost(String host) {
+		if (host==null) {
+			return "The required argument 'host' is NULL" ;
+		}
+		if (host.length()==0 || "@".equals(host) || isHostname(host)) {
+			return null ;
+		}
+		return "The value '"+host+"' for 'host' is not a valid host name" ;
+	}
+
+	/**
+	 * Check the response data of a record against its type. A and AAAA records need an address of the
+	 * matching family and CNAME, NS, MX and SRV records need a domain name; other types are not checked.
+	 * @param type The record type
+	 * @param rdata The response data
+	 * @return A description of the problem or <code>null</code> if the response data is acceptable
+	 */
+	public static String checkRData(String type, String rdata) {
+		if (rdata==null) {
+			return "The required argument 'rdata' is NULL" ;
+		}
+		if ("A".equalsIgnoreCase(type)) {
+			if (!isIPv4(rdata)) {
+				return "The value '"+rdata+"' is not a valid IPv4 address for an A record" ;
+			}
+		} else if ("AAAA".equalsIgnoreCase(type)) {
+			if (!isIPv6(rdata)) {
+				return "The value '"+rdata+"' is not a valid IPv6 address for an AAAA record" ;
+			}
+		} else if ("CNAME".equalsIgnoreCase(type) || "NS".equalsIgnoreCase(type) || "MX".equalsIgnoreCase(type) || "SRV".equalsIgnoreCase(type)) {
+			if (!isHostname(rdata)) {
+				return "The value '"+rdata+"' is not a valid target host name for a "+type.toUpperCase()+" record" ;
+			}
+		}
+		return null ;
+	}
+
+	/**
+	 * Check the arguments every record has in common.
+	 * @param host The host name within the domain or group
+	 * @param type The record type
+	 * @param rdata The response data
+	 * @param ttl (OPTIONAL) The TTL or <code>null</code> to use the default
+	 * @return A description of the first problem found or <code>null</code> if the arguments are acceptable
+	 */
+	public static String checkRecord(String host, String type, String rdata, Integer ttl) {
+		String problem = checkHost(host) ;
+		if (problem==null) {
+			problem = checkRData(type, rdata) ;
+		}
+		if (problem==null) {
+			problem = checkTtl(ttl) ;
+		}
+		return problem ;
+	}
+}
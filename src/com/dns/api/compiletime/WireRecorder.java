@@ -0,0 +1,235 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.compiletime;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the last few request/response exchanges in memory so they can be inspected when something
+ * goes wrong, without having to log every request. Exchanges are sampled at a configurable rate,
+ * API tokens are redacted and bodies are truncated before they are stored. Recording never blocks:
+ * each exchange claims a slot in a fixed size ring with a single atomic increment.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class WireRecorder {
+
+	/**
+	 * A single recorded request and its response
+	 */
+	public static class Exchange {
+		long sequence ;
+		long startTime ;
+		long startNanos ;
+		long durationNanos ;
+		String method ;
+		String request ;
+		int status ;
+		String response ;
+		String error ;
+
+		public long getSequence() {
+			return sequence ;
+		}
+
+		/**
+		 * @return The wall clock time at which the request was started, in milliseconds
+		 */
+		public long getStartTime() {
+			return startTime ;
+		}
+
+		public long getDurationNanos() {
+			return durationNanos ;
+		}
+
+		public String getMethod() {
+			return method ;
+		}
+
+		/**
+		 * @return The request path and arguments, with the API token redacted
+		 */
+		public String getRequest() {
+			return request ;
+		}
+
+		/**
+		 * @return The HTTP status code, or 0 if no response was received
+		 */
+		public int getStatus() {
+			return status ;
+		}
+
+		/**
+		 * @return The (possibly truncated) response body, or <code>null</code> if none was read
+		 */
+		public String getResponse() {
+			return response ;
+		}
+
+		/**
+		 * @return A description of the failure, or <code>null</code> if the call succeeded
+		 */
+		public String getError() {
+			return error ;
+		}
+
+		public String toString() {
+			StringBuilder sb = new StringBuilder() ;
+			sb.append('#').append(sequence).append(' ') ;
+			sb.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(startTime))).append(' ') ;
+			sb.append(method).append(' ').append(request).append(' ') ;
+			sb.append(status).append(' ').append(durationNanos/1000000L).append("ms") ;
+			if (error!=null) {
+				sb.append(" error=").append(error) ;
+			}
+			if (response!=null) {
+				sb.append("\n\t").append(response) ;
+			}
+			return sb.toString() ;
+		}
+	}
+
+	private final AtomicReferenceArray<Exchange> slots ;
+	private final AtomicLong sequence = new AtomicLong() ;
+	private final AtomicLong sampleCounter = new AtomicLong() ;
+	private final int maxBodyLength ;
+	private final long samplePeriod ;
+
+	/**
+	 * Constructor
+	 * @param capacity The number of exchanges to keep
+	 * @param maxBodyLength The maximum number of characters of each request and response to keep
+	 * @param sampleRate The fraction of exchanges to record, between 0.0 (none) and 1.0 (all)
+	 */
+	public WireRecorder(int capacity, int maxBodyLength, double sampleRate) {
+		super() ;
+		if (capacity<1) {
+			throw new IllegalArgumentException("The capacity must be at least 1") ;
+		}
+		this.slots = new AtomicReferenceArray<Exchange>(capacity) ;
+		this.maxBodyLength = maxBodyLength ;
+		this.samplePeriod = (sampleRate<=0.0)?0:Math.max(1L, Math.round(1.0/sampleRate)) ;
+	}
+
+	/**
+	 * Decide whether the next exchange should be recorded and, if so, start recording it.
+	 * @param method The HTTP method of the request
+	 * @param req The request path and arguments
+	 * @return An {@link Exchange} to complete with {@link #finish(Exchange, int, String, String)},
+	 * or <code>null</code> if this exchange is not sampled
+	 */
+	public Exchange begin(String method, String req) {
+		if (samplePeriod==0 || (samplePeriod>1 && sampleCounter.getAndIncrement()%samplePeriod!=0)) {
+			return null ;
+		}
+		Exchange exchange = new Exchange() ;
+		exchange.startTime = System.currentTimeMillis() ;
+		exchange.startNanos = System.nanoTime() ;
+		exchange.method = method ;
+		exchange.request = truncate(redact(req)) ;
+		return exchange ;
+	}
+
+	/**
+	 * Complete an exchange and store it, replacing the oldest one if the recorder is full.
+	 * @param exchange The {@link Exchange} returned by {@link #begin(String, String)}
+	 * @param status The HTTP status code, or 0 if there was no response
+	 * @param response (OPTIONAL) The response body or <code>null</code>
+	 * @param error (OPTIONAL) A description of the failure or <code>null</code>
+	 */
+	public void finish(Exchange exchange, int status, String response, String error) {
+		exchange.durationNanos = System.nanoTime()-exchange.startNanos ;
+		exchange.status = status ;
+		exchange.response = truncate(response) ;
+		exchange.error = error ;
+		exchange.sequence = sequence.getAndIncrement() ;
+		slots.set((int)(exchange.sequence%slots.length()), exchange) ;
+	}
+
+	/**
+	 * @return The recorded exchanges, oldest first
+	 */
+	public List<Exchange> snapshot() {
+		List<Exchange> exchanges = new ArrayList<Exchange>(slots.length()) ;
+		for (int x=0; x<slots.length(); x++) {
+			Exchange exchange = slots.get(x) ;
+			if (exchange!=null) {
+				exchanges.add(exchange) ;
+			}
+		}
+		Collections.sort(exchanges, new Comparator<Exchange>() {
+			public int compare(Exchange a, Exchange b) {
+				return (a.sequence<b.sequence)?-1:((a.sequence==b.sequence)?0:1) ;
+			}
+		}) ;
+		return exchanges ;
+	}
+
+	/**
+	 * Write the recorded exchanges, oldest first, one per entry.
+	 * @param out Where to write the exchanges
+	 * @throws IOException If <code>out</code> cannot be written to
+	 */
+	public void dump(Appendable out) throws IOException {
+		for (Exchange exchange: snapshot()) {
+			out.append(exchange.toString()).append('\n') ;
+		}
+	}
+
+	/**
+	 * Discard all recorded exchanges
+	 */
+	public void clear() {
+		for (int x=0; x<slots.length(); x++) {
+			slots.set(x, null) ;
+		}
+	}
+
+	private String truncate(String text) {
+		if (text==null || text.length()<=maxBodyLength) {
+			return text ;
+		}
+		return text.substring(0, maxBodyLength)+"...("+text.length()+" chars)" ;
+	}
+
+	/**
+	 * Replace the values of any <code>*_TOKEN</code> arguments in a request with a placeholder.
+	 * @param req The request path and arguments
+	 * @return The request with its tokens redacted
+	 */
+	public static String redact(String req) {
+		if (req==null) {
+			return null ;
+		}
+		int index = req.indexOf("TOKEN=") ;
+		if (index<0) {
+			return req ;
+		}
+		StringBuilder sb = new StringBuilder(req.length()) ;
+		int from = 0 ;
+		while (index>=0) {
+			int valueStart = index+6 ;
+			int valueEnd = req.indexOf('&', valueStart) ;
+			if (valueEnd<0) {
+				valueEnd = req.length() ;
+			}
+			sb.append(req, from, valueStart).append("REDACTED") ;
+			from = valueEnd ;
+			index = req.indexOf("TOKEN=", valueEnd) ;
+		}
+		return sb.append(req, from, req.length()).toString() ;
+	}
+}
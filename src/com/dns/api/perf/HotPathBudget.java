@@ -0,0 +1,211 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.perf;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.json.JSONObject;
+
+import com.dns.api.compiletime.ApiResult;
+import com.dns.api.compiletime.ClientResources;
+import com.dns.api.compiletime.ManagementAPI;
+
+/**
+ * Guards the request hot path against regressions. Each representative call is made many times
+ * against a {@link StandInServer} on the loopback interface, on the current thread, and two figures
+ * are taken: the bytes the thread allocated per call, from the JVM's per-thread allocation counter,
+ * and the median wall clock time per call. The run fails, with exit code 1, when either is over the
+ * budget recorded for the call:
+ * <pre>
+ * hotpathbudget [--iterations &lt;n&gt;] [--warm-up &lt;n&gt;] [--budget-file &lt;file&gt;] [--record]
+ * </pre>
+ * The budgets below were recorded on a HotSpot JVM with some headroom. They can be overridden with
+ * a properties file holding <code>&lt;call&gt;.bytes</code> and <code>&lt;call&gt;.micros</code> entries;
+ * <code>--record</code> prints such a file for the current build instead of checking anything.
+ * Allocation is only measured on JVMs which support per-thread allocation counting.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class HotPathBudget {
+
+	/** How far over the measured figures the budgets written by <code>--record</code> are set */
+	private static final double HEADROOM = 1.25 ;
+
+	private static final class Case {
+		final String name ;
+		final LoadGenerator.Operation operation ;
+		long bytesBudget ;
+		long microsBudget ;
+		long bytes = -1 ;
+		long micros = -1 ;
+
+		Case(String name, LoadGenerator.Operation operation, long bytesBudget, long microsBudget) {
+			this.name = name ;
+			this.operation = operation ;
+			this.bytesBudget = bytesBudget ;
+			this.microsBudget = microsBudget ;
+		}
+
+		boolean overBudget() {
+			return bytes>bytesBudget || micros>microsBudget ;
+		}
+	}
+
+	private final ManagementAPI api ;
+	private final com.sun.management.ThreadMXBean threads ;
+	private final List<Case> cases = new ArrayList<Case>() ;
+
+	/**
+	 * Constructor
+	 * @param api The {@link ManagementAPI} to make the calls with, pointed at a {@link StandInServer}
+	 */
+	HotPathBudget(ManagementAPI api) {
+		super() ;
+		this.api = api ;
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean() ;
+		if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+			this.threads = (com.sun.management.ThreadMXBean)bean ;
+			threads.setThreadAllocatedMemoryEnabled(true) ;
+		} else {
+			this.threads = null ;
+		}
+		cases.add(new Case("getDomains", LoadGenerator.domains(""), 44000, 5000)) ;
+		cases.add(new Case("getHostnamesForDomain", LoadGenerator.hostnames("domain0.com"), 20000, 5000)) ;
+		cases.add(new Case("getRRSetForHostname", LoadGenerator.records("domain0.com", "www"), 20000, 5000)) ;
+		cases.add(new Case("createDefaultRecord", new LoadGenerator.Operation() {
+			public JSONObject call(ManagementAPI api, long sequence) {
+				return api.createDefaultRecord("domain0.com", false, "www", "192.0.2.1", "A", false, null, null, null, null, Integer.valueOf(300)) ;
+			}
+		}, 21000, 5000)) ;
+		cases.add(new Case("updateRRData", LoadGenerator.update(1, "192.0.2.2", Integer.valueOf(300)), 19000, 5000)) ;
+	}
+
+	/**
+	 * Replace the built in budgets with any given in a properties file.
+	 */
+	void loadBudgets(Properties budgets) {
+		for (Case c: cases) {
+			c.bytesBudget = Long.parseLong(budgets.getProperty(c.name+".bytes", Long.toString(c.bytesBudget))) ;
+			c.microsBudget = Long.parseLong(budgets.getProperty(c.name+".micros", Long.toString(c.microsBudget))) ;
+		}
+	}
+
+	/**
+	 * Measure every case.
+	 * @param warmUp The number of calls to make before measuring, so the code is compiled and pools are full
+	 * @param iterations The number of calls to measure
+	 */
+	void measure(int warmUp, int iterations) {
+		long thread = Thread.currentThread().getId() ;
+		for (Case c: cases) {
+			for (int x=0; x<warmUp; x++) {
+				check(c, c.operation.call(api, x)) ;
+			}
+			LatencyHistogram latency = new LatencyHistogram() ;
+			long before = (threads!=null)?threads.getThreadAllocatedBytes(thread):0 ;
+			for (int x=0; x<iterations; x++) {
+				long start = System.nanoTime() ;
+				JSONObject response = c.operation.call(api, x) ;
+				latency.record(System.nanoTime()-start) ;
+				check(c, response) ;
+			}
+			long after = (threads!=null)?threads.getThreadAllocatedBytes(thread):0 ;
+			// The histogram never allocates, so everything counted here was allocated by the calls
+			c.bytes = (threads!=null)?(after-before)/iterations:-1 ;
+			c.micros = latency.getValueAtPercentile(50.0)/1000L ;
+		}
+	}
+
+	private static void check(Case c, JSONObject response) {
+		ApiResult result = ApiResult.fromResponse(response) ;
+		if (!result.isSuccess()) {
+			throw new IllegalStateException(c.name+" failed against the stand-in server: "+result.getError()) ;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if every case is within its budget
+	 */
+	boolean report() {
+		boolean ok = true ;
+		System.out.println(String.format("%-24s %12s %12s %10s %10s", "call", "bytes/call", "budget", "p50 us", "budget")) ;
+		for (Case c: cases) {
+			System.out.println(String.format("%-24s %12s %12d %10d %10d%s", c.name, (c.bytes>=0)?Long.toString(c.bytes):"n/a",
+					c.bytesBudget, c.micros, c.microsBudget, c.overBudget()?"  OVER BUDGET":"")) ;
+			ok &= !c.overBudget() ;
+		}
+		if (threads==null) {
+			System.out.println("Allocation was not measured: this JVM cannot count allocations per thread") ;
+		}
+		return ok ;
+	}
+
+	/**
+	 * Print budgets for the figures just measured, in the properties file layout read by <code>--budget-file</code>.
+	 */
+	void record() {
+		for (Case c: cases) {
+			if (c.bytes>=0) {
+				System.out.println(c.name+".bytes="+(long)(c.bytes*HEADROOM)) ;
+			}
+			System.out.println(c.name+".micros="+Math.max(1L, (long)(c.micros*HEADROOM))) ;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int iterations = 2000 ;
+		int warmUp = 2000 ;
+		boolean record = false ;
+		Properties budgets = new Properties() ;
+		for (int x=0; x<args.length; x++) {
+			if ("--iterations".equals(args[x]) && x+1<args.length) {
+				iterations = Integer.parseInt(args[++x]) ;
+			} else if ("--warm-up".equals(args[x]) && x+1<args.length) {
+				warmUp = Integer.parseInt(args[++x]) ;
+			} else if ("--budget-file".equals(args[x]) && x+1<args.length) {
+				InputStream in = new FileInputStream(args[++x]) ;
+				try {
+					budgets.load(in) ;
+				} finally {
+					in.close() ;
+				}
+			} else if ("--record".equals(args[x])) {
+				record = true ;
+			} else {
+				System.err.println("usage: hotpathbudget [--iterations n] [--warm-up n] [--budget-file file] [--record]") ;
+				System.exit(2) ;
+			}
+		}
+
+		StandInServer server = new StandInServer(0, 4, 20) ;
+		server.start() ;
+		ManagementAPI api = new ManagementAPI(server.getHost(), false, "00000000-0000-0000-0000-000000000000") ;
+		ClientResources resources = new ClientResources(4, null) ;
+		api.setClientResources(resources) ;
+		boolean ok ;
+		try {
+			HotPathBudget budget = new HotPathBudget(api) ;
+			budget.loadBudgets(budgets) ;
+			budget.measure(warmUp, iterations) ;
+			if (record) {
+				budget.record() ;
+				ok = true ;
+			} else {
+				ok = budget.report() ;
+			}
+		} finally {
+			resources.shutdown() ;
+			server.stop() ;
+		}
+		System.exit(ok?0:1) ;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.perf;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size histogram of latencies in nanoseconds, laid out like an HDR histogram: values below
+ * 256 each have their own bucket and every power of two above that is split into 128 linear
+ * sub-buckets, so any value is recorded to within 1% of its true size while the whole range from
+ * 1ns to over an hour fits in a few thousand counters. Recording is a single atomic increment and
+ * may be done from any number of threads.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 8 ;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS ;
+	private static final int HALF = SUB_BUCKETS >> 1 ;
+
+	/** Values above this (about 73 minutes) are counted as this */
+	public static final long MAX_VALUE = (1L << 42)-1 ;
+
+	private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE)+1) ;
+	private final AtomicLong total = new AtomicLong() ;
+	private final AtomicLong sum = new AtomicLong() ;
+	private final AtomicLong max = new AtomicLong() ;
+
+	static int indexOf(long value) {
+		if (value<SUB_BUCKETS) {
+			return (int)value ;
+		}
+		int shift = (63-Long.numberOfLeadingZeros(value))-(SUB_BUCKET_BITS-1) ;
+		return SUB_BUCKETS+(shift-1)*HALF+(int)((value >> shift)-HALF) ;
+	}
+
+	/**
+	 * @return The largest value which is recorded in the same bucket as <code>index</code>
+	 */
+	static long highestValueAt(int index) {
+		if (index<SUB_BUCKETS) {
+			return index ;
+		}
+		int shift = (index-SUB_BUCKETS)/HALF+1 ;
+		long sub = (index-SUB_BUCKETS)%HALF+HALF ;
+		return ((sub+1) << shift)-1 ;
+	}
+
+	/**
+	 * @param nanos The latency to record
+	 */
+	public void record(long nanos) {
+		long value = Math.min(Math.max(0L, nanos), MAX_VALUE) ;
+		counts.incrementAndGet(indexOf(value)) ;
+		total.incrementAndGet() ;
+		sum.addAndGet(value) ;
+		long current ;
+		while (value>(current = max.get()) && !max.compareAndSet(current, value)) {
+			// Another thread raised the maximum first, so look again
+		}
+	}
+
+	/**
+	 * Add every value recorded in another histogram to this one.
+	 * @param other The {@link LatencyHistogram} to add
+	 */
+	public void add(LatencyHistogram other) {
+		for (int x=0; x<counts.length(); x++) {
+			long count = other.counts.get(x) ;
+			if (count>0) {
+				counts.addAndGet(x, count) ;
+			}
+		}
+		total.addAndGet(other.total.get()) ;
+		sum.addAndGet(other.sum.get()) ;
+		long value = other.max.get() ;
+		long current ;
+		while (value>(current = max.get()) && !max.compareAndSet(current, value)) {
+			// Another thread raised the maximum first, so look again
+		}
+	}
+
+	public long getCount() {
+		return total.get() ;
+	}
+
+	/**
+	 * @return The largest value recorded, in nanoseconds
+	 */
+	public long getMax() {
+		return max.get() ;
+	}
+
+	/**
+	 * @return The mean of the recorded values in nanoseconds, or 0 if there are none
+	 */
+	public double getMean() {
+		long count = total.get() ;
+		return (count==0)?0.0:sum.get()/(double)count ;
+	}
+
+	/**
+	 * @param percentile The percentile wanted, between 0.0 and 100.0
+	 * @return A value, in nanoseconds, which at least <code>percentile</code> percent of the recorded
+	 * values do not exceed, or 0 if nothing has been recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long count = total.get() ;
+		if (count==0) {
+			return 0 ;
+		}
+		long wanted = Math.max(1L, (long)Math.ceil(Math.min(100.0, percentile)/100.0*count)) ;
+		long seen = 0 ;
+		for (int x=0; x<counts.length(); x++) {
+			seen += counts.get(x) ;
+			if (seen>=wanted) {
+				return Math.min(highestValueAt(x), max.get()) ;
+			}
+		}
+		return max.get() ;
+	}
+}
@@ -0,0 +1,322 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.perf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dns.api.compiletime.ApiResult;
+import com.dns.api.compiletime.ManagementAPI;
+import com.dns.api.compiletime.ParallelRequests;
+
+/**
+ * Drives a weighted mix of {@link ManagementAPI} calls for a fixed time and reports throughput,
+ * errors and latency percentiles, both for the whole run and for each reporting interval.
+ * <p>
+ * With a rate set the calls arrive on a fixed schedule regardless of how quickly earlier calls
+ * return, and each latency is measured from the moment its call was <i>due</i> rather than from
+ * when a thread got round to sending it. A slow server therefore shows up as high latency instead
+ * of as quietly fewer calls (coordinated omission). The concurrency is then the number of threads
+ * sending calls; calls which fall due while all of them are busy wait in a queue and the wait counts
+ * towards their latency. Without a rate, the concurrency is the number of callers which each send
+ * their next call as soon as the last one returns, and the latency is the time each call took.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class LoadGenerator {
+
+	/**
+	 * One kind of call in the mix
+	 */
+	public interface Operation {
+
+		/**
+		 * @param api The {@link ManagementAPI} to make the call with
+		 * @param sequence The number of the call within the run, starting at 0
+		 * @return The JSON response of the call
+		 */
+		JSONObject call(ManagementAPI api, long sequence) ;
+	}
+
+	private static final class Weighted {
+		final String name ;
+		final int weight ;
+		final Operation operation ;
+
+		Weighted(String name, int weight, Operation operation) {
+			this.name = name ;
+			this.weight = weight ;
+			this.operation = operation ;
+		}
+	}
+
+	/**
+	 * Receives each reporting interval as soon as it ends
+	 */
+	public interface IntervalListener {
+		void intervalEnded(LoadReport.Interval interval) ;
+	}
+
+	private final Logger log = LoggerFactory.getLogger(LoadGenerator.class.getSimpleName()) ;
+	private final ManagementAPI api ;
+	private final List<Weighted> operations = new ArrayList<Weighted>() ;
+	private double rate = 0.0 ;
+	private int concurrency = 8 ;
+	private long durationMillis = 10000L ;
+	private long intervalMillis = 1000L ;
+	private IntervalListener listener = null ;
+
+	/**
+	 * Constructor
+	 * @param api The {@link ManagementAPI} to make the calls with
+	 */
+	public LoadGenerator(ManagementAPI api) {
+		super() ;
+		this.api = api ;
+	}
+
+	/**
+	 * Add a kind of call to the mix.
+	 * @param name The name to report the call under
+	 * @param weight How often the call is made relative to the other calls in the mix
+	 * @param operation The call
+	 */
+	public void addOperation(String name, int weight, Operation operation) {
+		if (weight<1) {
+			throw new IllegalArgumentException("The weight must be at least 1") ;
+		}
+		operations.add(new Weighted(name, weight, operation)) ;
+	}
+
+	/**
+	 * @param rate The number of calls to start per second, or 0 to run at a fixed concurrency instead
+	 */
+	public void setRate(double rate) {
+		this.rate = rate ;
+	}
+
+	/**
+	 * @param concurrency The number of threads making calls
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = Math.max(1, concurrency) ;
+	}
+
+	/**
+	 * @param durationMillis How long to keep starting calls
+	 */
+	public void setDurationMillis(long durationMillis) {
+		this.durationMillis = durationMillis ;
+	}
+
+	/**
+	 * @param intervalMillis How often to close a reporting interval
+	 */
+	public void setIntervalMillis(long intervalMillis) {
+		this.intervalMillis = Math.max(1L, intervalMillis) ;
+	}
+
+	/**
+	 * @param listener (OPTIONAL) Told about each reporting interval as it ends, or <code>null</code>
+	 */
+	public void setIntervalListener(IntervalListener listener) {
+		this.listener = listener ;
+	}
+
+	/**
+	 * Build a table of operations, in which each appears as many times as its weight, shuffled so that
+	 * the kinds of call are interleaved. Call <code>n</code> of the run uses entry <code>n</code> modulo
+	 * the table size, so every run sends the same sequence of calls.
+	 */
+	private Weighted[] schedule() {
+		List<Weighted> table = new ArrayList<Weighted>() ;
+		for (Weighted operation: operations) {
+			for (int x=0; x<operation.weight; x++) {
+				table.add(operation) ;
+			}
+		}
+		Collections.shuffle(table, new Random(table.size())) ;
+		return table.toArray(new Weighted[table.size()]) ;
+	}
+
+	/**
+	 * Run the load test.
+	 * @return A {@link LoadReport} of the run
+	 * @throws InterruptedException If the thread is interrupted; the calls still in flight are abandoned
+	 */
+	public LoadReport run() throws InterruptedException {
+		if (operations.isEmpty()) {
+			throw new IllegalStateException("No operations have been added") ;
+		}
+		final Weighted[] table = schedule() ;
+		List<String> names = new ArrayList<String>() ;
+		for (Weighted operation: operations) {
+			names.add(operation.name) ;
+		}
+		final LoadReport report = new LoadReport(names) ;
+		final long startNanos = System.nanoTime() ;
+		final long endNanos = startNanos+TimeUnit.MILLISECONDS.toNanos(durationMillis) ;
+		final AtomicReference<LoadReport.Interval> current = new AtomicReference<LoadReport.Interval>(new LoadReport.Interval(0, intervalMillis)) ;
+
+		ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(ParallelRequests.daemonThreadFactory("loadgen-report")) ;
+		reporter.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				closeInterval(current, report, startNanos) ;
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS) ;
+
+		ExecutorService callers = Executors.newFixedThreadPool(concurrency, ParallelRequests.daemonThreadFactory("loadgen")) ;
+		try {
+			if (rate>0.0) {
+				runAtRate(callers, table, report, current, startNanos, endNanos) ;
+			} else {
+				runAtConcurrency(callers, table, report, current, endNanos) ;
+			}
+			callers.shutdown() ;
+			while (!callers.awaitTermination(1, TimeUnit.SECONDS)) {
+				log.info("Waiting for the last calls to complete") ;
+			}
+		} finally {
+			callers.shutdownNow() ;
+			reporter.shutdownNow() ;
+		}
+		closeInterval(current, report, startNanos) ;
+		report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-startNanos)) ;
+		return report ;
+	}
+
+	private void runAtRate(ExecutorService callers, final Weighted[] table, final LoadReport report,
+			final AtomicReference<LoadReport.Interval> current, long startNanos, long endNanos) throws InterruptedException {
+		final AtomicLong completed = new AtomicLong() ;
+		double periodNanos = TimeUnit.SECONDS.toNanos(1)/rate ;
+		for (long n=0; ; n++) {
+			final long dueNanos = startNanos+(long)(n*periodNanos) ;
+			if (dueNanos>=endNanos) {
+				break ;
+			}
+			long wait ;
+			while ((wait = dueNanos-System.nanoTime())>0) {
+				LockSupport.parkNanos(wait) ;
+				if (Thread.interrupted()) {
+					throw new InterruptedException() ;
+				}
+			}
+			report.backlog(n-completed.get()) ;
+			final long sequence = n ;
+			callers.execute(new Runnable() {
+				public void run() {
+					call(table[(int)(sequence%table.length)], sequence, dueNanos, report, current) ;
+					completed.incrementAndGet() ;
+				}
+			}) ;
+		}
+	}
+
+	private void runAtConcurrency(ExecutorService callers, final Weighted[] table, final LoadReport report,
+			final AtomicReference<LoadReport.Interval> current, final long endNanos) {
+		final AtomicLong sequence = new AtomicLong() ;
+		for (int x=0; x<concurrency; x++) {
+			callers.execute(new Runnable() {
+				public void run() {
+					long startNanos ;
+					while ((startNanos = System.nanoTime())<endNanos && !Thread.currentThread().isInterrupted()) {
+						long n = sequence.getAndIncrement() ;
+						call(table[(int)(n%table.length)], n, startNanos, report, current) ;
+					}
+				}
+			}) ;
+		}
+	}
+
+	private void call(Weighted operation, long sequence, long fromNanos, LoadReport report, AtomicReference<LoadReport.Interval> current) {
+		boolean success ;
+		try {
+			success = ApiResult.fromResponse(operation.operation.call(api, sequence)).isSuccess() ;
+		} catch (RuntimeException re) {
+			log.debug("Call to "+operation.name+" failed", re) ;
+			success = false ;
+		}
+		long nanos = System.nanoTime()-fromNanos ;
+		report.record(operation.name, nanos, success) ;
+		LoadReport.Interval.record(current, nanos, success) ;
+	}
+
+	private void closeInterval(AtomicReference<LoadReport.Interval> current, LoadReport report, long startNanos) {
+		long nowMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-startNanos) ;
+		LoadReport.Interval ended = current.getAndSet(new LoadReport.Interval(nowMillis, intervalMillis)) ;
+		LoadReport.Interval closed = ended.close(nowMillis) ;
+		report.addInterval(closed) ;
+		IntervalListener l = listener ;
+		if (l!=null) {
+			l.intervalEnded(closed) ;
+		}
+	}
+
+	/**
+	 * @param filter The domain search filter
+	 * @return An {@link Operation} which lists the domains in the account
+	 */
+	public static Operation domains(final String filter) {
+		return new Operation() {
+			public JSONObject call(ManagementAPI api, long sequence) {
+				return api.getDomains(filter) ;
+			}
+		} ;
+	}
+
+	/**
+	 * @param domain The name of the domain
+	 * @return An {@link Operation} which lists the host names of a domain
+	 */
+	public static Operation hostnames(final String domain) {
+		return new Operation() {
+			public JSONObject call(ManagementAPI api, long sequence) {
+				return api.getHostnamesForDomain(domain) ;
+			}
+		} ;
+	}
+
+	/**
+	 * @param domain The name of the domain
+	 * @param host The host name
+	 * @return An {@link Operation} which reads the records of a host
+	 */
+	public static Operation records(final String domain, final String host) {
+		return new Operation() {
+			public JSONObject call(ManagementAPI api, long sequence) {
+				return api.getRRSetForHostname(domain, false, host) ;
+			}
+		} ;
+	}
+
+	/**
+	 * @param rrId The ID of a record set aside for load testing
+	 * @param rdata The data to write to the record on every call
+	 * @param ttl (OPTIONAL) The TTL to write or <code>null</code>
+	 * @return An {@link Operation} which rewrites a record
+	 */
+	public static Operation update(final int rrId, final String rdata, final Integer ttl) {
+		return new Operation() {
+			public JSONObject call(ManagementAPI api, long sequence) {
+				return api.updateRRData(Integer.valueOf(rrId), rdata, ttl, null, Boolean.FALSE, null, null, null, null, null,
+						null, null, null, null, null, null, null) ;
+			}
+		} ;
+	}
+}
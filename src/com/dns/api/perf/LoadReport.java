@@ -0,0 +1,227 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.perf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The results of a {@link LoadGenerator} run: throughput, errors and latency percentiles for the
+ * whole run, for each operation, and for each reporting interval.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class LoadReport {
+
+	/**
+	 * The calls which completed during one reporting interval
+	 */
+	public static final class Interval {
+		private final long startMillis ;
+		private final long lengthMillis ;
+		private final LatencyHistogram latency = new LatencyHistogram() ;
+		private final AtomicLong errors = new AtomicLong() ;
+		private final AtomicInteger writers = new AtomicInteger() ;
+
+		Interval(long startMillis, long lengthMillis) {
+			this.startMillis = startMillis ;
+			this.lengthMillis = lengthMillis ;
+		}
+
+		/**
+		 * @return When the interval started, in milliseconds since the start of the run
+		 */
+		public long getStartMillis() {
+			return startMillis ;
+		}
+
+		public LatencyHistogram getLatency() {
+			return latency ;
+		}
+
+		public long getErrors() {
+			return errors.get() ;
+		}
+
+		/**
+		 * @return The calls completed per second during the interval
+		 */
+		public double getThroughput() {
+			return (lengthMillis>0)?latency.getCount()*1000.0/lengthMillis:0.0 ;
+		}
+
+		void record(long nanos, boolean success) {
+			latency.record(nanos) ;
+			if (!success) {
+				errors.incrementAndGet() ;
+			}
+		}
+
+		/**
+		 * Record a call in whichever interval is current, even while it is being swapped for the next one
+		 */
+		static void record(AtomicReference<Interval> current, long nanos, boolean success) {
+			while (true) {
+				Interval interval = current.get() ;
+				interval.writers.incrementAndGet() ;
+				try {
+					// Once swapped out the interval may already have been copied, so use the new one
+					if (current.get()==interval) {
+						interval.record(nanos, success) ;
+						return ;
+					}
+				} finally {
+					interval.writers.decrementAndGet() ;
+				}
+			}
+		}
+
+		/**
+		 * Copy the interval once the calls recording into it have finished. It must already have been
+		 * swapped out, so that no new call starts recording into it.
+		 */
+		Interval close(long endMillis) {
+			while (writers.get()>0) {
+				Thread.yield() ;
+			}
+			Interval closed = new Interval(startMillis, endMillis-startMillis) ;
+			closed.latency.add(latency) ;
+			closed.errors.set(errors.get()) ;
+			return closed ;
+		}
+
+		public String toString() {
+			return format(startMillis/1000.0+"s", latency, errors.get(), getThroughput()) ;
+		}
+	}
+
+	private final List<Interval> intervals = new ArrayList<Interval>() ;
+	private final Map<String, LatencyHistogram> operations = new LinkedHashMap<String, LatencyHistogram>() ;
+	private final Map<String, AtomicLong> operationErrors = new LinkedHashMap<String, AtomicLong>() ;
+	private final LatencyHistogram total = new LatencyHistogram() ;
+	private final AtomicLong errors = new AtomicLong() ;
+	private final AtomicLong maxBacklog = new AtomicLong() ;
+	private volatile long elapsedMillis = 0 ;
+
+	LoadReport(List<String> operationNames) {
+		super() ;
+		for (String name: operationNames) {
+			operations.put(name, new LatencyHistogram()) ;
+			operationErrors.put(name, new AtomicLong()) ;
+		}
+	}
+
+	void record(String operation, long nanos, boolean success) {
+		total.record(nanos) ;
+		operations.get(operation).record(nanos) ;
+		if (!success) {
+			errors.incrementAndGet() ;
+			operationErrors.get(operation).incrementAndGet() ;
+		}
+	}
+
+	synchronized void addInterval(Interval interval) {
+		intervals.add(interval) ;
+	}
+
+	void backlog(long backlog) {
+		long current ;
+		while (backlog>(current = maxBacklog.get()) && !maxBacklog.compareAndSet(current, backlog)) {
+			// Another thread raised the maximum first, so look again
+		}
+	}
+
+	void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis ;
+	}
+
+	/**
+	 * @return The latency of every call in the run, measured from when the call was due to start
+	 */
+	public LatencyHistogram getLatency() {
+		return total ;
+	}
+
+	/**
+	 * @param operation The name the operation was added with
+	 * @return The latency of the calls to that operation
+	 */
+	public LatencyHistogram getLatency(String operation) {
+		return operations.get(operation) ;
+	}
+
+	public long getErrors() {
+		return errors.get() ;
+	}
+
+	/**
+	 * @return The fraction of calls which failed, between 0.0 and 1.0
+	 */
+	public double getErrorRate() {
+		long count = total.getCount() ;
+		return (count==0)?0.0:errors.get()/(double)count ;
+	}
+
+	/**
+	 * @return The calls completed per second over the whole run
+	 */
+	public double getThroughput() {
+		return (elapsedMillis>0)?total.getCount()*1000.0/elapsedMillis:0.0 ;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis ;
+	}
+
+	/**
+	 * @return The largest number of calls which were due but had not yet completed at once; in a fixed
+	 * rate run, a backlog which keeps growing means the rate is more than the client or server can sustain
+	 */
+	public long getMaxBacklog() {
+		return maxBacklog.get() ;
+	}
+
+	/**
+	 * @return The reporting intervals, oldest first
+	 */
+	public synchronized List<Interval> getIntervals() {
+		return Collections.unmodifiableList(new ArrayList<Interval>(intervals)) ;
+	}
+
+	static String header() {
+		return String.format("%-12s %9s %9s %9s %9s %9s %9s %9s %7s", "", "count", "calls/s", "p50 ms", "p90 ms",
+				"p99 ms", "p99.9 ms", "max ms", "errors") ;
+	}
+
+	static String format(String label, LatencyHistogram latency, long errors, double throughput) {
+		return String.format("%-12s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %7d", label, latency.getCount(), throughput,
+				millis(latency.getValueAtPercentile(50.0)), millis(latency.getValueAtPercentile(90.0)),
+				millis(latency.getValueAtPercentile(99.0)), millis(latency.getValueAtPercentile(99.9)),
+				millis(latency.getMax()), errors) ;
+	}
+
+	private static double millis(long nanos) {
+		return nanos/1000000.0 ;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder(header()).append('\n') ;
+		for (Map.Entry<String, LatencyHistogram> operation: operations.entrySet()) {
+			LatencyHistogram latency = operation.getValue() ;
+			sb.append(format(operation.getKey(), latency, operationErrors.get(operation.getKey()).get(),
+					(elapsedMillis>0)?latency.getCount()*1000.0/elapsedMillis:0.0)).append('\n') ;
+		}
+		sb.append(format("total", total, errors.get(), getThroughput())).append('\n') ;
+		sb.append(String.format("error rate %.3f%%, max backlog %d, %.1fs", getErrorRate()*100.0, getMaxBacklog(), elapsedMillis/1000.0)) ;
+		return sb.toString() ;
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.perf;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.dns.api.compiletime.ClientResources;
+import com.dns.api.compiletime.ManagementAPI;
+
+/**
+ * Runs a {@link LoadGenerator} from the command line and prints a line per reporting interval
+ * followed by the summary of the run:
+ * <pre>
+ * loadtest [--host &lt;api host&gt;] [--no-ssl] [--token &lt;token&gt;] [--stand-in [--stand-in-delay &lt;ms&gt;]]
+ *          [--rate &lt;calls per second&gt;] [--concurrency &lt;n&gt;] [--duration &lt;seconds&gt;] [--interval &lt;seconds&gt;]
+ *          [--mix domains:1,hosts:4,records:4,update:1] [--domain &lt;name&gt;] [--hostname &lt;name&gt;]
+ *          [--rr-id &lt;id&gt; --rdata &lt;data&gt;]
+ * </pre>
+ * <code>--stand-in</code> starts a {@link StandInServer} on the loopback interface and runs against
+ * it instead of a real API server. The <code>update</code> operation rewrites the record given with
+ * <code>--rr-id</code> on every call, so only point it at a record kept for testing.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class LoadTest {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Map<String, String> options = new HashMap<String, String>() ;
+		for (int x=0; x<args.length; x++) {
+			if (!args[x].startsWith("--")) {
+				usage("Unexpected argument '"+args[x]+"'") ;
+			}
+			String name = args[x].substring(2) ;
+			boolean flag = name.equals("no-ssl") || name.equals("stand-in") ;
+			if (!flag && x+1>=args.length) {
+				usage("No value given for --"+name) ;
+			}
+			options.put(name, flag?"true":args[++x]) ;
+		}
+
+		StandInServer standIn = null ;
+		String host = get(options, "host", "www.dns.com") ;
+		boolean useSSL = !options.containsKey("no-ssl") ;
+		if (options.containsKey("stand-in")) {
+			standIn = new StandInServer(0, 64, 100) ;
+			standIn.setDelayMillis(Long.parseLong(get(options, "stand-in-delay", "0"))) ;
+			standIn.start() ;
+			host = standIn.getHost() ;
+			useSSL = false ;
+		}
+		String token = get(options, "token", System.getenv("DNS_API_TOKEN")) ;
+		if (token==null) {
+			usage("No API token given with --token or DNS_API_TOKEN") ;
+		}
+
+		int concurrency = Integer.parseInt(get(options, "concurrency", "16")) ;
+		ManagementAPI api = new ManagementAPI(host, useSSL, token) ;
+		ClientResources resources = new ClientResources(concurrency, null) ;
+		api.setClientResources(resources) ;
+
+		LoadGenerator generator = new LoadGenerator(api) ;
+		generator.setRate(Double.parseDouble(get(options, "rate", "0"))) ;
+		generator.setConcurrency(concurrency) ;
+		generator.setDurationMillis(Long.parseLong(get(options, "duration", "30"))*1000L) ;
+		generator.setIntervalMillis(Long.parseLong(get(options, "interval", "1"))*1000L) ;
+		String domain = get(options, "domain", "domain0.com") ;
+		String hostname = get(options, "hostname", "www") ;
+		for (String entry: get(options, "mix", "domains:1,hosts:4,records:5").split(",")) {
+			String[] parts = entry.split(":") ;
+			int weight = (parts.length>1)?Integer.parseInt(parts[1]):1 ;
+			if ("domains".equals(parts[0])) {
+				generator.addOperation("domains", weight, LoadGenerator.domains("")) ;
+			} else if ("hosts".equals(parts[0])) {
+				generator.addOperation("hosts", weight, LoadGenerator.hostnames(domain)) ;
+			} else if ("records".equals(parts[0])) {
+				generator.addOperation("records", weight, LoadGenerator.records(domain, hostname)) ;
+			} else if ("update".equals(parts[0]) && options.containsKey("rr-id") && options.containsKey("rdata")) {
+				generator.addOperation("update", weight, LoadGenerator.update(Integer.parseInt(options.get("rr-id")), options.get("rdata"), null)) ;
+			} else {
+				usage("Unknown operation '"+parts[0]+"' (update needs --rr-id and --rdata)") ;
+			}
+		}
+		generator.setIntervalListener(new LoadGenerator.IntervalListener() {
+			public void intervalEnded(LoadReport.Interval interval) {
+				System.out.println(interval) ;
+			}
+		}) ;
+
+		System.out.println(LoadReport.header()) ;
+		LoadReport report = generator.run() ;
+		System.out.println() ;
+		System.out.println(report) ;
+		resources.shutdown() ;
+		if (standIn!=null) {
+			standIn.stop() ;
+		}
+		System.exit((report.getErrors()==0)?0:1) ;
+	}
+
+	private static String get(Map<String, String> options, String name, String fallback) {
+		return options.containsKey(name)?options.get(name):fallback ;
+	}
+
+	private static void usage(String problem) {
+		System.err.println(problem) ;
+		System.err.println("usage: loadtest [--host h] [--no-ssl] [--token t] [--stand-in [--stand-in-delay ms]] [--rate r] "
+				+"[--concurrency n] [--duration s] [--interval s] [--mix name:weight,...] [--domain d] [--hostname h] "
+				+"[--rr-id id --rdata data]") ;
+		System.exit(2) ;
+	}
+}
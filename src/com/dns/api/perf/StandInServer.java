@@ -0,0 +1,147 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.perf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dns.api.compiletime.ParallelRequests;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local stand-in for the API server which answers every call with a small canned JSON response,
+ * optionally after a fixed delay. It lets load tests and benchmarks measure the client itself
+ * without sending traffic to the real service. Only plain HTTP is served, so point the API
+ * objects at {@link #getHost()} with SSL turned off.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class StandInServer {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8") ;
+
+	private final HttpServer server ;
+	private final ExecutorService executor ;
+	private final int domainCount ;
+	private final AtomicLong requests = new AtomicLong() ;
+	private volatile long delayMillis = 0 ;
+
+	/**
+	 * Constructor
+	 * @param port The port to listen on, or 0 to pick a free one
+	 * @param threads The number of threads answering requests
+	 * @param domainCount The number of domains returned by <code>getDomains</code>
+	 * @throws IOException If the port cannot be bound
+	 */
+	public StandInServer(int port, int threads, int domainCount) throws IOException {
+		super() ;
+		// Without this the server's separate header and body writes meet the client's delayed ACK and
+		// every response takes about 40ms longer than it should
+		System.setProperty("sun.net.httpserver.nodelay", "true") ;
+		this.domainCount = domainCount ;
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 256) ;
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads), ParallelRequests.daemonThreadFactory("standin")) ;
+		server.setExecutor(executor) ;
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				answer(exchange) ;
+			}
+		}) ;
+	}
+
+	/**
+	 * @param delayMillis How long to wait before answering each request
+	 */
+	public void setDelayMillis(long delayMillis) {
+		this.delayMillis = delayMillis ;
+	}
+
+	public void start() {
+		server.start() ;
+	}
+
+	/**
+	 * Stop answering and release the port
+	 */
+	public void stop() {
+		server.stop(0) ;
+		executor.shutdown() ;
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS) ;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt() ;
+		}
+	}
+
+	/**
+	 * @return The address to use as the API host, as <code>127.0.0.1:port</code>
+	 */
+	public String getHost() {
+		return "127.0.0.1:"+server.getAddress().getPort() ;
+	}
+
+	/**
+	 * @return The number of requests answered so far
+	 */
+	public long getRequestCount() {
+		return requests.get() ;
+	}
+
+	private void answer(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet() ;
+		InputStream in = exchange.getRequestBody() ;
+		byte[] discard = new byte[1024] ;
+		while (in.read(discard)!=-1) {
+			// Read the whole form so the connection can be reused
+		}
+		in.close() ;
+		if (delayMillis>0) {
+			try {
+				Thread.sleep(delayMillis) ;
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt() ;
+			}
+		}
+		byte[] body = respond(exchange.getRequestURI().getPath()).getBytes(UTF8) ;
+		exchange.getResponseHeaders().set("Content-Type", "application/json") ;
+		exchange.sendResponseHeaders(200, body.length) ;
+		OutputStream out = exchange.getResponseBody() ;
+		out.write(body) ;
+		out.close() ;
+	}
+
+	/**
+	 * @param path The path of the API call, e.g. <code>/api/getDomains/</code>
+	 * @return The JSON text to answer with
+	 */
+	protected String respond(String path) {
+		StringBuilder sb = new StringBuilder("{\"meta\":{\"success\":1,\"code\":200},\"data\":") ;
+		if (path.contains("getDomains")) {
+			sb.append('[') ;
+			for (int x=0; x<domainCount; x++) {
+				sb.append((x>0)?",":"").append("{\"name\":\"domain").append(x).append(".com\",\"id\":").append(x+1)
+						.append(",\"mode\":\"advanced\",\"num_hosts\":2}") ;
+			}
+			sb.append(']') ;
+		} else if (path.contains("getHostnames")) {
+			sb.append("[{\"name\":\"\",\"id\":1,\"num_rr\":1},{\"name\":\"www\",\"id\":2,\"num_rr\":1}]") ;
+		} else if (path.contains("getRRSetForHostname")) {
+			sb.append("[{\"id\":1,\"type\":\"A\",\"rdata\":\"192.0.2.1\",\"ttl\":3600}]") ;
+		} else {
+			sb.append("{}") ;
+		}
+		return sb.append('}').toString() ;
+	}
+}
@@ -0,0 +1,568 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.stats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TimeZone;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A local store of daily hit counts per domain, so that reports can be run without calling the API
+ * again. Each domain keeps its daily counts in a primitive <code>long</code> array, alongside weekly
+ * (Monday to Sunday) and calendar month totals which are kept up to date as counts are written, so
+ * range, top-N and trend queries only touch a handful of array slots per domain.
+ * <p>
+ * Days are identified by their number since 1970-01-01 (see {@link #toDay(Date)}). Every write is
+ * appended to the store's file, which is replayed when the store is opened again; use
+ * {@link #compact()} to rewrite the file with only the current counts.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class HitStore {
+
+	/**
+	 * The bucket size for {@link HitStore#trend(String, int, int, Granularity)}
+	 */
+	public enum Granularity {
+		DAY, WEEK, MONTH
+	}
+
+	/**
+	 * A domain and its hit count over a range of days
+	 */
+	public static class DomainHits implements Comparable<DomainHits> {
+		private final String domain ;
+		private final long hits ;
+
+		DomainHits(String domain, long hits) {
+			super() ;
+			this.domain = domain ;
+			this.hits = hits ;
+		}
+
+		public String getDomain() {
+			return domain ;
+		}
+
+		public long getHits() {
+			return hits ;
+		}
+
+		public int compareTo(DomainHits other) {
+			return (hits<other.hits)?-1:((hits==other.hits)?domain.compareTo(other.domain):1) ;
+		}
+
+		public String toString() {
+			return domain+"="+hits ;
+		}
+	}
+
+	private static final int MAGIC = 0x444e5348 ; // "DNSH"
+	private static final int VERSION = 1 ;
+	private static final byte DOMAIN_RECORD = 'D' ;
+	private static final byte HITS_RECORD = 'H' ;
+
+	/**
+	 * A <code>long</code> array indexed from an arbitrary first slot, which grows in either direction
+	 */
+	private static final class Slots {
+		int first ;
+		long[] values = new long[0] ;
+
+		long get(int index) {
+			int offset = index-first ;
+			return (offset<0 || offset>=values.length)?0:values[offset] ;
+		}
+
+		void add(int index, long delta) {
+			if (values.length==0) {
+				first = index ;
+				values = new long[8] ;
+			} else if (index<first) {
+				int grow = Math.max(first-index, values.length/2) ;
+				long[] larger = new long[values.length+grow] ;
+				System.arraycopy(values, 0, larger, grow, values.length) ;
+				values = larger ;
+				first -= grow ;
+			} else if (index-first>=values.length) {
+				long[] larger = new long[Math.max(index-first+1, values.length+values.length/2)] ;
+				System.arraycopy(values, 0, larger, 0, values.length) ;
+				values = larger ;
+			}
+			values[index-first] += delta ;
+		}
+
+		/**
+		 * Sum the slots from <code>from</code> to <code>to</code> inclusive
+		 */
+		long sum(int from, int to) {
+			int start = Math.max(from-first, 0) ;
+			int end = Math.min(to-first, values.length-1) ;
+			long total = 0 ;
+			for (int x=start; x<=end; x++) {
+				total += values[x] ;
+			}
+			return total ;
+		}
+	}
+
+	private static final class Series {
+		final Slots days = new Slots() ;
+		final Slots weeks = new Slots() ;
+		final Slots months = new Slots() ;
+	}
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock() ;
+	private final File file ;
+	private final Map<String, Integer> ids = new HashMap<String, Integer>() ;
+	private final List<String> names = new ArrayList<String>() ;
+	private final List<Series> series = new ArrayList<Series>() ;
+	private DataOutputStream out ;
+
+	/**
+	 * Open a store, replaying its file if it exists.
+	 * @param file (OPTIONAL) The file to persist the store in, or <code>null</code> for an in-memory store
+	 * @throws IOException If the file exists but cannot be read, or cannot be opened for writing
+	 */
+	public HitStore(File file) throws IOException {
+		super() ;
+		this.file = file ;
+		if (file!=null) {
+			if (file.exists() && file.length()>0) {
+				replay() ;
+			}
+			boolean fresh = !file.exists() || file.length()==0 ;
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true))) ;
+			if (fresh) {
+				out.writeInt(MAGIC) ;
+				out.writeInt(VERSION) ;
+			}
+		}
+	}
+
+	/**
+	 * Counts the bytes read through it, so replay knows where the last complete record ended
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+		long count = 0 ;
+
+		CountingInputStream(InputStream in) {
+			super(in) ;
+		}
+
+		public int read() throws IOException {
+			int b = super.read() ;
+			if (b!=-1) {
+				count++ ;
+			}
+			return b ;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len) ;
+			if (n>0) {
+				count += n ;
+			}
+			return n ;
+		}
+
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n) ;
+			count += skipped ;
+			return skipped ;
+		}
+	}
+
+	private void replay() throws IOException {
+		CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file))) ;
+		DataInputStream in = new DataInputStream(counter) ;
+		long complete = 0 ;
+		try {
+			if (in.readInt()!=MAGIC || in.readInt()!=VERSION) {
+				throw new IOException("'"+file+"' is not a hit store file") ;
+			}
+			while (true) {
+				complete = counter.count ;
+				int type = in.read() ;
+				if (type==-1) {
+					break ;
+				} else if (type==DOMAIN_RECORD) {
+					define(in.readUTF()) ;
+				} else if (type==HITS_RECORD) {
+					int id = in.readInt() ;
+					int day = in.readInt() ;
+					long hits = in.readLong() ;
+					if (id<0 || id>=series.size()) {
+						throw new IOException("'"+file+"' refers to an undefined domain") ;
+					}
+					apply(series.get(id), day, hits) ;
+				} else {
+					throw new IOException("'"+file+"' is corrupt") ;
+				}
+			}
+			complete = counter.count ;
+		} catch (EOFException eofe) {
+			// A record cut short by a crash; everything before it has been loaded
+		} finally {
+			in.close() ;
+		}
+		if (complete<file.length()) {
+			// Drop the partial record so that new records are appended after the last complete one
+			RandomAccessFile truncate = new RandomAccessFile(file, "rw") ;
+			try {
+				truncate.setLength(complete) ;
+			} finally {
+				truncate.close() ;
+			}
+		}
+	}
+
+	/**
+	 * Convert a date to the day number used by this store, using the local time zone.
+	 * @param date The date
+	 * @return The number of days since 1970-01-01
+	 */
+	public static int toDay(Date date) {
+		long time = date.getTime() ;
+		long local = time+TimeZone.getDefault().getOffset(time) ;
+		return (int)Math.floor(local/86400000.0) ;
+	}
+
+	/**
+	 * @return The week number (weeks start on Monday) of a day number
+	 */
+	static int weekOf(int day) {
+		// 1970-01-01 was a Thursday, so shifting by 3 puts Mondays on multiples of 7
+		return (int)Math.floor((day+3)/7.0) ;
+	}
+
+	/**
+	 * @return The month number (year*12 + month-1) of a day number
+	 */
+	static int monthOf(int day) {
+		// Civil calendar conversion from days since the epoch, using eras of 400 years
+		int z = day+719468 ;
+		int era = ((z>=0)?z:z-146096)/146097 ;
+		int doe = z-era*146097 ;
+		int yoe = (doe-doe/1460+doe/36524-doe/146096)/365 ;
+		int doy = doe-(365*yoe+yoe/4-yoe/100) ;
+		int mp = (5*doy+2)/153 ;
+		int month = (mp<10)?mp+3:mp-9 ;
+		int year = yoe+era*400+((month<=2)?1:0) ;
+		return year*12+month-1 ;
+	}
+
+	private int define(String domain) {
+		Integer id = ids.get(domain) ;
+		if (id==null) {
+			id = names.size() ;
+			ids.put(domain, id) ;
+			names.add(domain) ;
+			series.add(new Series()) ;
+		}
+		return id ;
+	}
+
+	private static void apply(Series s, int day, long hits) {
+		long delta = hits-s.days.get(day) ;
+		if (delta!=0) {
+			s.days.add(day, delta) ;
+			s.weeks.add(weekOf(day), delta) ;
+			s.months.add(monthOf(day), delta) ;
+		}
+	}
+
+	/**
+	 * Set the hit count of a domain for one day, replacing any earlier count for that day.
+	 * @param domain The domain name
+	 * @param day The day number (see {@link #toDay(Date)})
+	 * @param hits The hit count
+	 * @throws IOException If the change cannot be appended to the store's file
+	 */
+	public void put(String domain, int day, long hits) throws IOException {
+		lock.writeLock().lock() ;
+		try {
+			if (file!=null && out==null) {
+				throw new IOException("The hit store has been closed") ;
+			}
+			Integer known = ids.get(domain) ;
+			int id = (known!=null)?known.intValue():names.size() ;
+			if (out!=null) {
+				if (known==null) {
+					// Encoded apart first, so a name too long to store fails before any of it reaches the file
+					ByteArrayOutputStream record = new ByteArrayOutputStream() ;
+					DataOutputStream encoder = new DataOutputStream(record) ;
+					encoder.writeByte(DOMAIN_RECORD) ;
+					encoder.writeUTF(domain) ;
+					record.writeTo(out) ;
+				}
+				out.writeByte(HITS_RECORD) ;
+				out.writeInt(id) ;
+				out.writeInt(day) ;
+				out.writeLong(hits) ;
+			}
+			// Only known in memory once it is in the file, or later records would refer to an undefined domain
+			define(domain) ;
+			apply(series.get(id), day, hits) ;
+		} finally {
+			lock.writeLock().unlock() ;
+		}
+	}
+
+	/**
+	 * Store every count in a {@link HitsReport}. Each window's count is stored against its first
+	 * day, so reports should be collected with one day windows for full daily resolution.
+	 * @param report The {@link HitsReport} to store
+	 * @throws IOException If the counts cannot be appended to the store's file
+	 */
+	public void putAll(HitsReport report) throws IOException {
+		for (String domain: report.getDomains()) {
+			long[] counts = report.getHits(domain) ;
+			for (int x=0; x<counts.length; x++) {
+				put(domain, toDay(report.getWindowStart(x)), counts[x]) ;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of domains in the store
+	 */
+	public int getDomainCount() {
+		lock.readLock().lock() ;
+		try {
+			return names.size() ;
+		} finally {
+			lock.readLock().unlock() ;
+		}
+	}
+
+	/**
+	 * @param domain The domain name
+	 * @param day The day number
+	 * @return The hit count for that day, or 0 if none is stored
+	 */
+	public long get(String domain, int day) {
+		lock.readLock().lock() ;
+		try {
+			Integer id = ids.get(domain) ;
+			return (id==null)?0:series.get(id).days.get(day) ;
+		} finally {
+			lock.readLock().unlock() ;
+		}
+	}
+
+	/**
+	 * @param domain The domain name
+	 * @param from The first day number of the range
+	 * @param to The last day number of the range
+	 * @return The total hits for the domain over the range
+	 */
+	public long rangeSum(String domain, int from, int to) {
+		lock.readLock().lock() ;
+		try {
+			Integer id = ids.get(domain) ;
+			return (id==null)?0:rangeSum(series.get(id), from, to) ;
+		} finally {
+			lock.readLock().unlock() ;
+		}
+	}
+
+	/**
+	 * Sum a range of days using whole weeks from the weekly totals and single days only at the edges.
+	 */
+	private static long rangeSum(Series s, int from, int to) {
+		if (to<from) {
+			return 0 ;
+		}
+		int firstWeek = weekOf(from) ;
+		int lastWeek = weekOf(to) ;
+		if (lastWeek-firstWeek<2) {
+			return s.days.sum(from, to) ;
+		}
+		// Days from 'from' to the end of its week, whole weeks between, then the start of the last week
+		int firstFullWeek = firstWeek+1 ;
+		int lastFullWeek = lastWeek-1 ;
+		int firstFullDay = firstFullWeek*7-3 ;
+		int lastFullDay = lastFullWeek*7+3 ;
+		return s.days.sum(from, firstFullDay-1)+s.weeks.sum(firstFullWeek, lastFullWeek)+s.days.sum(lastFullDay+1, to) ;
+	}
+
+	/**
+	 * Find the domains with the most hits over a range of days.
+	 * @param from The first day number of the range
+	 * @param to The last day number of the range
+	 * @param n The number of domains to return
+	 * @return Up to <code>n</code> domains, busiest first
+	 */
+	public List<DomainHits> topN(int from, int to, int n) {
+		PriorityQueue<DomainHits> top = new PriorityQueue<DomainHits>(Math.max(1, n+1)) ;
+		lock.readLock().lock() ;
+		try {
+			for (int x=0; x<series.size() && n>0; x++) {
+				long hits = rangeSum(series.get(x), from, to) ;
+				if (top.size()<n) {
+					top.add(new DomainHits(names.get(x), hits)) ;
+				} else if (hits>top.peek().hits) {
+					top.poll() ;
+					top.add(new DomainHits(names.get(x), hits)) ;
+				}
+			}
+		} finally {
+			lock.readLock().unlock() ;
+		}
+		List<DomainHits> result = new ArrayList<DomainHits>(top) ;
+		Collections.sort(result, Collections.reverseOrder()) ;
+		return result ;
+	}
+
+	/**
+	 * Return the hits for a domain bucketed by day, week or month. Weeks and months at the edges of the
+	 * range only include the days inside the range.
+	 * @param domain The domain name
+	 * @param from The first day number of the range
+	 * @param to The last day number of the range
+	 * @param granularity The bucket size
+	 * @return One count per bucket, oldest first
+	 */
+	public long[] trend(String domain, int from, int to, Granularity granularity) {
+		if (to<from) {
+			return new long[0] ;
+		}
+		lock.readLock().lock() ;
+		try {
+			Integer id = ids.get(domain) ;
+			Series s = (id==null)?new Series():series.get(id) ;
+			if (granularity==Granularity.DAY) {
+				long[] result = new long[to-from+1] ;
+				for (int x=0; x<result.length; x++) {
+					result[x] = s.days.get(from+x) ;
+				}
+				return result ;
+			}
+			boolean weekly = granularity==Granularity.WEEK ;
+			int firstBucket = weekly?weekOf(from):monthOf(from) ;
+			int lastBucket = weekly?weekOf(to):monthOf(to) ;
+			long[] result = new long[lastBucket-firstBucket+1] ;
+			for (int x=0; x<result.length; x++) {
+				if (x>0 && x<result.length-1) {
+					result[x] = weekly?s.weeks.get(firstBucket+x):s.months.get(firstBucket+x) ;
+				}
+			}
+			// The first and last buckets may be partial, so count their days individually
+			int day = from ;
+			while (day<=to && (weekly?weekOf(day):monthOf(day))==firstBucket) {
+				result[0] += s.days.get(day++) ;
+			}
+			if (result.length>1) {
+				day = to ;
+				while (day>=from && (weekly?weekOf(day):monthOf(day))==lastBucket) {
+					result[result.length-1] += s.days.get(day--) ;
+				}
+			}
+			return result ;
+		} finally {
+			lock.readLock().unlock() ;
+		}
+	}
+
+	/**
+	 * Write any buffered changes to the store's file.
+	 * @throws IOException If the file cannot be written
+	 */
+	public void flush() throws IOException {
+		lock.writeLock().lock() ;
+		try {
+			if (out!=null) {
+				out.flush() ;
+			}
+		} finally {
+			lock.writeLock().unlock() ;
+		}
+	}
+
+	/**
+	 * Rewrite the store's file so that it only holds the current count of each domain and day.
+	 * @throws IOException If the file cannot be rewritten
+	 */
+	public void compact() throws IOException {
+		if (file==null) {
+			return ;
+		}
+		lock.writeLock().lock() ;
+		try {
+			if (out==null) {
+				throw new IOException("The hit store has been closed") ;
+			}
+			File temp = new File(file.getPath()+".tmp") ;
+			DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))) ;
+			try {
+				compacted.writeInt(MAGIC) ;
+				compacted.writeInt(VERSION) ;
+				for (int id=0; id<names.size(); id++) {
+					compacted.writeByte(DOMAIN_RECORD) ;
+					compacted.writeUTF(names.get(id)) ;
+					Slots days = series.get(id).days ;
+					for (int x=0; x<days.values.length; x++) {
+						if (days.values[x]!=0) {
+							compacted.writeByte(HITS_RECORD) ;
+							compacted.writeInt(id) ;
+							compacted.writeInt(days.first+x) ;
+							compacted.writeLong(days.values[x]) ;
+						}
+					}
+				}
+			} finally {
+				compacted.close() ;
+			}
+			out.close() ;
+			if (!temp.renameTo(file)) {
+				file.delete() ;
+				if (!temp.renameTo(file)) {
+					throw new IOException("Unable to replace '"+file+"'") ;
+				}
+			}
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true))) ;
+		} finally {
+			lock.writeLock().unlock() ;
+		}
+	}
+
+	/**
+	 * Flush and close the store's file. The store can still be queried afterwards, but not written to.
+	 * @throws IOException If the file cannot be written
+	 */
+	public void close() throws IOException {
+		lock.writeLock().lock() ;
+		try {
+			if (out!=null) {
+				out.close() ;
+				out = null ;
+			}
+		} finally {
+			lock.writeLock().unlock() ;
+		}
+	}
+}
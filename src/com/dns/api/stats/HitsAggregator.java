@@ -0,0 +1,201 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.stats;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dns.api.compiletime.ApiResult;
+import com.dns.api.compiletime.BillingAPI;
+import com.dns.api.compiletime.ParallelRequests;
+
+/**
+ * Collects hit counts for many domains over a long date range. The range is split into windows
+ * of a fixed number of days and every domain/window pair is fetched with
+ * {@link BillingAPI#getHits(String, Date, Date)}, a bounded number at a time. Counts for windows
+ * which ended a few days ago (see {@link #setSettleDays(int)}) no longer change, so they are cached
+ * and not fetched again by later runs on the same aggregator. More recent windows are always fetched,
+ * as the server's day may end later than ours and hits can be counted late.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class HitsAggregator {
+
+	/**
+	 * Returned by {@link #extractHits(JSONObject)} when a response holds no hit count it understands
+	 */
+	static final long UNKNOWN = Long.MIN_VALUE ;
+
+	private final Logger log = LoggerFactory.getLogger(HitsAggregator.class.getSimpleName()) ;
+	private final BillingAPI api ;
+	private final int concurrency ;
+	private final ConcurrentMap<String, Long> closedWindows = new ConcurrentHashMap<String, Long>() ;
+	private volatile int settleDays = 2 ;
+
+	/**
+	 * Constructor
+	 * @param api The {@link BillingAPI} to fetch hit counts with
+	 * @param concurrency The maximum number of requests to have in flight at once
+	 */
+	public HitsAggregator(BillingAPI api, int concurrency) {
+		super() ;
+		this.api = api ;
+		this.concurrency = Math.max(1, concurrency) ;
+	}
+
+	/**
+	 * @param days How many whole days must have passed since a window ended before its count is cached
+	 */
+	public void setSettleDays(int days) {
+		this.settleDays = Math.max(0, days) ;
+	}
+
+	/**
+	 * Fetch the hit counts for every domain in every window of the date range.
+	 * @param domains The domains to collect hits for
+	 * @param start The first day of the range
+	 * @param end The last day of the range
+	 * @param windowDays The number of days in each window; the last window may be shorter
+	 * @return A {@link HitsReport} holding the counts
+	 * @throws InterruptedException If the thread is interrupted while waiting for requests to finish
+	 */
+	public HitsReport aggregate(Collection<String> domains, Date start, Date end, int windowDays) throws InterruptedException {
+		if (windowDays<1) {
+			throw new IllegalArgumentException("windowDays must be at least 1") ;
+		}
+		List<Date> starts = new ArrayList<Date>() ;
+		List<Date> ends = new ArrayList<Date>() ;
+		Calendar cursor = startOfDay(start) ;
+		Calendar last = startOfDay(end) ;
+		while (!cursor.after(last)) {
+			starts.add(cursor.getTime()) ;
+			cursor.add(Calendar.DAY_OF_MONTH, windowDays-1) ;
+			ends.add(cursor.after(last)?last.getTime():cursor.getTime()) ;
+			cursor.add(Calendar.DAY_OF_MONTH, 1) ;
+		}
+		final HitsReport report = new HitsReport(starts.toArray(new Date[starts.size()]), ends.toArray(new Date[ends.size()])) ;
+		// A window's end is the start of its last day, so one before this ended at least settleDays ago
+		Calendar cutoff = startOfDay(new Date()) ;
+		cutoff.add(Calendar.DAY_OF_MONTH, -settleDays) ;
+		long settled = cutoff.getTimeInMillis() ;
+
+		ParallelRequests.Bounded bounded = new ParallelRequests.Bounded(api.getExecutor(), concurrency) ;
+		int cached = 0 ;
+		try {
+			for (final String domain: domains) {
+				for (int x=0; x<report.getWindowCount(); x++) {
+					final Date windowStart = report.getWindowStart(x) ;
+					final Date windowEnd = report.getWindowEnd(x) ;
+					final String key = domain+"|"+windowStart.getTime()+"|"+windowEnd.getTime() ;
+					final boolean closed = windowEnd.getTime()<settled ;
+					Long known = closed?closedWindows.get(key):null ;
+					if (known!=null) {
+						report.record(domain, x, known) ;
+						cached++ ;
+						continue ;
+					}
+					final int window = x ;
+					bounded.submit(new Runnable() {
+						public void run() {
+							ApiResult result = ApiResult.fromResponse(api.getHits(domain, windowStart, windowEnd)) ;
+							if (result.isSuccess()) {
+								long count = extractHits(result.getResponse()) ;
+								if (count==UNKNOWN) {
+									report.failed(domain, window, "The response does not contain a hit count: "+result.getResponse()) ;
+								} else {
+									report.record(domain, window, count) ;
+									if (closed) {
+										closedWindows.put(key, count) ;
+									}
+								}
+							} else {
+								report.failed(domain, window, result.getError().toString()) ;
+							}
+						}
+					}) ;
+				}
+			}
+		} finally {
+			bounded.awaitAll() ;
+		}
+		log.debug(cached+" domain windows were answered from the cache") ;
+		return report ;
+	}
+
+	/**
+	 * Discard all cached window counts
+	 */
+	public void clearCache() {
+		closedWindows.clear() ;
+	}
+
+	/**
+	 * Pull the hit count out of a getHits response. The count may be the <code>data</code> value
+	 * itself, a <code>hits</code> field of it, or the sum of the <code>hits</code> fields of a list.
+	 * @return The count, or {@link #UNKNOWN} if the response has none of those shapes
+	 */
+	static long extractHits(JSONObject response) {
+		Object data = response.opt("data") ;
+		if (data instanceof Number) {
+			return ((Number)data).longValue() ;
+		} else if (data instanceof JSONObject) {
+			return hitsOf((JSONObject)data) ;
+		} else if (data instanceof JSONArray) {
+			JSONArray list = (JSONArray)data ;
+			long total = 0 ;
+			for (int x=0; x<list.length(); x++) {
+				JSONObject entry = list.optJSONObject(x) ;
+				long hits = (entry==null)?UNKNOWN:hitsOf(entry) ;
+				if (hits==UNKNOWN) {
+					return UNKNOWN ;
+				}
+				total += hits ;
+			}
+			return total ;
+		} else if (data!=null && data!=JSONObject.NULL) {
+			try {
+				return Long.parseLong(data.toString().trim()) ;
+			} catch (NumberFormatException nfe) {
+				return UNKNOWN ;
+			}
+		}
+		return UNKNOWN ;
+	}
+
+	private static long hitsOf(JSONObject entry) {
+		Object hits = entry.opt("hits") ;
+		if (hits instanceof Number) {
+			return ((Number)hits).longValue() ;
+		} else if (hits!=null && hits!=JSONObject.NULL) {
+			try {
+				return Long.parseLong(hits.toString().trim()) ;
+			} catch (NumberFormatException nfe) {
+				return UNKNOWN ;
+			}
+		}
+		return UNKNOWN ;
+	}
+
+	private static Calendar startOfDay(Date date) {
+		Calendar cal = Calendar.getInstance() ;
+		cal.setTime(date) ;
+		cal.set(Calendar.HOUR_OF_DAY, 0) ;
+		cal.set(Calendar.MINUTE, 0) ;
+		cal.set(Calendar.SECOND, 0) ;
+		cal.set(Calendar.MILLISECOND, 0) ;
+		return cal ;
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The hit counts collected by a {@link HitsAggregator}: one count per domain per window, plus
+ * per-domain and account wide totals.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public class HitsReport {
+
+	private final Date[] windowStarts ;
+	private final Date[] windowEnds ;
+	private final ConcurrentMap<String, AtomicLongArray> hits = new ConcurrentHashMap<String, AtomicLongArray>() ;
+	private final List<String> failures = Collections.synchronizedList(new ArrayList<String>()) ;
+
+	HitsReport(Date[] windowStarts, Date[] windowEnds) {
+		super() ;
+		this.windowStarts = windowStarts ;
+		this.windowEnds = windowEnds ;
+	}
+
+	void record(String domain, int window, long count) {
+		AtomicLongArray counts = hits.get(domain) ;
+		if (counts==null) {
+			AtomicLongArray created = new AtomicLongArray(windowStarts.length) ;
+			counts = hits.putIfAbsent(domain, created) ;
+			if (counts==null) {
+				counts = created ;
+			}
+		}
+		counts.set(window, count) ;
+	}
+
+	void failed(String domain, int window, String reason) {
+		failures.add(domain+" "+windowStarts[window]+" - "+windowEnds[window]+": "+reason) ;
+	}
+
+	/**
+	 * @return The number of windows the date range was split into
+	 */
+	public int getWindowCount() {
+		return windowStarts.length ;
+	}
+
+	/**
+	 * @param window The index of a window
+	 * @return The first day of that window
+	 */
+	public Date getWindowStart(int window) {
+		return windowStarts[window] ;
+	}
+
+	/**
+	 * @param window The index of a window
+	 * @return The last day of that window
+	 */
+	public Date getWindowEnd(int window) {
+		return windowEnds[window] ;
+	}
+
+	/**
+	 * @return The domains for which at least one window was fetched
+	 */
+	public Set<String> getDomains() {
+		return new TreeSet<String>(hits.keySet()) ;
+	}
+
+	/**
+	 * @param domain The domain name
+	 * @return The hit count for each window, or <code>null</code> if nothing was fetched for the domain
+	 */
+	public long[] getHits(String domain) {
+		AtomicLongArray counts = hits.get(domain) ;
+		if (counts==null) {
+			return null ;
+		}
+		long[] result = new long[counts.length()] ;
+		for (int x=0; x<result.length; x++) {
+			result[x] = counts.get(x) ;
+		}
+		return result ;
+	}
+
+	/**
+	 * @param domain The domain name
+	 * @return The total hits for the domain over the whole date range
+	 */
+	public long getTotal(String domain) {
+		AtomicLongArray counts = hits.get(domain) ;
+		long total = 0 ;
+		if (counts!=null) {
+			for (int x=0; x<counts.length(); x++) {
+				total += counts.get(x) ;
+			}
+		}
+		return total ;
+	}
+
+	/**
+	 * @return The total hits for every domain over the whole date range
+	 */
+	public long getAccountTotal() {
+		long total = 0 ;
+		for (Map.Entry<String, AtomicLongArray> entry: hits.entrySet()) {
+			AtomicLongArray counts = entry.getValue() ;
+			for (int x=0; x<counts.length(); x++) {
+				total += counts.get(x) ;
+			}
+		}
+		return total ;
+	}
+
+	/**
+	 * @return A description of each domain window which could not be fetched
+	 */
+	public List<String> getFailures() {
+		synchronized (failures) {
+			return new ArrayList<String>(failures) ;
+		}
+	}
+}
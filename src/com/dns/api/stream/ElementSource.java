@@ -0,0 +1,22 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.stream;
+
+import com.dns.api.compiletime.ApiException;
+
+/**
+ * Produces elements one at a time, making API calls only when the next element needs them.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+interface ElementSource<T> {
+
+	/**
+	 * @return The next element, or <code>null</code> when there are no more
+	 * @throws ApiException If an API call needed for the next element fails
+	 */
+	T next() throws ApiException ;
+}
@@ -0,0 +1,272 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.stream;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.dns.api.compiletime.ApiException;
+import com.dns.api.compiletime.ApiResult;
+import com.dns.api.compiletime.ManagementAPI;
+
+/**
+ * {@link Publisher}s over the listing methods of the {@link ManagementAPI}. Each element of the
+ * <code>data</code> array of a listing is emitted as its own {@link JSONObject}, and nothing is
+ * requested from the API until a subscriber asks for elements. The chained publishers go one step
+ * further and only fetch the hostnames of a domain, or the records of a hostname, when the subscriber
+ * has asked for an element which needs them, so a slow consumer throttles the number of API calls
+ * instead of having the whole account buffered in memory.
+ * <p>
+ * Elements are produced on the executor of the {@link ManagementAPI}.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public final class ListingPublishers {
+
+	private ListingPublishers() {
+		super() ;
+	}
+
+	/**
+	 * @param api The {@link ManagementAPI} to use
+	 * @param filter (OPTIONAL) Only list domains containing this text or <code>null</code>
+	 * @return A {@link Publisher} of the domains in the account
+	 * @see ManagementAPI#getDomains(String)
+	 */
+	public static Publisher<JSONObject> domains(final ManagementAPI api, final String filter) {
+		return new SourcePublisher<JSONObject>(api.getExecutor()) {
+			ElementSource<JSONObject> open() {
+				return new ListingSource("getDomains") {
+					JSONObject fetch() {
+						return api.getDomains(searchTerm(filter)) ;
+					}
+				} ;
+			}
+		} ;
+	}
+
+	/**
+	 * @param api The {@link ManagementAPI} to use
+	 * @param group The name of the domain group
+	 * @return A {@link Publisher} of the domains in the group
+	 * @see ManagementAPI#getDomainsInGroup(String)
+	 */
+	public static Publisher<JSONObject> domainsInGroup(final ManagementAPI api, final String group) {
+		return new SourcePublisher<JSONObject>(api.getExecutor()) {
+			ElementSource<JSONObject> open() {
+				return new ListingSource("getDomainsInGroup") {
+					JSONObject fetch() {
+						return api.getDomainsInGroup(group) ;
+					}
+				} ;
+			}
+		} ;
+	}
+
+	/**
+	 * @param api The {@link ManagementAPI} to use
+	 * @param group The name of the domain group
+	 * @return A {@link Publisher} of the hostnames defined for the group
+	 * @see ManagementAPI#getHostnamesForGroup(String)
+	 */
+	public static Publisher<JSONObject> hostnamesForGroup(final ManagementAPI api, final String group) {
+		return new SourcePublisher<JSONObject>(api.getExecutor()) {
+			ElementSource<JSONObject> open() {
+				return new ListingSource("getHostnamesForGroup") {
+					JSONObject fetch() {
+						return api.getHostnamesForGroup(group) ;
+					}
+				} ;
+			}
+		} ;
+	}
+
+	/**
+	 * @param api The {@link ManagementAPI} to use
+	 * @param filter (OPTIONAL) Only list geo groups containing this text or <code>null</code>
+	 * @return A {@link Publisher} of the geo groups in the account
+	 * @see ManagementAPI#getGeoGroups(String)
+	 */
+	public static Publisher<JSONObject> geoGroups(final ManagementAPI api, final String filter) {
+		return new SourcePublisher<JSONObject>(api.getExecutor()) {
+			ElementSource<JSONObject> open() {
+				return new ListingSource("getGeoGroups") {
+					JSONObject fetch() {
+						return api.getGeoGroups(searchTerm(filter)) ;
+					}
+				} ;
+			}
+		} ;
+	}
+
+	/**
+	 * Walk every domain in the account, then every hostname of each domain. Each hostname is emitted
+	 * with an added <code>domain</code> field naming the domain it belongs to.
+	 * @param api The {@link ManagementAPI} to use
+	 * @param filter (OPTIONAL) Only walk domains containing this text or <code>null</code>
+	 * @return A {@link Publisher} of hostnames
+	 */
+	public static Publisher<JSONObject> hostnames(final ManagementAPI api, final String filter) {
+		return new SourcePublisher<JSONObject>(api.getExecutor()) {
+			ElementSource<JSONObject> open() {
+				return new HostnameSource(api, filter) ;
+			}
+		} ;
+	}
+
+	/**
+	 * Walk every domain in the account, every hostname of each domain and every resource record of
+	 * each hostname. Each record is emitted with added <code>domain</code> and <code>host</code> fields
+	 * naming where it was found.
+	 * @param api The {@link ManagementAPI} to use
+	 * @param filter (OPTIONAL) Only walk domains containing this text or <code>null</code>
+	 * @return A {@link Publisher} of resource records
+	 */
+	public static Publisher<JSONObject> records(final ManagementAPI api, final String filter) {
+		return new SourcePublisher<JSONObject>(api.getExecutor()) {
+			ElementSource<JSONObject> open() {
+				final HostnameSource hosts = new HostnameSource(api, filter) ;
+				return new ElementSource<JSONObject>() {
+					private ListingSource records = null ;
+
+					public JSONObject next() throws ApiException {
+						while (true) {
+							if (records!=null) {
+								JSONObject record = records.next() ;
+								if (record!=null) {
+									return record ;
+								}
+							}
+							final JSONObject host = hosts.next() ;
+							if (host==null) {
+								return null ;
+							}
+							final String domain = host.optString("domain") ;
+							final String hostName = host.optString("name") ;
+							records = new ListingSource("getRRSetForHostname") {
+								JSONObject fetch() {
+									return api.getRRSetForHostname(domain, false, hostName) ;
+								}
+
+								JSONObject decorate(JSONObject element) throws JSONException {
+									return element.put("domain", domain).put("host", hostName) ;
+								}
+							} ;
+						}
+					}
+				} ;
+			}
+		} ;
+	}
+
+	/**
+	 * The listing methods send their filter verbatim, so an absent filter must become an empty one
+	 */
+	private static String searchTerm(String filter) {
+		return (filter!=null)?filter:"" ;
+	}
+
+	/**
+	 * Walks the hostnames of every domain, fetching each domain's hostnames only once the previous
+	 * domain's have all been consumed.
+	 */
+	private static final class HostnameSource implements ElementSource<JSONObject> {
+		private final ManagementAPI api ;
+		private final ListingSource domains ;
+		private ListingSource hostnames = null ;
+
+		HostnameSource(final ManagementAPI api, final String filter) {
+			super() ;
+			this.api = api ;
+			this.domains = new ListingSource("getDomains") {
+				JSONObject fetch() {
+					return api.getDomains(searchTerm(filter)) ;
+				}
+			} ;
+		}
+
+		public JSONObject next() throws ApiException {
+			while (true) {
+				if (hostnames!=null) {
+					JSONObject host = hostnames.next() ;
+					if (host!=null) {
+						return host ;
+					}
+				}
+				JSONObject domain = domains.next() ;
+				if (domain==null) {
+					return null ;
+				}
+				final String domainName = domain.optString("name") ;
+				hostnames = new ListingSource("getHostnamesForDomain") {
+					JSONObject fetch() {
+						return api.getHostnamesForDomain(domainName) ;
+					}
+
+					JSONObject decorate(JSONObject element) throws JSONException {
+						return element.put("domain", domainName) ;
+					}
+				} ;
+			}
+		}
+	}
+
+	/**
+	 * Emits the elements of the <code>data</code> array of a single listing call, making the call
+	 * when the first element is needed.
+	 */
+	private abstract static class ListingSource implements ElementSource<JSONObject> {
+		private final String method ;
+		private JSONArray data = null ;
+		private int index = 0 ;
+
+		ListingSource(String method) {
+			super() ;
+			this.method = method ;
+		}
+
+		/**
+		 * @return The response of the listing call
+		 */
+		abstract JSONObject fetch() ;
+
+		/**
+		 * Add context to an element before it is emitted
+		 * @param element An element of the listing
+		 * @return The element to emit
+		 * @throws JSONException If the element cannot be modified
+		 */
+		JSONObject decorate(JSONObject element) throws JSONException {
+			return element ;
+		}
+
+		public JSONObject next() throws ApiException {
+			if (data==null) {
+				ApiResult result = ApiResult.fromResponse(fetch()) ;
+				if (!result.isSuccess()) {
+					throw new ApiException(method, result.getError()) ;
+				}
+				data = result.getResponse().optJSONArray("data") ;
+				if (data==null) {
+					data = new JSONArray() ;
+				}
+			}
+			while (index<data.length()) {
+				JSONObject element = data.optJSONObject(index++) ;
+				if (element!=null) {
+					try {
+						return decorate(element) ;
+					} catch (JSONException je) {
+						// Only reached if the element could not take the extra fields; emit it unchanged
+						return element ;
+					}
+				}
+			}
+			return null ;
+		}
+	}
+}
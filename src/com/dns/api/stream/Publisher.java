@@ -0,0 +1,23 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.stream;
+
+/**
+ * A source of elements which only produces them as fast as its {@link Subscriber} asks for them.
+ * This has the same contract as <code>java.util.concurrent.Flow.Publisher</code> (and the Reactive
+ * Streams <code>Publisher</code>), so it can be adapted to either with a one line wrapper.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public interface Publisher<T> {
+
+	/**
+	 * Start producing elements for a subscriber. Nothing is fetched until the subscriber calls
+	 * {@link Subscription#request(long)}.
+	 * @param subscriber The {@link Subscriber} to deliver elements to
+	 */
+	void subscribe(Subscriber<? super T> subscriber) ;
+}
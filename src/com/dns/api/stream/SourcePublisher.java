@@ -0,0 +1,119 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.stream;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Publisher} which pulls elements from a fresh {@link ElementSource} for each subscriber.
+ * Elements are pulled on an {@link Executor} and only while the subscriber has outstanding demand,
+ * so a slow subscriber slows down the API calls rather than building up a buffer.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+abstract class SourcePublisher<T> implements Publisher<T> {
+
+	private final Executor executor ;
+
+	SourcePublisher(Executor executor) {
+		super() ;
+		this.executor = executor ;
+	}
+
+	/**
+	 * @return A new {@link ElementSource} for one subscriber
+	 */
+	abstract ElementSource<T> open() ;
+
+	public void subscribe(Subscriber<? super T> subscriber) {
+		if (subscriber==null) {
+			throw new NullPointerException("subscriber") ;
+		}
+		PullSubscription<T> subscription = new PullSubscription<T>(open(), subscriber, executor) ;
+		subscriber.onSubscribe(subscription) ;
+	}
+
+	private static final class PullSubscription<T> implements Subscription, Runnable {
+		private final ElementSource<T> source ;
+		private final Subscriber<? super T> subscriber ;
+		private final Executor executor ;
+		private final AtomicLong demand = new AtomicLong() ;
+		private final AtomicInteger pending = new AtomicInteger() ;
+		private volatile boolean cancelled = false ;
+		private volatile Throwable invalidRequest = null ;
+		private boolean done = false ;
+
+		PullSubscription(ElementSource<T> source, Subscriber<? super T> subscriber, Executor executor) {
+			super() ;
+			this.source = source ;
+			this.subscriber = subscriber ;
+			this.executor = executor ;
+		}
+
+		public void request(long n) {
+			if (n<=0) {
+				// Signalled from run() so that the subscriber never hears from two threads at once
+				invalidRequest = new IllegalArgumentException("The number of elements requested must be positive") ;
+			} else {
+				long current ;
+				long updated ;
+				do {
+					current = demand.get() ;
+					updated = (current+n<0)?Long.MAX_VALUE:current+n ;
+				} while (!demand.compareAndSet(current, updated)) ;
+			}
+			if (pending.getAndIncrement()==0) {
+				executor.execute(this) ;
+			}
+		}
+
+		public void cancel() {
+			cancelled = true ;
+		}
+
+		/**
+		 * Deliver elements while there is demand. Only one thread runs this at a time; requests which
+		 * arrive while it runs are picked up before it exits.
+		 */
+		public void run() {
+			int missed = 1 ;
+			do {
+				if (invalidRequest!=null && !cancelled && !done) {
+					done = true ;
+					cancelled = true ;
+					subscriber.onError(invalidRequest) ;
+				}
+				while (!cancelled && !done && invalidRequest==null && demand.get()>0) {
+					T item ;
+					try {
+						item = source.next() ;
+					} catch (Exception e) {
+						done = true ;
+						if (!cancelled) {
+							subscriber.onError(e) ;
+						}
+						break ;
+					}
+					if (cancelled) {
+						break ;
+					}
+					if (item==null) {
+						done = true ;
+						subscriber.onComplete() ;
+						break ;
+					}
+					subscriber.onNext(item) ;
+					if (demand.get()!=Long.MAX_VALUE) {
+						demand.decrementAndGet() ;
+					}
+				}
+				missed = pending.addAndGet(-missed) ;
+			} while (missed!=0) ;
+		}
+	}
+}
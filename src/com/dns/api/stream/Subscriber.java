@@ -0,0 +1,37 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.stream;
+
+/**
+ * Receives the elements of a {@link Publisher}. Calls to a subscriber are never made concurrently.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public interface Subscriber<T> {
+
+	/**
+	 * Called once, before any other method
+	 * @param subscription The {@link Subscription} used to ask for elements or cancel
+	 */
+	void onSubscribe(Subscription subscription) ;
+
+	/**
+	 * Called once for each element, never more often than elements have been requested
+	 * @param item The element
+	 */
+	void onNext(T item) ;
+
+	/**
+	 * Called at most once if producing elements failed; no further calls follow
+	 * @param throwable The failure
+	 */
+	void onError(Throwable throwable) ;
+
+	/**
+	 * Called at most once when every element has been delivered; no further calls follow
+	 */
+	void onComplete() ;
+}
@@ -0,0 +1,25 @@
+/*
+ * DNS.com Java API - Copyright 2011, DNS, Inc. - All rights reserved.
+ * This code is released under the terms of the BSD License. See LICENSE file in the root
+ * of this code base for more information.
+ */
+
+package com.dns.api.stream;
+
+/**
+ * The link between a {@link Publisher} and one {@link Subscriber}.
+ * @author <a href="mailto: deven@dns.com">Deven Phillips</a>
+ */
+public interface Subscription {
+
+	/**
+	 * Ask for up to <code>n</code> more elements. Requests add up; <code>Long.MAX_VALUE</code> means unbounded.
+	 * @param n The number of additional elements wanted, which must be positive
+	 */
+	void request(long n) ;
+
+	/**
+	 * Stop producing elements. Requests already in flight are allowed to finish but their results are discarded.
+	 */
+	void cancel() ;
+}